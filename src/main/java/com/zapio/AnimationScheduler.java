@@ -0,0 +1,225 @@
+package com.zapio;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.awt.event.WindowStateListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The single clock behind every animation in the app.
+ *
+ * Animations are registered together with the component that displays them.
+ * One Swing Timer ticks all of them once per frame and then repaints each
+ * affected component once. An animation is paused, and doesn't count time,
+ * while its component isn't showing or its window is minimized, and it's
+ * removed when its component leaves a displayed hierarchy. The timer only
+ * runs while some animation is active, so an idle app doesn't wake up.
+ *
+ * Only use the scheduler from the EDT.
+ */
+public final class AnimationScheduler {
+
+    /**
+     * One animation, advanced once per frame
+     */
+    public interface Animation {
+        /**
+         * Updates the animation's state for the given time
+         * @param elapsedNanos Time the animation has been running, excluding pauses
+         * @return false once the animation has finished
+         */
+        boolean update(long elapsedNanos);
+    }
+
+    private static final int FRAME_RATE = 60;
+    private static final AnimationScheduler INSTANCE = new AnimationScheduler();
+
+    private final Timer timer;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<JComponent, HierarchyListener> hierarchyListeners = new HashMap<>();
+    private final Set<Window> observedWindows = Collections.newSetFromMap(new WeakHashMap<>());
+    private final WindowStateListener windowStateListener = e -> wake();
+
+    private AnimationScheduler() {
+        timer = new Timer(1000 / FRAME_RATE, e -> onFrame());
+        timer.setCoalesce(true);
+    }
+
+    public static AnimationScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts an animation. The component is repainted after every update.
+     * Starting an animation that is already running restarts it.
+     */
+    public void start(JComponent component, Animation animation) {
+        stop(animation);
+        entries.add(new Entry(component, animation));
+        if (!hierarchyListeners.containsKey(component)) {
+            HierarchyListener listener = e -> onHierarchyChanged(component, e);
+            hierarchyListeners.put(component, listener);
+            component.addHierarchyListener(listener);
+        }
+        wake();
+    }
+
+    /**
+     * Stops an animation without a final update
+     */
+    public void stop(Animation animation) {
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.animation == animation) {
+                it.remove();
+                releaseComponent(entry.component);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops every animation shown by a component or any of its descendants,
+     * such as all the animations of a screen that is being discarded
+     */
+    public void stopAll(Component root) {
+        List<JComponent> released = new ArrayList<>();
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (SwingUtilities.isDescendingFrom(entry.component, root)) {
+                it.remove();
+                released.add(entry.component);
+            }
+        }
+        for (JComponent component : released) {
+            releaseComponent(component);
+        }
+    }
+
+    public boolean isRunning(Animation animation) {
+        for (Entry entry : entries) {
+            if (entry.animation == animation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void wake() {
+        if (!entries.isEmpty() && !timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    private void onFrame() {
+        long now = System.nanoTime();
+        Set<JComponent> dirty = new LinkedHashSet<>();
+        boolean anyActive = false;
+
+        for (Entry entry : new ArrayList<>(entries)) {
+            if (isPaused(entry.component)) {
+                entry.pause(now);
+                continue;
+            }
+            entry.resume(now);
+            anyActive = true;
+            boolean keepRunning = entry.animation.update(entry.elapsed(now));
+            dirty.add(entry.component);
+            if (!keepRunning && entries.remove(entry)) {
+                releaseComponent(entry.component);
+            }
+        }
+
+        // Each component is repainted once however many of its animations ran
+        for (JComponent component : dirty) {
+            component.repaint();
+        }
+
+        // Paused animations are resumed by hierarchy and window state events
+        if (!anyActive) {
+            timer.stop();
+        }
+    }
+
+    private boolean isPaused(JComponent component) {
+        if (!component.isShowing()) {
+            return true;
+        }
+        Window window = SwingUtilities.getWindowAncestor(component);
+        if (window instanceof Frame) {
+            if (observedWindows.add(window)) {
+                window.addWindowStateListener(windowStateListener);
+            }
+            return (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0;
+        }
+        return false;
+    }
+
+    private void onHierarchyChanged(JComponent component, HierarchyEvent e) {
+        if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !component.isDisplayable()) {
+            // The component was removed from its window; its animations are done
+            entries.removeIf(entry -> entry.component == component);
+            releaseComponent(component);
+        } else if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && component.isShowing()) {
+            wake();
+        }
+    }
+
+    private void releaseComponent(JComponent component) {
+        for (Entry entry : entries) {
+            if (entry.component == component) {
+                return;
+            }
+        }
+        HierarchyListener listener = hierarchyListeners.remove(component);
+        if (listener != null) {
+            component.removeHierarchyListener(listener);
+        }
+    }
+
+    /**
+     * A registered animation and its running time
+     */
+    private static class Entry {
+        final JComponent component;
+        final Animation animation;
+        long startNanos = -1;
+        long pausedNanos;
+        long pauseStartNanos = -1;
+
+        Entry(JComponent component, Animation animation) {
+            this.component = component;
+            this.animation = animation;
+        }
+
+        void pause(long now) {
+            if (startNanos >= 0 && pauseStartNanos < 0) {
+                pauseStartNanos = now;
+            }
+        }
+
+        void resume(long now) {
+            if (startNanos < 0) {
+                // Time starts with the first frame the component is visible in
+                startNanos = now;
+            } else if (pauseStartNanos >= 0) {
+                pausedNanos += now - pauseStartNanos;
+                pauseStartNanos = -1;
+            }
+        }
+
+        long elapsed(long now) {
+            return now - startNanos - pausedNanos;
+        }
+    }
+}
@@ -9,37 +9,27 @@ import java.awt.*;
 public class AppRestarter {
     
     /**
-     * Restarts the application by navigating back to the upload screen
+     * Takes the user back to the upload screen for a new document.
+     * The window stays open and only the current document's state is reset.
      * 
      * @param component Any component in the application to find the main frame
      */
     public static void restartApplication(Component component) {
         try {
-            // Find the top-level frame
+            ZapioApp app = ZapioApp.forComponent(component);
+            if (app != null) {
+                app.resetSession();
+                return;
+            }
+            
+            // Not in a ZapioApp window: replace the window with a fresh app
             Window window = SwingUtilities.getWindowAncestor(component);
             if (window instanceof JFrame) {
-                JFrame frame = (JFrame) window;
-                
-                // Create a new ZapioApp instance
-                try {
-                    // Dispose the current frame to release resources
-                    frame.dispose();
-                    
-                    // Create and show a new ZapioApp instance
-                    SwingUtilities.invokeLater(() -> {
-                        ZapioApp app = new ZapioApp();
-                        app.show();
-                    });
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    // If creating a new ZapioApp fails, fall back to just showing the upload screen
-                    frame.getContentPane().removeAll();
+                window.dispose();
+                SwingUtilities.invokeLater(() -> {
                     ZapioApp newApp = new ZapioApp();
-                    UploadScreen uploadScreen = new UploadScreen(newApp);
-                    frame.getContentPane().add(uploadScreen);
-                    frame.validate();
-                    frame.repaint();
-                }
+                    newApp.show();
+                });
             }
         } catch (Exception e) {
             e.printStackTrace();
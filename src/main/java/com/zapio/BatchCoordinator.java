@@ -0,0 +1,766 @@
+package com.zapio;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a batch across worker processes, on this machine or others on the
+ * network, each running its own {@link StudyPackPipeline}.
+ *
+ * Workers connect with the coordinator's token (see {@link BatchWorker})
+ * and pull jobs, one per free slot, so a fast worker simply takes more of
+ * them. Once the queue is empty, an idle worker gets a copy of the job that
+ * has been running longest, if it has run well past the usual time, and
+ * whichever copy finishes first wins; a slow or stuck worker can't hold up
+ * the end of the batch. A worker that sends nothing for
+ * {@value #WORKER_TIMEOUT_MILLIS} ms, not even a heartbeat, or whose
+ * connection drops is dropped, and its jobs go back to the front of the
+ * queue. A job whose workers are lost {@value #MAX_ATTEMPTS} times fails.
+ *
+ * Documents are hashed and checked against the manifest here; the outputs
+ * come back over the connection and are written next to the others, so
+ * workers need no shared file system. Local workers that die are started
+ * again, up to once per worker.
+ *
+ * Local workers split this process's API budget, the
+ * {@link UpstreamScheduler} concurrency and tokens per minute, evenly
+ * between them. Workers on other machines pace themselves with their own
+ * settings, and each worker backs off from 429 answers on its own.
+ */
+public class BatchCoordinator implements AutoCloseable {
+
+    static final int WORKER_TIMEOUT_MILLIS = (int) (5 * WorkerProtocol.HEARTBEAT_MILLIS);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long STRAGGLER_MIN_NANOS = 10_000_000_000L;
+    private static final long EXIT_WAIT_MILLIS = 10000;
+    private static final String QUEUE = "queue";
+    private static final String WORKER = "worker";
+
+    private static class Job {
+        final int id;
+        final File source;
+        final Path relative;
+        final File outputDirectory;
+        final String baseName;
+        final String hash;
+        final long queued = System.nanoTime();
+        final Set<Worker> holders = new HashSet<>();
+        long dispatched;
+        int attempts;
+        boolean finished;
+
+        Job(int id, File source, Path relative, File outputDirectory, String baseName, String hash) {
+            this.id = id;
+            this.source = source;
+            this.relative = relative;
+            this.outputDirectory = outputDirectory;
+            this.baseName = baseName;
+            this.hash = hash;
+        }
+    }
+
+    private static class Worker {
+        final String name;
+        final Socket socket;
+        final DataOutputStream out;
+        // Documents go out on the worker's own thread, so a large one doesn't hold up other workers
+        final ExecutorService sender;
+        final Set<Job> running = new HashSet<>();
+        int wanted;
+        boolean lost;
+
+        Worker(String name, Socket socket, DataOutputStream out, String threadName) {
+            this.name = name;
+            this.socket = socket;
+            this.out = out;
+            this.sender = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final Set<StudyPackExporter.Format> formats;
+    private final StudyPackManifest manifest;
+    private final String tenant;
+    private final String token;
+    private final ServerSocket serverSocket;
+    private final boolean remote;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, StudyPackPipeline.StageStats> stats = new LinkedHashMap<>();
+    private final Set<String> seen = new HashSet<>();
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final List<Job> jobs = new ArrayList<>();
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private final Set<Job> running = new LinkedHashSet<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private final Map<String, Integer> completedBy = new LinkedHashMap<>();
+    private final Map<StudyPackPipeline.Status, Integer> counts = new EnumMap<>(StudyPackPipeline.Status.class);
+    private final List<Process> processes = new ArrayList<>();
+    private int respawns;
+    private int finished;
+    private int lostWorkers;
+    private int requeued;
+    private int copies;
+    private int wastedCopies;
+    private boolean closed;
+
+    /**
+     * @param formats The formats to export
+     * @param manifest File recording finished documents, created if missing
+     * @param tenant Who the workers' API requests are for
+     * @param port Port for workers on other machines, or 0 to accept local workers only
+     * @throws IOException if the manifest can't be read or the port can't be opened
+     */
+    public BatchCoordinator(Set<StudyPackExporter.Format> formats, File manifest, String tenant, int port)
+            throws IOException {
+        this.formats = EnumSet.copyOf(formats);
+        this.manifest = new StudyPackManifest(manifest);
+        this.tenant = tenant;
+        byte[] secret = new byte[16];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : secret) {
+            hex.append(String.format("%02x", b));
+        }
+        this.token = hex.toString();
+        this.remote = port > 0;
+        this.serverSocket = remote ? new ServerSocket(port)
+                : new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        for (String stage : new String[] {StudyPackPipeline.HASH, QUEUE, StudyPackPipeline.EXTRACT,
+                StudyPackPipeline.GENERATE, StudyPackPipeline.EXPORT, WORKER, StudyPackPipeline.TOTAL}) {
+            stats.put(stage, new StudyPackPipeline.StageStats(stage));
+        }
+        for (StudyPackPipeline.Status status : StudyPackPipeline.Status.values()) {
+            counts.put(status, 0);
+        }
+
+        Thread acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Returns the token workers need to join
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Queues a document, unless its content is already in the manifest or already queued
+     * @param relative The document's path as printed in progress lines
+     * @return false if the document was skipped, or failed because it can't be read
+     */
+    public boolean add(File source, Path relative, File outputDirectory, String baseName) {
+        long start = System.nanoTime();
+        String hash;
+        try {
+            hash = StudyPackManifest.sha256(source);
+        } catch (IOException e) {
+            synchronized (lock) {
+                counts.merge(StudyPackPipeline.Status.FAILED, 1, Integer::sum);
+            }
+            ZapioBatch.print(relative, new StudyPackPipeline.Result(source, null, StudyPackPipeline.Status.FAILED,
+                    null, e, null));
+            return false;
+        }
+        stats.get(StudyPackPipeline.HASH).record(System.nanoTime() - start);
+        synchronized (lock) {
+            if (manifest.contains(hash) || !seen.add(hash)) {
+                counts.merge(StudyPackPipeline.Status.SKIPPED, 1, Integer::sum);
+                ZapioBatch.print(relative, new StudyPackPipeline.Result(source, hash, StudyPackPipeline.Status.SKIPPED,
+                        null, null, null));
+                return false;
+            }
+            Job job = new Job(jobs.size(), source, relative, outputDirectory, baseName, hash);
+            jobs.add(job);
+            queue.addLast(job);
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Returns the number of documents in the manifest
+     */
+    public int getFinishedCount() {
+        return manifest.size();
+    }
+
+    /**
+     * Starts worker processes on this machine
+     * @param slots Documents each worker processes at once
+     * @param requests API requests each worker makes at once
+     * @param extractors Documents each worker extracts at once
+     */
+    public void startLocalWorkers(int count, int slots, int requests, int extractors) throws IOException {
+        // The API budget is for the whole batch, so each worker's scheduler gets its share of it
+        int tokensPerMinute = UpstreamScheduler.getConfiguredTokensPerMinute();
+        List<String> budget = new ArrayList<>();
+        budget.add("-D" + UpstreamScheduler.CONCURRENCY_PROPERTY + "="
+                + Math.max(1, UpstreamScheduler.getConfiguredConcurrency() / count));
+        budget.add("-D" + UpstreamScheduler.TOKENS_PER_MINUTE_PROPERTY + "="
+                + (tokensPerMinute > 0 ? Math.max(1, tokensPerMinute / count) : 0));
+        for (int i = 0; i < count; i++) {
+            startLocalWorker(slots, requests, extractors, budget);
+        }
+        synchronized (lock) {
+            respawns = count;
+        }
+    }
+
+    private void startLocalWorker(int slots, int requests, int extractors, List<String> budget) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        // Same heap size and settings as this JVM, apart from the API budget
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if ((argument.startsWith("-X") || argument.startsWith("-D"))
+                    && !argument.startsWith("-D" + UpstreamScheduler.CONCURRENCY_PROPERTY + "=")
+                    && !argument.startsWith("-D" + UpstreamScheduler.TOKENS_PER_MINUTE_PROPERTY + "=")) {
+                command.add(argument);
+            }
+        }
+        command.addAll(budget);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ZapioApp.class.getName());
+        command.add("--worker");
+        command.add(InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort());
+        command.add("--token");
+        command.add(token);
+        command.add("--slots");
+        command.add(String.valueOf(slots));
+        command.add("--requests");
+        command.add(String.valueOf(requests));
+        command.add("--extractors");
+        command.add(String.valueOf(extractors));
+
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        synchronized (lock) {
+            processes.add(process);
+        }
+        process.onExit().thenRun(() -> {
+            boolean restart;
+            synchronized (lock) {
+                processes.remove(process);
+                restart = !closed && finished < jobs.size() && respawns > 0;
+                if (restart) {
+                    respawns--;
+                }
+            }
+            if (restart) {
+                System.err.println("Worker process " + process.pid() + " exited with " + process.exitValue()
+                        + ", starting another");
+                try {
+                    startLocalWorker(slots, requests, extractors, budget);
+                } catch (IOException e) {
+                    System.err.println("Error starting a worker: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            abandonIfNoWorkers();
+        });
+    }
+
+    private void accept() {
+        int connection = 0;
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> serve(socket), "coordinator-worker-" + ++connection);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting a worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles one worker's messages until it disconnects or goes silent
+     */
+    private void serve(Socket socket) {
+        Worker worker = null;
+        try {
+            socket.setTcpNoDelay(true);
+            // Heartbeats arrive well within this; a worker that misses several is treated as dead
+            socket.setSoTimeout(WORKER_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            WorkerProtocol.Message hello = WorkerProtocol.receive(in, WorkerProtocol.HELLO);
+            byte[] offered = hello.header.optString("token").getBytes(StandardCharsets.UTF_8);
+            // Constant time, so the token can't be guessed a character at a time
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), offered)) {
+                WorkerProtocol.send(out, new JSONObject().put("type", WorkerProtocol.REFUSED).put("error", "Wrong token"));
+                socket.close();
+                return;
+            }
+            worker = new Worker(hello.header.optString("name", String.valueOf(socket.getRemoteSocketAddress())),
+                    socket, out, Thread.currentThread().getName() + "-send");
+            WorkerProtocol.send(out, new JSONObject()
+                    .put("type", WorkerProtocol.WELCOME)
+                    .put("formats", new JSONArray(formats.stream().map(Enum::name).toArray()))
+                    .put("tenant", tenant));
+            synchronized (lock) {
+                workers.add(worker);
+                completedBy.putIfAbsent(worker.name, 0);
+            }
+            System.out.println("worker   " + worker.name + " joined with " + hello.header.optInt("slots") + " slots");
+
+            while (true) {
+                WorkerProtocol.Message message = WorkerProtocol.receive(in,
+                        WorkerProtocol.TAKE, WorkerProtocol.HEARTBEAT, WorkerProtocol.RESULT);
+                if (message.type().equals(WorkerProtocol.TAKE)) {
+                    synchronized (lock) {
+                        worker.wanted++;
+                    }
+                } else if (message.type().equals(WorkerProtocol.RESULT)) {
+                    complete(worker, message);
+                }
+                // Every message, heartbeats included, is a chance to hand out work or a straggler's copy
+                dispatch();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (worker != null) {
+                lost(worker, e.getMessage());
+            }
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Hands queued jobs to workers that asked for them
+     */
+    private void dispatch() {
+        List<Object[]> assignments = new ArrayList<>();
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Worker worker : workers) {
+                while (worker.wanted > 0) {
+                    Job job = queue.pollFirst();
+                    if (job == null) {
+                        job = straggler(worker, now);
+                        if (job == null) {
+                            break;
+                        }
+                        copies++;
+                    } else {
+                        job.dispatched = now;
+                        stats.get(QUEUE).record(now - job.queued);
+                        running.add(job);
+                    }
+                    job.holders.add(worker);
+                    job.attempts++;
+                    worker.running.add(job);
+                    worker.wanted--;
+                    assignments.add(new Object[] {worker, job});
+                }
+            }
+        }
+        for (Object[] assignment : assignments) {
+            Worker worker = (Worker) assignment[0];
+            Job job = (Job) assignment[1];
+            try {
+                worker.sender.execute(() -> send(worker, job));
+            } catch (RejectedExecutionException e) {
+                // The worker was lost in the meantime and its jobs are back in the queue
+            }
+        }
+    }
+
+    /**
+     * Returns the longest-running job that has run well past the usual time and that this worker isn't already running
+     */
+    // Must hold lock
+    private Job straggler(Worker worker, long now) {
+        long threshold = Math.max(STRAGGLER_MIN_NANOS, (long) (2 * stats.get(WORKER).getMeanMillis() * 1e6));
+        for (Job job : running) {
+            // Running is in dispatch order, so the first match is the oldest
+            if (now - job.dispatched < threshold) {
+                return null;
+            }
+            if (job.holders.size() == 1 && !job.holders.contains(worker)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streams a job's document to a worker, so the coordinator never holds a whole document in memory
+     */
+    private void send(Worker worker, Job job) {
+        InputStream content;
+        long length;
+        try {
+            content = Files.newInputStream(job.source.toPath());
+            length = job.source.length();
+            if (length > WorkerProtocol.MAX_DOCUMENT_BYTES) {
+                content.close();
+                throw new IOException("Larger than the " + WorkerProtocol.MAX_DOCUMENT_BYTES / (1024 * 1024)
+                        + " MB a worker accepts");
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                worker.running.remove(job);
+                job.holders.remove(worker);
+                worker.wanted++;
+            }
+            finish(job, null, new StudyPackPipeline.Result(job.source, job.hash, StudyPackPipeline.Status.FAILED,
+                    null, e, null), null);
+            return;
+        }
+        try (InputStream in = content) {
+            WorkerProtocol.send(worker.out, new JSONObject()
+                    .put("type", WorkerProtocol.JOB)
+                    .put("job", job.id)
+                    .put("name", job.source.getName())
+                    .put("baseName", job.baseName), in, (int) length);
+        } catch (IOException e) {
+            // The worker's reader notices the closed socket and gives its jobs back
+            try {
+                worker.socket.close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Takes a worker's result; the first copy of a job to finish writes the outputs
+     */
+    private void complete(Worker worker, WorkerProtocol.Message message) throws IOException {
+        JSONObject header = message.header;
+        StudyPackPipeline.Status status = StudyPackPipeline.Status.valueOf(header.getString("status"));
+        Job job;
+        synchronized (lock) {
+            job = jobs.get(header.getInt("job"));
+            worker.running.remove(job);
+            job.holders.remove(worker);
+            if (job.finished) {
+                wastedCopies++;
+                return;
+            }
+            if (status != StudyPackPipeline.Status.DONE && !job.holders.isEmpty()) {
+                // Another copy may still succeed
+                return;
+            }
+            job.finished = true;
+            running.remove(job);
+            wastedCopies += job.holders.size();
+        }
+
+        Map<String, Long> stageNanos = new LinkedHashMap<>();
+        JSONObject stages = header.optJSONObject("stageNanos");
+        if (stages != null) {
+            for (String stage : stages.keySet()) {
+                stageNanos.put(stage, stages.getLong(stage));
+            }
+        }
+
+        StudyPackPipeline.Result result;
+        if (status == StudyPackPipeline.Status.DONE) {
+            try {
+                Map<StudyPackExporter.Format, File> outputs = save(job, header.getJSONArray("outputs"), message.payload);
+                manifest.record(job.hash, job.source, outputs.values());
+                result = new StudyPackPipeline.Result(job.source, job.hash, status, outputs, null, stageNanos);
+            } catch (IOException e) {
+                result = new StudyPackPipeline.Result(job.source, job.hash, StudyPackPipeline.Status.FAILED, null, e,
+                        stageNanos);
+            }
+        } else {
+            // The worker's pipeline had nothing to skip against, so anything but done is a failure
+            result = new StudyPackPipeline.Result(job.source, job.hash, StudyPackPipeline.Status.FAILED, null,
+                    new IOException(header.optString("error", "failed on " + worker.name)), stageNanos);
+        }
+        finish(job, worker, result, stageNanos);
+    }
+
+    /**
+     * Writes the exported files in a result, each under a temporary name first so no half-written file is left
+     */
+    private static Map<StudyPackExporter.Format, File> save(Job job, JSONArray outputs, byte[] payload)
+            throws IOException {
+        if (!job.outputDirectory.isDirectory() && !job.outputDirectory.mkdirs()) {
+            throw new IOException("Can't create " + job.outputDirectory);
+        }
+        Map<StudyPackExporter.Format, File> files = new EnumMap<>(StudyPackExporter.Format.class);
+        int offset = 0;
+        for (int i = 0; i < outputs.length(); i++) {
+            JSONObject output = outputs.getJSONObject(i);
+            StudyPackExporter.Format format = StudyPackExporter.Format.valueOf(output.getString("format"));
+            int size = output.getInt("size");
+            if (size < 0 || offset + size > payload.length) {
+                throw new IOException("Result for " + job.source.getName() + " is truncated");
+            }
+            File target = new File(job.outputDirectory, job.baseName + "." + format.getExtension());
+            File part = new File(job.outputDirectory, "." + target.getName() + ".part");
+            try (OutputStream out = Files.newOutputStream(part.toPath())) {
+                out.write(payload, offset, size);
+            }
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            files.put(format, target);
+            offset += size;
+        }
+        return files;
+    }
+
+    private void finish(Job job, Worker worker, StudyPackPipeline.Result result, Map<String, Long> stageNanos) {
+        long now = System.nanoTime();
+        if (stageNanos != null) {
+            for (String stage : new String[] {StudyPackPipeline.EXTRACT, StudyPackPipeline.GENERATE,
+                    StudyPackPipeline.EXPORT}) {
+                Long nanos = stageNanos.get(stage);
+                if (nanos != null) {
+                    stats.get(stage).record(nanos);
+                }
+            }
+        }
+        if (worker != null) {
+            stats.get(WORKER).record(now - job.dispatched);
+        }
+        stats.get(StudyPackPipeline.TOTAL).record(now - job.queued);
+        ZapioBatch.print(job.relative, result);
+
+        synchronized (lock) {
+            job.finished = true;
+            running.remove(job);
+            counts.merge(result.getStatus(), 1, Integer::sum);
+            if (worker != null && result.getStatus() == StudyPackPipeline.Status.DONE) {
+                completedBy.merge(worker.name, 1, Integer::sum);
+            }
+            finished++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Drops a worker and puts back the jobs no other worker has a copy of
+     */
+    private void lost(Worker worker, String reason) {
+        List<Job> failed = new ArrayList<>();
+        int back = 0;
+        synchronized (lock) {
+            if (worker.lost) {
+                return;
+            }
+            worker.lost = true;
+            workers.remove(worker);
+            // Documents already handed to the sender still go out, and fail on the closed socket
+            worker.sender.shutdown();
+            if (closed) {
+                return;
+            }
+            lostWorkers++;
+            for (Job job : worker.running) {
+                job.holders.remove(worker);
+                if (job.finished || !job.holders.isEmpty()) {
+                    continue;
+                }
+                running.remove(job);
+                if (job.attempts >= MAX_ATTEMPTS) {
+                    failed.add(job);
+                } else {
+                    queue.addFirst(job);
+                    back++;
+                }
+            }
+            worker.running.clear();
+            requeued += back;
+        }
+        System.err.println("Lost worker " + worker.name + " (" + (reason != null ? reason : "disconnected") + "), "
+                + back + " jobs back in the queue");
+        // A local worker that went silent may be stuck rather than gone; stopping it lets a new one start
+        Process process = localProcess(worker);
+        if (process != null) {
+            process.destroyForcibly();
+        }
+        for (Job job : failed) {
+            finish(job, null, new StudyPackPipeline.Result(job.source, job.hash, StudyPackPipeline.Status.FAILED, null,
+                    new IOException("Workers were lost " + job.attempts + " times"), null), null);
+        }
+        dispatch();
+        abandonIfNoWorkers();
+    }
+
+    /**
+     * Returns the process of a worker started by this coordinator, found by the process ID in its name
+     */
+    private Process localProcess(Worker worker) {
+        int at = worker.name.indexOf('@');
+        synchronized (lock) {
+            for (Process process : processes) {
+                if (at > 0 && worker.name.substring(0, at).equals(String.valueOf(process.pid()))) {
+                    return process;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fails the remaining jobs when no worker is left and none can join
+     */
+    private void abandonIfNoWorkers() {
+        List<Job> abandoned = new ArrayList<>();
+        synchronized (lock) {
+            if (closed || remote || !workers.isEmpty() || !processes.isEmpty() || finished == jobs.size()) {
+                return;
+            }
+            for (Job job : jobs) {
+                if (!job.finished) {
+                    job.finished = true;
+                    abandoned.add(job);
+                }
+            }
+            queue.clear();
+        }
+        for (Job job : abandoned) {
+            finish(job, null, new StudyPackPipeline.Result(job.source, job.hash, StudyPackPipeline.Status.FAILED, null,
+                    new IOException("No workers left"), null), null);
+        }
+    }
+
+    /**
+     * Waits until every queued document has finished
+     */
+    public void awaitFinished() throws InterruptedException {
+        synchronized (lock) {
+            while (finished < jobs.size()) {
+                lock.wait();
+            }
+        }
+    }
+
+    public int getCount(StudyPackPipeline.Status status) {
+        synchronized (lock) {
+            return counts.get(status);
+        }
+    }
+
+    /**
+     * Describes the throughput, the workers and the per-stage latencies
+     */
+    public String report() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        StringBuilder report = new StringBuilder();
+        synchronized (lock) {
+            int done = counts.get(StudyPackPipeline.Status.DONE);
+            int skipped = counts.get(StudyPackPipeline.Status.SKIPPED);
+            int failed = counts.get(StudyPackPipeline.Status.FAILED);
+            report.append(String.format("%d documents in %.1f s: %d done, %d skipped, %d failed%n",
+                    done + skipped + failed, seconds, done, skipped, failed));
+            report.append(String.format("Throughput: %.2f documents/min generated%n", done / seconds * 60));
+            report.append(String.format("Workers: %d joined, %d lost, %d jobs requeued, %d straggler copies (%d wasted)%n",
+                    completedBy.size(), lostWorkers, requeued, copies, wastedCopies));
+            for (Map.Entry<String, Integer> worker : completedBy.entrySet()) {
+                report.append(String.format("  %-32s %5d done%n", worker.getKey(), worker.getValue()));
+            }
+        }
+        report.append(String.format("%-10s %7s %10s %10s %10s %10s%n", "Stage", "Count", "Mean ms", "p50 ms", "p95 ms", "Max ms"));
+        for (StudyPackPipeline.StageStats stage : stats.values()) {
+            report.append(String.format("%-10s %7d %10.1f %10.1f %10.1f %10.1f%n", stage.getName(), stage.getCount(),
+                    stage.getMeanMillis(), stage.getPercentileMillis(50), stage.getPercentileMillis(95),
+                    stage.getMaxMillis()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Tells the workers to exit, waits briefly for the local ones, and stops accepting
+     */
+    @Override
+    public void close() {
+        List<Worker> remaining;
+        List<Process> local;
+        synchronized (lock) {
+            closed = true;
+            remaining = new ArrayList<>(workers);
+            local = new ArrayList<>(processes);
+        }
+        for (Worker worker : remaining) {
+            try {
+                WorkerProtocol.send(worker.out, new JSONObject().put("type", WorkerProtocol.FINISH));
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Nothing more to accept either way
+        }
+        long deadline = System.currentTimeMillis() + EXIT_WAIT_MILLIS;
+        for (Process process : local) {
+            try {
+                if (!process.waitFor(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the address remote workers should use, for printing
+     */
+    String describeAddress() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + getPort();
+        } catch (IOException e) {
+            return "localhost:" + getPort();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.zapio;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A process that generates study packs for a {@link BatchCoordinator}.
+ *
+ * Usage: java -jar zapio.jar --worker host:port --token TOKEN [--slots N] [--requests N] [--extractors N]
+ *
+ * The worker connects to the coordinator and asks for one job per free slot.
+ * Each job arrives with the document's content, goes through a local
+ * {@link StudyPackPipeline} in a temporary directory, and the exported files
+ * go back with the result, so the worker needs no access to the
+ * coordinator's files. A heartbeat goes out every few seconds while the
+ * worker is connected. The worker exits when the coordinator says it is
+ * finished or the connection is lost.
+ */
+public class BatchWorker {
+
+    private static final int DEFAULT_SLOTS = 2;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Path workDirectory;
+
+    private BatchWorker(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.workDirectory = Files.createTempDirectory("zapio-worker");
+    }
+
+    public static void main(String[] args) {
+        String address = null;
+        String token = null;
+        int slots = DEFAULT_SLOTS;
+        int requests = ZapioBatch.DEFAULT_REQUESTS;
+        int extractors = Runtime.getRuntime().availableProcessors();
+        String host;
+        int port;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--token":
+                        token = args[++i];
+                        break;
+                    case "--slots":
+                        slots = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--requests":
+                        requests = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--extractors":
+                        extractors = ZapioBatch.positive(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || address != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        address = args[i];
+                        break;
+                }
+            }
+            if (address == null || token == null || address.lastIndexOf(':') < 0) {
+                throw new IllegalArgumentException("Expected host:port and --token");
+            }
+            host = address.substring(0, address.lastIndexOf(':'));
+            port = ZapioBatch.positive(address.substring(address.lastIndexOf(':') + 1));
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage: java -jar zapio.jar --worker host:port --token TOKEN [--slots N]"
+                    + " [--requests N] [--extractors N]");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            StudyPackPipeline.Generators generators = StudyPackPipeline.apiGenerators();
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            BatchWorker worker = new BatchWorker(socket);
+            worker.run(token, slots, generators, extractors, requests);
+            System.exit(0);
+        } catch (IOException e) {
+            System.err.println("Worker stopped: " + (e.getMessage() != null ? e.getMessage() : "connection closed"));
+            System.exit(1);
+        } catch (RuntimeException e) {
+            // Most likely the API key
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void run(String token, int slots, StudyPackPipeline.Generators generators, int extractors, int requests)
+            throws IOException {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        WorkerProtocol.send(out, new JSONObject()
+                .put("type", WorkerProtocol.HELLO)
+                .put("token", token)
+                .put("name", name)
+                .put("slots", slots));
+        WorkerProtocol.Message welcome = WorkerProtocol.receive(in, WorkerProtocol.WELCOME, WorkerProtocol.REFUSED);
+        if (!welcome.type().equals(WorkerProtocol.WELCOME)) {
+            throw new IOException("Coordinator refused the worker: " + welcome.header.optString("error"));
+        }
+
+        Set<StudyPackExporter.Format> formats = EnumSet.noneOf(StudyPackExporter.Format.class);
+        JSONArray formatNames = welcome.header.getJSONArray("formats");
+        for (int i = 0; i < formatNames.length(); i++) {
+            formats.add(StudyPackExporter.Format.valueOf(formatNames.getString(i)));
+        }
+
+        try (StudyPackPipeline pipeline = new StudyPackPipeline(generators, formats, null, extractors, requests, slots)) {
+            pipeline.setTenant(new UpstreamScheduler.Tenant(welcome.header.getString("tenant"),
+                    UpstreamScheduler.Tenant.BATCH_WEIGHT));
+            startHeartbeat();
+            for (int i = 0; i < slots; i++) {
+                WorkerProtocol.send(out, new JSONObject().put("type", WorkerProtocol.TAKE));
+            }
+
+            while (true) {
+                WorkerProtocol.Message message = WorkerProtocol.receive(in, WorkerProtocol.JOB, WorkerProtocol.FINISH);
+                if (message.type().equals(WorkerProtocol.FINISH)) {
+                    return;
+                }
+                if (message.type().equals(WorkerProtocol.JOB)) {
+                    start(pipeline, message);
+                }
+            }
+        } finally {
+            socket.close();
+            deleteTree(workDirectory);
+        }
+    }
+
+    private void startHeartbeat() {
+        Thread heartbeat = new Thread(() -> {
+            JSONObject beat = new JSONObject().put("type", WorkerProtocol.HEARTBEAT);
+            try {
+                while (!socket.isClosed()) {
+                    WorkerProtocol.send(out, beat);
+                    Thread.sleep(WorkerProtocol.HEARTBEAT_MILLIS);
+                }
+            } catch (IOException | InterruptedException e) {
+                // The connection is gone; the main loop notices as well
+            }
+        }, "worker-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+    }
+
+    /**
+     * Saves the job's document and sends it through the pipeline; the result goes back when it is done
+     */
+    private void start(StudyPackPipeline pipeline, WorkerProtocol.Message message) throws IOException {
+        int id = message.header.getInt("job");
+        Path jobDirectory = Files.createDirectories(workDirectory.resolve(String.valueOf(id)));
+        File document = jobDirectory.resolve(new File(message.header.getString("name")).getName()).toFile();
+        Files.write(document.toPath(), message.payload);
+        try {
+            pipeline.submit(document, jobDirectory.resolve("out").toFile(), message.header.getString("baseName"))
+                    .thenAccept(result -> {
+                        try {
+                            sendResult(id, result);
+                            WorkerProtocol.send(out, new JSONObject().put("type", WorkerProtocol.TAKE));
+                        } catch (IOException e) {
+                            System.err.println("Error sending result of job " + id + ": " + e.getMessage());
+                        } finally {
+                            deleteTree(jobDirectory);
+                        }
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private void sendResult(int id, StudyPackPipeline.Result result) throws IOException {
+        JSONObject header = new JSONObject()
+                .put("type", WorkerProtocol.RESULT)
+                .put("job", id)
+                .put("status", result.getStatus().name());
+        if (result.getError() != null) {
+            header.put("error", String.valueOf(result.getError().getMessage()));
+        }
+        JSONObject stages = new JSONObject();
+        for (Map.Entry<String, Long> stage : result.getStageNanos().entrySet()) {
+            stages.put(stage.getKey(), stage.getValue());
+        }
+        header.put("stageNanos", stages);
+
+        // The exported files, one after another, with their sizes in the header
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        JSONArray outputs = new JSONArray();
+        for (Map.Entry<StudyPackExporter.Format, File> output : result.getOutputs().entrySet()) {
+            byte[] bytes = Files.readAllBytes(output.getValue().toPath());
+            outputs.put(new JSONObject().put("format", output.getKey().name()).put("size", bytes.length));
+            payload.write(bytes);
+        }
+        header.put("outputs", outputs);
+        if (payload.size() > WorkerProtocol.MAX_PACK_BYTES) {
+            // The coordinator would drop the connection; report the job as failed instead
+            header.put("status", StudyPackPipeline.Status.FAILED.name())
+                    .put("error", "Exported files are larger than " + WorkerProtocol.MAX_PACK_BYTES / (1024 * 1024) + " MB")
+                    .put("outputs", new JSONArray());
+            WorkerProtocol.send(out, header);
+            return;
+        }
+        WorkerProtocol.send(out, header, payload.toByteArray());
+    }
+
+    private static void deleteTree(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // Temporary files; nothing else to do
+        }
+    }
+}
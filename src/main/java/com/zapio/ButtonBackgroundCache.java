@@ -0,0 +1,97 @@
+package com.zapio;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the painted background of one button, one image per button state.
+ *
+ * Each image remembers the size, display scale and colors it was painted
+ * with and is painted again only when one of them changes, so hovering
+ * and pressing a button just copies an image. Owners call {@link #clear()}
+ * when the look and feel changes.
+ */
+public class ButtonBackgroundCache {
+
+    /**
+     * Button states with their own background
+     */
+    public enum State { NORMAL, HOVER, PRESSED, DISABLED }
+
+    /**
+     * Paints a background at the given size, in user space
+     */
+    public interface BackgroundPainter {
+        void paint(Graphics2D g2, int width, int height);
+    }
+
+    private final Map<State, CachedImage> images = new EnumMap<>(State.class);
+
+    /**
+     * Paints the background for a state, rendering it first if the cached
+     * image is missing or was made for another size, scale or colors
+     * @param colors Everything besides size and scale the background depends on
+     */
+    public void paint(Graphics g, State state, int width, int height, Object colors, BackgroundPainter painter) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        double scale = Math.max(1.0, Math.max(transform.getScaleX(), transform.getScaleY()));
+
+        CachedImage cached = images.get(state);
+        if (cached == null || !cached.matches(width, height, scale, colors)) {
+            if (cached != null) {
+                cached.image.flush();
+            }
+            cached = new CachedImage(width, height, scale, colors, painter);
+            images.put(state, cached);
+        }
+        g.drawImage(cached.image, 0, 0, width, height, null);
+    }
+
+    /**
+     * Drops all cached images
+     */
+    public void clear() {
+        for (CachedImage cached : images.values()) {
+            cached.image.flush();
+        }
+        images.clear();
+    }
+
+    /**
+     * A background painted for one size, scale and set of colors
+     */
+    private static class CachedImage {
+        final int width;
+        final int height;
+        final double scale;
+        final Object colors;
+        final BufferedImage image;
+
+        CachedImage(int width, int height, double scale, Object colors, BackgroundPainter painter) {
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.colors = colors;
+
+            image = new BufferedImage((int) Math.ceil(width * scale), (int) Math.ceil(height * scale),
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = image.createGraphics();
+            g2.scale(scale, scale);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            painter.paint(g2, width, height);
+            g2.dispose();
+        }
+
+        boolean matches(int width, int height, double scale, Object colors) {
+            return this.width == width && this.height == height
+                    && Double.compare(this.scale, scale) == 0 && Objects.equals(this.colors, colors);
+        }
+    }
+}
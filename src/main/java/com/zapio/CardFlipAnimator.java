@@ -0,0 +1,216 @@
+package com.zapio;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flips a card component between two faces.
+ *
+ * Both faces are painted into images once, and while the flip runs the card
+ * paints a horizontally scaled copy of one of them instead of its children.
+ * No layout happens during the animation. Progress follows elapsed time, so a
+ * slow frame shortens the animation rather than stretching it.
+ * Frames come from the shared AnimationScheduler, which runs at up to 60 fps
+ * and pauses the flip while the card isn't visible.
+ *
+ * The card must delegate its paint method to {@link #paint(Graphics)}.
+ * Set the system property zapio.animation.stats=true to print frame timing
+ * after every flip.
+ */
+public class CardFlipAnimator {
+
+    /**
+     * Receives the time between consecutive animation frames
+     */
+    public interface FrameTimeListener {
+        void frameRendered(long frameNanos);
+    }
+
+    private static final long FLIP_NANOS = 300_000_000L;
+    private static final boolean PRINT_STATS = Boolean.getBoolean("zapio.animation.stats");
+
+    private final JComponent card;
+    private final AnimationScheduler.Animation animation = this::update;
+    private final List<FrameTimeListener> frameTimeListeners = new ArrayList<>();
+
+    // Face snapshots for the current card size, keyed by the caller
+    private final Map<Object, BufferedImage> snapshots = new HashMap<>();
+    private Dimension snapshotSize;
+
+    private BufferedImage fromImage;
+    private BufferedImage toImage;
+    private double progress;
+    private long lastFrameNanos;
+    private final List<Long> frameTimes = new ArrayList<>();
+
+    public CardFlipAnimator(JComponent card) {
+        this.card = card;
+    }
+
+    public void addFrameTimeListener(FrameTimeListener listener) {
+        frameTimeListeners.add(listener);
+    }
+
+    public void removeFrameTimeListener(FrameTimeListener listener) {
+        frameTimeListeners.remove(listener);
+    }
+
+    public boolean isRunning() {
+        return fromImage != null;
+    }
+
+    /**
+     * Flips from the face that is showing to the one produced by swapFaces
+     * @param fromKey Snapshot cache key of the face currently shown
+     * @param toKey Snapshot cache key of the face shown afterwards
+     * @param swapFaces Updates the card's children to show the other face
+     */
+    public void flip(Object fromKey, Object toKey, Runnable swapFaces) {
+        finish();
+        if (!card.isShowing() || card.getWidth() <= 0 || card.getHeight() <= 0) {
+            swapFaces.run();
+            return;
+        }
+
+        if (!card.getSize().equals(snapshotSize)) {
+            clearSnapshots();
+            snapshotSize = card.getSize();
+        }
+        BufferedImage from = snapshot(fromKey);
+        swapFaces.run();
+        // Lays out the new face once, rather than on every frame
+        card.validate();
+        BufferedImage to = snapshot(toKey);
+
+        fromImage = from;
+        toImage = to;
+        progress = 0.0;
+        lastFrameNanos = 0;
+        frameTimes.clear();
+        AnimationScheduler.getInstance().start(card, animation);
+        card.repaint();
+    }
+
+    /**
+     * Jumps to the end of a running flip
+     */
+    public void finish() {
+        if (isRunning()) {
+            stop();
+        }
+    }
+
+    /**
+     * Drops cached face images, e.g. after the card's content changed
+     */
+    public void clearSnapshots() {
+        for (BufferedImage image : snapshots.values()) {
+            image.flush();
+        }
+        snapshots.clear();
+    }
+
+    /**
+     * Paints the current animation frame
+     * @return false if no flip is running and the card should paint itself
+     */
+    public boolean paint(Graphics g) {
+        if (!isRunning()) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        BufferedImage face = progress < 0.5 ? fromImage : toImage;
+
+        // Width follows the cosine of the rotation angle
+        int width = card.getWidth();
+        int height = card.getHeight();
+        int scaledWidth = (int) Math.round(width * Math.abs(Math.cos(Math.PI * progress)));
+        if (scaledWidth > 0) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(face, (width - scaledWidth) / 2, 0, scaledWidth, height, null);
+            g2.dispose();
+        }
+
+        if (lastFrameNanos != 0) {
+            long frameNanos = now - lastFrameNanos;
+            frameTimes.add(frameNanos);
+            for (FrameTimeListener listener : frameTimeListeners) {
+                listener.frameRendered(frameNanos);
+            }
+        }
+        lastFrameNanos = now;
+        return true;
+    }
+
+    private boolean update(long elapsedNanos) {
+        progress = Math.min(1.0, elapsedNanos / (double) FLIP_NANOS);
+        if (progress >= 1.0) {
+            // The scheduler's repaint shows the real component again
+            stop();
+            return false;
+        }
+        return true;
+    }
+
+    private void stop() {
+        AnimationScheduler.getInstance().stop(animation);
+        fromImage = null;
+        toImage = null;
+        if (PRINT_STATS) {
+            printStats();
+        }
+        card.repaint();
+    }
+
+    /**
+     * Returns the cached image of a face, painting the card as it is now if needed
+     */
+    private BufferedImage snapshot(Object key) {
+        BufferedImage image = snapshots.get(key);
+        if (image != null) {
+            return image;
+        }
+
+        // Match the screen's scale so the snapshot stays sharp on HiDPI displays
+        double scaleX = 1.0;
+        double scaleY = 1.0;
+        GraphicsConfiguration configuration = card.getGraphicsConfiguration();
+        if (configuration != null) {
+            AffineTransform transform = configuration.getDefaultTransform();
+            scaleX = transform.getScaleX();
+            scaleY = transform.getScaleY();
+        }
+
+        image = new BufferedImage((int) Math.ceil(card.getWidth() * scaleX),
+                (int) Math.ceil(card.getHeight() * scaleY), BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = image.createGraphics();
+        g2.scale(scaleX, scaleY);
+        card.paint(g2);
+        g2.dispose();
+        snapshots.put(key, image);
+        return image;
+    }
+
+    private void printStats() {
+        if (frameTimes.isEmpty()) {
+            return;
+        }
+        long total = 0;
+        long worst = 0;
+        for (long frameNanos : frameTimes) {
+            total += frameNanos;
+            worst = Math.max(worst, frameNanos);
+        }
+        double averageMs = total / 1_000_000.0 / frameTimes.size();
+        System.out.printf("Card flip: %d frames, %.1f fps, average %.1f ms, worst %.1f ms%n",
+                frameTimes.size() + 1, 1000.0 / averageMs, averageMs, worst / 1_000_000.0);
+    }
+}
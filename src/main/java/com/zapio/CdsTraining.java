@@ -0,0 +1,151 @@
+package com.zapio;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training run for the class-data-sharing archive built by the Maven package phase.
+ *
+ * Usage: java -Djava.awt.headless=true -cp zapio.jar com.zapio.CdsTraining
+ *
+ * Does what a typical session does on startup, without a window or network:
+ * loads the bundled fonts and images, builds the upload and selection
+ * screens, previews and extracts a sample PDF, DOCX and TXT, and prepares
+ * and parses an API request. Every class loaded along the way goes into the
+ * archive, so later launches map them in instead of loading them one by one.
+ */
+public class CdsTraining {
+
+    private static final String SAMPLE_TEXT = "Photosynthesis converts light energy into chemical energy. "
+            + "Chlorophyll absorbs mostly blue and red light, and the Calvin cycle fixes carbon dioxide into sugars.";
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        Path sampleDir = Files.createTempDirectory("zapio-cds");
+        try {
+            File pdf = writeSamplePdf(sampleDir.resolve("sample.pdf").toFile());
+            File docx = writeSampleDocx(sampleDir.resolve("sample.docx").toFile());
+            File txt = sampleDir.resolve("sample.txt").toFile();
+            Files.write(txt.toPath(), SAMPLE_TEXT.getBytes(StandardCharsets.UTF_8));
+
+            UploadScreen.preloadResources();
+            Resources.preload();
+
+            SelectionScreen[] selectionScreen = new SelectionScreen[1];
+            SwingUtilities.invokeAndWait(() -> {
+                new UploadScreen(null);
+                selectionScreen[0] = new SelectionScreen(null);
+            });
+
+            for (File file : new File[] {pdf, docx, txt}) {
+                SwingUtilities.invokeAndWait(() -> selectionScreen[0].loadDocument(file));
+                awaitPreview();
+
+                DocumentSession session = new DocumentSession(file);
+                try {
+                    session.getText();
+                    session.getPageCount();
+                } finally {
+                    session.close();
+                }
+            }
+            SwingUtilities.invokeAndWait(() -> selectionScreen[0].closeDocument());
+
+            exerciseApiClient();
+        } finally {
+            for (File file : sampleDir.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(sampleDir);
+        }
+        System.out.printf("CDS training run finished in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        System.exit(0);
+    }
+
+    /**
+     * Waits for the background preview work and the EDT updates it posts
+     */
+    private static void awaitPreview() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            ForkJoinPool.commonPool().awaitQuiescence(30, TimeUnit.SECONDS);
+            SwingUtilities.invokeAndWait(() -> { });
+        }
+    }
+
+    private static File writeSamplePdf(File file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int pageIndex = 0; pageIndex < 2; pageIndex++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA_BOLD, 16);
+                    content.newLineAtOffset(72, 720);
+                    content.showText("Chapter " + (pageIndex + 1));
+                    content.setFont(PDType1Font.TIMES_ROMAN, 11);
+                    for (String sentence : SAMPLE_TEXT.split("(?<=\\.) ")) {
+                        content.newLineAtOffset(0, -18);
+                        content.showText(sentence);
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    private static File writeSampleDocx(File file) throws IOException {
+        try (XWPFDocument document = new XWPFDocument();
+             OutputStream out = new FileOutputStream(file)) {
+            XWPFParagraph heading = document.createParagraph();
+            heading.setStyle("Heading1");
+            heading.createRun().setText("Photosynthesis");
+            for (String sentence : SAMPLE_TEXT.split("(?<=\\.) ")) {
+                document.createParagraph().createRun().setText(sentence);
+            }
+            document.write(out);
+        }
+        return file;
+    }
+
+    /**
+     * Builds a chat completion request and parses a canned response, without sending anything
+     */
+    private static void exerciseApiClient() throws IOException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", "training");
+        requestBody.put("messages", new JSONArray().put(new JSONObject().put("role", "user").put("content", SAMPLE_TEXT)));
+        // Creating the client loads its connection classes; nothing is sent
+        HttpClients.createDefault().close();
+        HttpPost request = new HttpPost("https://openrouter.ai/api/v1/chat/completions");
+        request.setHeader("Content-Type", "application/json");
+        request.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
+
+        String response = "{\"choices\":[{\"message\":{\"content\":"
+                + "\"[{\\\"question\\\": \\\"What does chlorophyll absorb?\\\", \\\"answer\\\": \\\"Blue and red light\\\"}]\"}}]}";
+        String content = new JSONObject(response).getJSONArray("choices").getJSONObject(0)
+                .getJSONObject("message").getString("content");
+        new JSONArray(content).getJSONObject(0).getString("question");
+    }
+}
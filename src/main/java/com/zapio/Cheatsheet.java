@@ -0,0 +1,212 @@
+package com.zapio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A generated cheatsheet parsed into sections.
+ *
+ * The generator asks for plain text with ALL-CAPS section titles, Title
+ * Case subsection titles, numbered items and lettered sub-items, so that is
+ * what the parser looks for. Anything else becomes plain text, attached to
+ * the item above it when there's no blank line in between. Stray markdown
+ * (backticks, # headings, - bullets) is tolerated.
+ */
+public class Cheatsheet {
+
+    /**
+     * What a line of the cheatsheet is
+     */
+    public enum Kind { SUBHEADING, ITEM, SUB_ITEM, TEXT }
+
+    /**
+     * One line of a section, with the lines nested under it
+     */
+    public static class Entry {
+        private final Kind kind;
+        private final String marker;
+        private final String text;
+        private final List<Entry> children = new ArrayList<>();
+
+        Entry(Kind kind, String marker, String text) {
+            this.kind = kind;
+            this.marker = marker;
+            this.text = text;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the list marker including its trailing space, such as "1. ", or "" if there is none
+         */
+        public String getMarker() {
+            return marker;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<Entry> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+    }
+
+    /**
+     * A titled section and its entries. Text before the first title goes into
+     * a section without one.
+     */
+    public static class Section {
+        private final String title;
+        private final List<Entry> entries = new ArrayList<>();
+
+        Section(String title) {
+            this.title = title;
+        }
+
+        /**
+         * Returns the section title, or null for text before the first title
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        public List<Entry> getEntries() {
+            return Collections.unmodifiableList(entries);
+        }
+    }
+
+    private static final Pattern NUMBER_MARKER = Pattern.compile("^(\\d+[.)])\\s+");
+    private static final Pattern LETTER_MARKER = Pattern.compile("^([a-zA-Z][.)])\\s+");
+    private static final Pattern BULLET_MARKER = Pattern.compile("^([-*•])\\s+");
+    private static final int MAX_SUBHEADING_LENGTH = 60;
+
+    private final List<Section> sections;
+    private final String text;
+
+    private Cheatsheet(List<Section> sections, String text) {
+        this.sections = sections;
+        this.text = text;
+    }
+
+    /**
+     * Parses the generator's response
+     */
+    public static Cheatsheet parse(String rawText) {
+        // Remove markdown code markers
+        String text = rawText.replace("```", "").replace("`", "");
+
+        List<Section> sections = new ArrayList<>();
+        Section section = null;
+        Entry item = null;     // The item later sub-items and text belong to
+        Entry lastLine = null; // The entry on the line above, null after a blank line
+        for (String line : text.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                lastLine = null;
+                continue;
+            }
+
+            boolean markdownHeading = trimmed.startsWith("#");
+            if (markdownHeading) {
+                trimmed = trimmed.replaceFirst("^#+\\s*", "");
+            }
+            String unmarked = NUMBER_MARKER.matcher(trimmed).replaceFirst("");
+            if (markdownHeading || isAllCaps(unmarked)) {
+                section = new Section(trimmed);
+                sections.add(section);
+                item = null;
+                lastLine = null;
+                continue;
+            }
+            if (section == null) {
+                section = new Section(null);
+                sections.add(section);
+            }
+
+            Matcher number = NUMBER_MARKER.matcher(trimmed);
+            Matcher letter = LETTER_MARKER.matcher(trimmed);
+            Matcher bullet = BULLET_MARKER.matcher(trimmed);
+            Matcher marker = number.lookingAt() ? number
+                    : letter.lookingAt() ? letter
+                    : bullet.lookingAt() ? bullet : null;
+            Entry entry;
+            if (marker != null) {
+                String markerText = marker.group(1) + " ";
+                String body = trimmed.substring(marker.end());
+                if (marker != number && item != null) {
+                    entry = new Entry(Kind.SUB_ITEM, markerText, body);
+                    item.children.add(entry);
+                } else {
+                    entry = new Entry(Kind.ITEM, markerText, body);
+                    section.entries.add(entry);
+                    item = entry;
+                }
+            } else if (item != null && lastLine != null && (lastLine == item || item.children.contains(lastLine))) {
+                // Text right under an item or its sub-items belongs to that item
+                entry = new Entry(Kind.TEXT, "", trimmed);
+                item.children.add(entry);
+            } else if (isSubheading(trimmed)) {
+                entry = new Entry(Kind.SUBHEADING, "", trimmed);
+                section.entries.add(entry);
+                item = null;
+            } else {
+                entry = new Entry(Kind.TEXT, "", trimmed);
+                section.entries.add(entry);
+                item = null;
+            }
+            lastLine = entry;
+        }
+        return new Cheatsheet(sections, text);
+    }
+
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * Returns the cheatsheet as plain text, with markdown code markers removed
+     */
+    public String getText() {
+        return text;
+    }
+
+    private static boolean isAllCaps(String line) {
+        int letters = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLowerCase(c)) {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                letters++;
+            }
+        }
+        return letters >= 3;
+    }
+
+    /**
+     * A short line in Title Case without closing punctuation, such as "Key Terms"
+     */
+    private static boolean isSubheading(String line) {
+        if (line.length() > MAX_SUBHEADING_LENGTH || !Character.isUpperCase(line.charAt(0))) {
+            return false;
+        }
+        char last = line.charAt(line.length() - 1);
+        if (last == '.' || last == '?' || last == '!' || last == ',' || last == ';') {
+            return false;
+        }
+        for (String word : line.split("\\s+")) {
+            // Short words like "of" and "and" stay lowercase in titles
+            if (word.length() > 3 && Character.isLowerCase(word.charAt(0))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,120 +1,63 @@
 package com.zapio;
 
-import io.github.cdimascio.dotenv.Dotenv;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Generator for comprehensive cheatsheets using Gemini API
  */
 public class CheatsheetGenerator {
-    private static final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
-    private static final String MODEL = "google/gemini-2.0-flash-exp:free";
-    private String apiKey;
+    private final OpenRouterClient client;
     
     public CheatsheetGenerator() {
-        // Load API key from .env file
-        try {
-            Dotenv dotenv = Dotenv.configure().load();
-            apiKey = dotenv.get("OPENROUTER_API_KEY");
-            if (apiKey == null || apiKey.isEmpty()) {
-                throw new IllegalStateException("OPENROUTER_API_KEY not found in .env file");
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading API key from .env file: " + e.getMessage());
-            throw new RuntimeException("Failed to load API key. Please ensure the .env file exists with OPENROUTER_API_KEY defined.", e);
-        }
+        // Loads the API key from the .env file the first time
+        client = OpenRouterClient.getInstance();
     }
     
     /**
      * Generate a cheatsheet asynchronously from the provided document
-     * @param documentFile File to generate cheatsheet from
+     * @param session Session of the document to generate the cheatsheet from
      * @return CompletableFuture containing the generated cheatsheet text
      */
-    public CompletableFuture<String> generateCheatsheetAsync(File documentFile) {
+    public CompletableFuture<String> generateCheatsheetAsync(DocumentSession session) {
+        // Borrow the session until generation finishes
+        session.acquire();
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Extract text from document
-                String documentText = extractTextFromDocument(documentFile);
-                
-                // Truncate if too long
-                if (documentText.length() > 15000) {
-                    documentText = documentText.substring(0, 15000);
-                }
-                
-                // Generate cheatsheet via API
-                return callGeminiAPI(documentText);
+                // Text is extracted once per session and shared
+                return generateCheatsheet(session.getText());
             } catch (Exception e) {
                 System.err.println("Error generating cheatsheet: " + e.getMessage());
                 e.printStackTrace();
                 return "Error generating cheatsheet. Please try again.";
+            } finally {
+                session.release();
             }
         });
     }
     
     /**
-     * Extract text from various document formats
+     * Generates a cheatsheet from document text on the calling thread
+     * @throws IOException if the API request fails or the reply is empty
      */
-    private String extractTextFromDocument(File file) throws IOException {
-        String fileName = file.getName().toLowerCase();
+    public String generateCheatsheet(String documentText) throws IOException {
+        // Truncate if too long
+        if (documentText.length() > 15000) {
+            documentText = documentText.substring(0, 15000);
+        }
         
-        if (fileName.endsWith(".pdf")) {
-            try (PDDocument document = PDDocument.load(file)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                return stripper.getText(document);
-            }
-        } else if (fileName.endsWith(".docx")) {
-            try (FileInputStream fis = new FileInputStream(file);
-                 XWPFDocument document = new XWPFDocument(fis);
-                 XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-                return extractor.getText();
-            }
-        } else if (fileName.endsWith(".txt")) {
-            return new String(Files.readAllBytes(Paths.get(file.getAbsolutePath())), StandardCharsets.UTF_8);
-        } else {
-            throw new IOException("Unsupported file format: " + fileName);
+        // Generate cheatsheet via API
+        String cheatsheet = callGeminiAPI(documentText);
+        if (cheatsheet.trim().isEmpty()) {
+            throw new IOException("The reply has no cheatsheet");
         }
+        return cheatsheet;
     }
     
     /**
      * Call the Gemini API to generate a cheatsheet
      */
     private String callGeminiAPI(String documentText) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPost request = new HttpPost(API_URL);
-        
-        // Set headers
-        request.setHeader("Content-Type", "application/json");
-        request.setHeader("Authorization", "Bearer " + apiKey);
-        request.setHeader("HTTP-Referer", "http://localhost:8080");
-        request.setHeader("X-Title", "Zapio Cheatsheet Generator");
-        
-        // Build request JSON
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("model", MODEL);
-        
-        JSONArray messages = new JSONArray();
-        JSONObject message = new JSONObject();
-        message.put("role", "user");
-        
         // Create prompt
         String prompt = "Create a comprehensive, well-structured cheatsheet based on the following document. " +
                 "IMPORTANT: Return the response in plain text only without any special characters or formatting. " +
@@ -131,37 +74,6 @@ public class CheatsheetGenerator {
                 "Make it visually scannable with consistent organization using only plain text. " +
                 "Here's the document:\n\n" + documentText;
         
-        JSONArray content = new JSONArray();
-        JSONObject textContent = new JSONObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
-        content.put(textContent);
-        
-        message.put("content", content);
-        messages.put(message);
-        requestBody.put("messages", messages);
-        
-        // Set request entity
-        request.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
-        
-        // Execute request
-        try (CloseableHttpResponse response = httpClient.execute(request)) {
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                String result = EntityUtils.toString(entity);
-                JSONObject jsonResponse = new JSONObject(result);
-                
-                // Extract the model's response from the JSON
-                String generatedContent = jsonResponse
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-                
-                return generatedContent;
-            }
-        }
-        
-        throw new IOException("Failed to get a valid response from the API");
+        return client.complete(prompt, "Zapio Cheatsheet Generator");
     }
 }
@@ -0,0 +1,197 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only text pane that shows a parsed {@link Cheatsheet}, a few sections at a time.
+ * Each batch of sections is inserted as styled paragraphs with a single
+ * document event, and the lazy layout kit only lays out the paragraphs that
+ * are on screen, so a very long cheatsheet is readable as soon as its first
+ * sections are in.
+ */
+public class CheatsheetPane extends JTextPane {
+    private static final long serialVersionUID = 1L;
+
+    private static final Color TEXT_COLOR = new Color(33, 33, 33);
+    private static final Color MARKER_COLOR = new Color(90, 90, 90);
+    private static final float ITEM_INDENT = 22f;
+    private static final float SUB_ITEM_INDENT = 48f;
+
+    /**
+     * A section title or subheading and where it starts in the document
+     */
+    public static class Heading {
+        private final String text;
+        private final int level;
+        private final int offset;
+
+        Heading(String text, int level, int offset) {
+            this.text = text;
+            this.level = level;
+            this.offset = offset;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns 1 for section titles and 2 for subheadings
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    private final SheetDocument sheetDocument;
+    private final Style bodyStyle;
+    private final Style markerStyle;
+    private final Style titleStyle;
+    private final Style subheadingStyle;
+    private final SimpleAttributeSet titleParagraph;
+    private final SimpleAttributeSet subheadingParagraph;
+    private final SimpleAttributeSet textParagraph;
+    private final SimpleAttributeSet itemParagraph;
+    private final SimpleAttributeSet itemTextParagraph;
+    private final SimpleAttributeSet subItemParagraph;
+
+    public CheatsheetPane() {
+        setEditorKit(new LazyLayoutEditorKit());
+        sheetDocument = new SheetDocument();
+        setDocument(sheetDocument);
+
+        setEditable(false);
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(10, 16, 10, 16));
+
+        // Define styles
+        bodyStyle = sheetDocument.addStyle("Body", sheetDocument.getStyle(StyleContext.DEFAULT_STYLE));
+        StyleConstants.setFontFamily(bodyStyle, "SansSerif");
+        StyleConstants.setFontSize(bodyStyle, 13);
+        StyleConstants.setForeground(bodyStyle, TEXT_COLOR);
+
+        markerStyle = sheetDocument.addStyle("Marker", bodyStyle);
+        StyleConstants.setBold(markerStyle, true);
+        StyleConstants.setForeground(markerStyle, MARKER_COLOR);
+
+        titleStyle = sheetDocument.addStyle("Title", bodyStyle);
+        StyleConstants.setFontSize(titleStyle, 17);
+        StyleConstants.setBold(titleStyle, true);
+        StyleConstants.setForeground(titleStyle, Color.BLACK);
+
+        subheadingStyle = sheetDocument.addStyle("Subheading", bodyStyle);
+        StyleConstants.setFontSize(subheadingStyle, 14);
+        StyleConstants.setBold(subheadingStyle, true);
+
+        // Paragraph spacing and indentation per kind of line; markers hang in the margin
+        titleParagraph = paragraph(0, 0, 18, 6);
+        subheadingParagraph = paragraph(0, 0, 10, 4);
+        textParagraph = paragraph(0, 0, 0, 6);
+        itemParagraph = paragraph(ITEM_INDENT, -ITEM_INDENT, 0, 4);
+        itemTextParagraph = paragraph(ITEM_INDENT, 0, 0, 4);
+        subItemParagraph = paragraph(SUB_ITEM_INDENT, -ITEM_INDENT, 0, 3);
+    }
+
+    private SimpleAttributeSet paragraph(float leftIndent, float firstLineIndent, float spaceAbove, float spaceBelow) {
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        attributes.setResolveParent(bodyStyle);
+        StyleConstants.setLeftIndent(attributes, leftIndent);
+        StyleConstants.setFirstLineIndent(attributes, firstLineIndent);
+        StyleConstants.setSpaceAbove(attributes, spaceAbove);
+        StyleConstants.setSpaceBelow(attributes, spaceBelow);
+        return attributes;
+    }
+
+    /**
+     * Appends sections to the end of the cheatsheet. Must be called on the EDT.
+     * @return The headings of the appended sections
+     */
+    public List<Heading> appendSections(List<Cheatsheet.Section> sections) {
+        if (sections.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return sheetDocument.appendSections(sections);
+        } catch (BadLocationException e) {
+            System.err.println("Error appending cheatsheet text: " + e.getMessage());
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Styled document that accepts whole batches of sections at once
+     */
+    private class SheetDocument extends DefaultStyledDocument {
+        private static final long serialVersionUID = 1L;
+
+        private final List<ElementSpec> specs = new ArrayList<>();
+        private int offset;
+
+        List<Heading> appendSections(List<Cheatsheet.Section> sections) throws BadLocationException {
+            specs.clear();
+            offset = getLength();
+            List<Heading> added = new ArrayList<>();
+            for (Cheatsheet.Section section : sections) {
+                if (section.getTitle() != null) {
+                    added.add(new Heading(section.getTitle(), 1, offset));
+                    addParagraph(titleParagraph, null, section.getTitle(), titleStyle);
+                }
+                for (Cheatsheet.Entry entry : section.getEntries()) {
+                    addEntry(entry, added);
+                }
+            }
+            insert(getLength(), specs.toArray(new ElementSpec[0]));
+            specs.clear();
+            return added;
+        }
+
+        private void addEntry(Cheatsheet.Entry entry, List<Heading> added) {
+            switch (entry.getKind()) {
+                case SUBHEADING:
+                    added.add(new Heading(entry.getText(), 2, offset));
+                    addParagraph(subheadingParagraph, null, entry.getText(), subheadingStyle);
+                    break;
+                case ITEM:
+                    addParagraph(itemParagraph, entry.getMarker(), entry.getText(), bodyStyle);
+                    break;
+                case SUB_ITEM:
+                    addParagraph(subItemParagraph, entry.getMarker(), entry.getText(), bodyStyle);
+                    break;
+                default:
+                    addParagraph(textParagraph, null, entry.getText(), bodyStyle);
+                    break;
+            }
+            for (Cheatsheet.Entry child : entry.getChildren()) {
+                if (child.getKind() == Cheatsheet.Kind.TEXT) {
+                    addParagraph(itemTextParagraph, null, child.getText(), bodyStyle);
+                } else {
+                    addEntry(child, added);
+                }
+            }
+        }
+
+        private void addParagraph(AttributeSet paragraph, String marker, String text, AttributeSet style) {
+            // Close the current paragraph, open a new one and fill it
+            specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+            specs.add(new ElementSpec(paragraph, ElementSpec.StartTagType));
+            if (marker != null && !marker.isEmpty()) {
+                char[] markerChars = marker.toCharArray();
+                specs.add(new ElementSpec(markerStyle, ElementSpec.ContentType, markerChars, 0, markerChars.length));
+                offset += markerChars.length;
+            }
+            char[] chars = (text + "\n").toCharArray();
+            specs.add(new ElementSpec(style, ElementSpec.ContentType, chars, 0, chars.length));
+            offset += chars.length;
+        }
+    }
+}
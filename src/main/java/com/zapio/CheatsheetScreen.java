@@ -3,32 +3,51 @@ package com.zapio;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
+import javax.swing.text.BadLocationException;
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.io.File;
-import java.io.IOException;
-
-// PDFBox imports for PDF export
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The CheatsheetScreen displays a comprehensive cheatsheet generated from the document
  * with a modern, minimal UI design.
+ *
+ * The cheatsheet is parsed into sections in the background and appended to
+ * the text pane a batch at a time, so the first sections show up right away
+ * however long it is. An outline of the section titles next to it jumps to a
+ * section and follows along while scrolling.
  */
-public class CheatsheetScreen extends JPanel {
-    private JTextPane cheatsheetTextPane;
+public class CheatsheetScreen extends JPanel implements ScreenLifecycle {
+    private CheatsheetPane cheatsheetPane;
     private JScrollPane scrollPane;
+    private RoundedButton exportButton;
+    private DefaultListModel<CheatsheetPane.Heading> outlineModel;
+    private JList<CheatsheetPane.Heading> outline;
+    private JScrollPane outlineScrollPane;
+    // The text the PDF export writes; set on the EDT once parsing is done
+    private String exportText;
+    private boolean disposed;
+    
+    // Set while the outline selection follows scrolling, so it doesn't jump back
+    private boolean syncingOutline;
+    // Where the last outline jump went; kept in view while layout estimates settle
+    private int jumpOffset = -1;
+    private Timer jumpSettleTimer;
+    private int lastPaneHeight;
+    private int stableTicks;
     
     private static final Color BACKGROUND_COLOR = Color.WHITE;
     private static final Color TEXT_COLOR = new Color(33, 33, 33); // Dark gray for better readability
     private static final Color ACCENT_COLOR = new Color(0, 0, 0); // Black for accents
     private static final int PADDING = 40;
+    private static final String TITLE = "One Sheet to Rule Them All";
+    private static final String EXPORT_LABEL = "Export as PDF";
+    private static final int PARAGRAPHS_PER_BATCH = 150;
+    private static final int OUTLINE_WIDTH = 220;
+    private static final int JUMP_SETTLE_INTERVAL_MILLIS = 100;
+    private static final int JUMP_SETTLE_STABLE_TICKS = 3;
     
     /**
      * Constructor
@@ -55,7 +74,7 @@ public class CheatsheetScreen extends JPanel {
         headerPanel.setBorder(new EmptyBorder(0, 0, 20, 0));
         
         // Create centered title with new text
-        JLabel titleLabel = new JLabel("One Sheet to Rule Them All");
+        JLabel titleLabel = new JLabel(TITLE);
         titleLabel.setFont(new Font("SansSerif", Font.BOLD, 36));
         titleLabel.setForeground(ACCENT_COLOR);
         titleLabel.setHorizontalAlignment(SwingConstants.CENTER); // Center the title text
@@ -69,24 +88,44 @@ public class CheatsheetScreen extends JPanel {
         add(headerPanel, BorderLayout.NORTH);
         
         // Create content area with text pane
-        cheatsheetTextPane = new JTextPane();
-        cheatsheetTextPane.setEditable(false);
-        cheatsheetTextPane.setBackground(BACKGROUND_COLOR);
-        cheatsheetTextPane.setFont(new Font("SansSerif", Font.PLAIN, 12)); // Reduced font size for better fit
-        cheatsheetTextPane.setForeground(TEXT_COLOR);
-        cheatsheetTextPane.setBorder(new EmptyBorder(10, 10, 10, 10));
-        
-        // Center align text (left-aligned paragraphs look better for content)
-        StyledDocument doc = cheatsheetTextPane.getStyledDocument();
-        SimpleAttributeSet left = new SimpleAttributeSet();
-        StyleConstants.setAlignment(left, StyleConstants.ALIGN_LEFT);
-        doc.setParagraphAttributes(0, doc.getLength(), left, false);
+        cheatsheetPane = new CheatsheetPane();
         
         // Create scroll pane for content
-        scrollPane = new JScrollPane(cheatsheetTextPane);
+        scrollPane = new JScrollPane(cheatsheetPane);
         scrollPane.setBorder(null);
         scrollPane.setOpaque(false);
         scrollPane.getViewport().setOpaque(false);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        scrollPane.getViewport().addChangeListener(e -> syncOutline());
+        scrollPane.addMouseWheelListener(e -> stopSettlingJump());
+        
+        // Keep an outline jump's target in view while the sections above it are measured
+        jumpSettleTimer = new Timer(JUMP_SETTLE_INTERVAL_MILLIS, e -> settleJump());
+        
+        // Outline of section titles for jumping around
+        outlineModel = new DefaultListModel<>();
+        outline = new JList<CheatsheetPane.Heading>(outlineModel) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            public boolean getScrollableTracksViewportWidth() {
+                return true; // Long titles are cut off instead of scrolling sideways
+            }
+        };
+        outline.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        outline.setBackground(BACKGROUND_COLOR);
+        outline.setCellRenderer(new OutlineRenderer());
+        outline.addListSelectionListener(e -> {
+            CheatsheetPane.Heading heading = outline.getSelectedValue();
+            if (!e.getValueIsAdjusting() && !syncingOutline && heading != null) {
+                jumpTo(heading.getOffset());
+            }
+        });
+        outlineScrollPane = new JScrollPane(outline, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        outlineScrollPane.setBorder(BorderFactory.createMatteBorder(0, 0, 0, 1, new Color(240, 240, 240)));
+        outlineScrollPane.setPreferredSize(new Dimension(OUTLINE_WIDTH, 0));
+        outlineScrollPane.setVisible(false); // Shown once there are headings
         
         // Add shadow border to the content area for subtle depth
         JPanel contentWrapper = new JPanel(new BorderLayout());
@@ -94,6 +133,7 @@ public class CheatsheetScreen extends JPanel {
         contentWrapper.setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createEmptyBorder(5, 5, 5, 5),
             BorderFactory.createLineBorder(new Color(240, 240, 240), 1, true)));
+        contentWrapper.add(outlineScrollPane, BorderLayout.WEST);
         contentWrapper.add(scrollPane, BorderLayout.CENTER);
         
         add(contentWrapper, BorderLayout.CENTER);
@@ -104,7 +144,7 @@ public class CheatsheetScreen extends JPanel {
         bottomPanel.setBorder(new EmptyBorder(20, 0, 0, 0));
         
         // Export PDF button
-        RoundedButton exportButton = new RoundedButton("Export as PDF", 25);
+        exportButton = new RoundedButton(EXPORT_LABEL, 25);
         exportButton.setFont(new Font("SansSerif", Font.BOLD, 16));
         exportButton.setPreferredSize(new Dimension(200, 50));
         exportButton.setBackground(new Color(76, 175, 80)); // Green color
@@ -117,8 +157,9 @@ public class CheatsheetScreen extends JPanel {
         homeButton.setBackground(ACCENT_COLOR);
         homeButton.setForeground(Color.WHITE);
         
-        // Add action listener for export button
-        exportButton.addActionListener(e -> exportToPDF(frame, cheatsheetTextPane.getText()));
+        // Add action listener for export button; enabled once the cheatsheet is parsed
+        exportButton.setEnabled(false);
+        exportButton.addActionListener(e -> exportToPDF(frame, exportText));
         
         // Add action listener for home button to restart the application
         homeButton.addActionListener(e -> AppRestarter.restartApplication(CheatsheetScreen.this));
@@ -134,32 +175,167 @@ public class CheatsheetScreen extends JPanel {
      * @param content The cheatsheet content to display
      */
     private void displayCheatsheet(String content) {
-        // Format and display the content
-        cheatsheetTextPane.setText(formatCheatsheet(content));
-        cheatsheetTextPane.setCaretPosition(0); // Scroll to top
+        // Parse in the background, then show the sections a batch at a time
+        CompletableFuture<Cheatsheet> parsedCheatsheet = CompletableFuture.supplyAsync(() -> Cheatsheet.parse(content));
+        parsedCheatsheet.whenCompleteAsync((cheatsheet, error) -> {
+            if (error != null) {
+                System.err.println("Error parsing cheatsheet: " + error.getMessage());
+                error.printStackTrace();
+                // The export doesn't need the sections; write the text as it came
+                exportText = content.replace("`", "");
+                exportButton.setEnabled(true);
+                return;
+            }
+            exportText = cheatsheet.getText();
+            exportButton.setEnabled(true);
+            appendSections(cheatsheet.getSections(), 0);
+        }, SwingUtilities::invokeLater);
+    }
+    
+    /**
+     * Appends the next batch of sections and schedules the rest, leaving the
+     * EDT free for painting and input between batches
+     */
+    private void appendSections(List<Cheatsheet.Section> sections, int from) {
+        if (disposed) {
+            return;
+        }
+        int to = from;
+        int paragraphs = 0;
+        while (to < sections.size() && paragraphs < PARAGRAPHS_PER_BATCH) {
+            paragraphs += countParagraphs(sections.get(to));
+            to++;
+        }
+        
+        for (CheatsheetPane.Heading heading : cheatsheetPane.appendSections(sections.subList(from, to))) {
+            outlineModel.addElement(heading);
+        }
+        if (from == 0) {
+            cheatsheetPane.setCaretPosition(0); // Scroll to top
+        }
+        if (!outlineModel.isEmpty() && !outlineScrollPane.isVisible()) {
+            outlineScrollPane.setVisible(true);
+            revalidate();
+        }
+        
+        if (to < sections.size()) {
+            int next = to;
+            SwingUtilities.invokeLater(() -> appendSections(sections, next));
+        }
+    }
+    
+    private static int countParagraphs(Cheatsheet.Section section) {
+        int count = 1;
+        for (Cheatsheet.Entry entry : section.getEntries()) {
+            count += 1 + entry.getChildren().size();
+        }
+        return count;
+    }
+    
+    /**
+     * Scrolls a heading to the top of the view. Paragraphs that haven't been
+     * laid out yet only have estimated heights, so the heading is scrolled to
+     * again until the text's height stops changing.
+     */
+    private void jumpTo(int offset) {
+        jumpOffset = offset;
+        lastPaneHeight = cheatsheetPane.getPreferredSize().height;
+        stableTicks = 0;
+        jumpSettleTimer.restart();
+        scrollToOffset(offset);
+    }
+    
+    private void settleJump() {
+        int height = cheatsheetPane.getPreferredSize().height;
+        stableTicks = height == lastPaneHeight ? stableTicks + 1 : 0;
+        lastPaneHeight = height;
+        scrollToOffset(jumpOffset);
+        if (stableTicks >= JUMP_SETTLE_STABLE_TICKS) {
+            stopSettlingJump();
+        }
+    }
+    
+    private void stopSettlingJump() {
+        jumpSettleTimer.stop();
+        jumpOffset = -1;
+    }
+    
+    private void scrollToOffset(int offset) {
+        try {
+            Rectangle2D bounds = cheatsheetPane.modelToView2D(offset);
+            if (bounds != null) {
+                JViewport viewport = scrollPane.getViewport();
+                int maxY = Math.max(0, cheatsheetPane.getHeight() - viewport.getExtentSize().height);
+                viewport.setViewPosition(new Point(0, Math.min((int) bounds.getY(), maxY)));
+            }
+        } catch (BadLocationException e) {
+            System.err.println("Error scrolling cheatsheet: " + e.getMessage());
+        }
     }
     
     /**
-     * Format the cheatsheet text with some basic styling
-     * @param rawText The raw text from Gemini API
-     * @return Formatted text
+     * Selects the outline entry of the section at the top of the view
      */
-    private String formatCheatsheet(String rawText) {
-        // Remove markdown formatting characters
-        String formatted = rawText;
+    private void syncOutline() {
+        if (outlineModel.isEmpty()) {
+            return;
+        }
+        Point top = scrollPane.getViewport().getViewPosition();
+        int offset = cheatsheetPane.viewToModel2D(new Point(0, top.y + 1));
         
-        // Remove markdown code block markers
-        formatted = formatted.replace("```", "");
-        formatted = formatted.replace("`", "");
+        // Last heading at or before the offset
+        int low = 0;
+        int high = outlineModel.size() - 1;
+        int index = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (outlineModel.get(middle).getOffset() <= offset) {
+                index = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
         
-        // Process any other markdown formatting if needed
-        // but keep the actual content and structure
+        if (index >= 0 && index != outline.getSelectedIndex()) {
+            syncingOutline = true;
+            outline.setSelectedIndex(index);
+            outline.ensureIndexIsVisible(index);
+            syncingOutline = false;
+        }
+    }
+    
+    @Override
+    public void dispose() {
+        disposed = true;
+        stopSettlingJump();
+    }
+    
+    /**
+     * Shows section titles in the outline, with subheadings indented under them
+     */
+    private static class OutlineRenderer extends DefaultListCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 12);
+        private static final Font SUBHEADING_FONT = new Font("SansSerif", Font.PLAIN, 12);
         
-        return formatted;
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            CheatsheetPane.Heading heading = (CheatsheetPane.Heading) value;
+            super.getListCellRendererComponent(list, heading.getText(), index, isSelected, false);
+            boolean title = heading.getLevel() == 1;
+            setFont(title ? TITLE_FONT : SUBHEADING_FONT);
+            setBorder(new EmptyBorder(title ? 8 : 3, title ? 12 : 26, 3, 10));
+            setForeground(isSelected ? Color.BLACK : TEXT_COLOR);
+            setBackground(isSelected ? new Color(235, 235, 235) : BACKGROUND_COLOR);
+            return this;
+        }
     }
     
     /**
-     * Export the cheatsheet content to a PDF file
+     * Export the cheatsheet content to a PDF file. The PDF is written in the
+     * background while the export button shows its progress.
      * 
      * @param frame The parent frame
      * @param content The cheatsheet content
@@ -170,97 +346,30 @@ public class CheatsheetScreen extends JPanel {
         fileChooser.setFileFilter(new FileNameExtensionFilter("PDF files", "pdf"));
         
         if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
-            File outputFile = fileChooser.getSelectedFile();
+            File selectedFile = fileChooser.getSelectedFile();
             // Add .pdf extension if not present
-            if (!outputFile.getName().toLowerCase().endsWith(".pdf")) {
-                outputFile = new File(outputFile.getAbsolutePath() + ".pdf");
-            }
+            File outputFile = selectedFile.getName().toLowerCase().endsWith(".pdf")
+                    ? selectedFile : new File(selectedFile.getAbsolutePath() + ".pdf");
             
-            try {
-                // Create PDF document
-                PDDocument document = new PDDocument();
-                PDPage page = new PDPage(PDRectangle.A4);
-                document.addPage(page);
-                
-                // Create content stream
-                PDPageContentStream contentStream = new PDPageContentStream(document, page);
-                
-                // Set font and font size
-                contentStream.setFont(PDType1Font.HELVETICA, 10); // Smaller font for PDF
-                
-                // Add title
-                contentStream.beginText();
-                contentStream.setFont(PDType1Font.HELVETICA_BOLD, 16);
-                contentStream.newLineAtOffset(100, 750);
-                contentStream.showText("One Sheet to Rule Them All");
-                contentStream.endText();
-                
-                // Format content for PDF (wrap text within page width)
-                float margin = 50;
-                float startY = 720;
-                // Width is used to determine how much text can fit on a line
-                // We're keeping this simple by using one line per input line
-                // but in a more advanced implementation, we'd use width for text wrapping
-                float fontSize = 10;
-                float leading = 1.5f * fontSize;
-                
-                // Split the content into lines
-                String[] lines = content.split("\n");
-                
-                contentStream.setFont(PDType1Font.HELVETICA, fontSize);
-                float currentY = startY;
-                
-                for (String line : lines) {
-                    // Skip empty lines
-                    if (line.trim().isEmpty()) {
-                        currentY -= leading;
-                        continue;
-                    }
-                    
-                    // Check if line starts with a header marker (##, ###)
-                    if (line.trim().startsWith("#")) {
-                        contentStream.beginText();
-                        contentStream.setFont(PDType1Font.HELVETICA_BOLD, fontSize);
-                        contentStream.newLineAtOffset(margin, currentY);
-                        contentStream.showText(line.trim());
-                        contentStream.endText();
+            exportButton.setEnabled(false);
+            exportButton.setText("Exporting...");
+            PdfExporter.exportAsync(TITLE, content, outputFile, (linesDone, totalLines) ->
+                    SwingUtilities.invokeLater(() -> exportButton.setText("Exporting " + (100 * linesDone / totalLines) + "%")))
+                .whenComplete((pages, error) -> SwingUtilities.invokeLater(() -> {
+                    exportButton.setText(EXPORT_LABEL);
+                    exportButton.setEnabled(true);
+                    if (error == null) {
+                        JOptionPane.showMessageDialog(frame, 
+                            "Cheatsheet exported successfully to: " + outputFile.getAbsolutePath(), 
+                            "Export Successful", JOptionPane.INFORMATION_MESSAGE);
                     } else {
-                        // Regular text
-                        contentStream.beginText();
-                        contentStream.setFont(PDType1Font.HELVETICA, fontSize);
-                        contentStream.newLineAtOffset(margin, currentY);
-                        contentStream.showText(line.trim());
-                        contentStream.endText();
-                    }
-                    
-                    currentY -= leading;
-                    
-                    // Check if we need a new page
-                    if (currentY <= margin) {
-                        contentStream.close();
-                        
-                        // Add a new page
-                        page = new PDPage(PDRectangle.A4);
-                        document.addPage(page);
-                        contentStream = new PDPageContentStream(document, page);
-                        currentY = startY;
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        JOptionPane.showMessageDialog(frame, 
+                            cause.getMessage(), 
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                        cause.printStackTrace();
                     }
-                }
-                
-                contentStream.close();
-                document.save(outputFile);
-                document.close();
-                
-                JOptionPane.showMessageDialog(frame, 
-                    "Cheatsheet exported successfully to: " + outputFile.getAbsolutePath(), 
-                    "Export Successful", JOptionPane.INFORMATION_MESSAGE);
-                
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(frame, 
-                    "Error exporting PDF: " + e.getMessage(), 
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-            }
+                }));
         }
     }
 }
@@ -1,6 +1,5 @@
 package com.zapio;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
@@ -11,10 +10,9 @@ import javax.swing.text.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A panel that displays a preview of a document (PDF, DOCX, TXT).
@@ -24,6 +22,16 @@ public class DocumentPreviewPanel extends JPanel {
     private JPanel pagesPanel; // Panel to hold individual page images for PDF
     private JScrollPane scrollPane;
     private Component currentView; // To keep track of what's currently in the scroll pane
+    private DocumentSession session; // Borrowed while its preview is shown
+    // Bumped on every load so background loads for an older document stop publishing
+    private volatile int loadGeneration = 0;
+
+    // Number of DOCX paragraphs handed to the EDT at a time
+    private static final int DOCX_CHUNK_SIZE = 200;
+
+    // Heap the rendered PDF page images may use; later pages are left out of the preview
+    private static final long PDF_PREVIEW_BUDGET_BYTES = Long.getLong("zapio.pdf.previewBudgetBytes",
+            Runtime.getRuntime().maxMemory() / 8);
 
     public DocumentPreviewPanel() {
         setLayout(new BorderLayout());
@@ -51,12 +59,22 @@ public class DocumentPreviewPanel extends JPanel {
      */
     private void clearPreviewArea() {
         if (currentView != null) {
+            // Stop indexing a mapped text file that is no longer shown
+            if (currentView instanceof MappedTextArea) {
+                ((MappedTextArea) currentView).close();
+            }
             // For text components, just remove them directly
             if (currentView instanceof JTextComponent) {
                  scrollPane.setViewportView(null);
             } 
             // For the pagesPanel (PDF), remove its contents
             else if (currentView == pagesPanel) {
+                 // Free the rendered page images now rather than whenever they're collected
+                 for (Component page : pagesPanel.getComponents()) {
+                     if (page instanceof JLabel && ((JLabel) page).getIcon() instanceof ImageIcon) {
+                         ((ImageIcon) ((JLabel) page).getIcon()).getImage().flush();
+                     }
+                 }
                  pagesPanel.removeAll();
                  pagesPanel.revalidate();
                  pagesPanel.repaint();
@@ -71,38 +89,57 @@ public class DocumentPreviewPanel extends JPanel {
              }
         }
         currentView = null;
+        // Give the document back so its handle can be closed
+        if (session != null) {
+            session.release();
+            session = null;
+        }
         // Reset scrollbar policies
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
     }
 
     /**
-     * Loads and displays a document file.
+     * Loads and displays a document.
      * Supports PDF, DOCX, and TXT files.
      * Clears previous content before loading.
-     * @param file The document file to load.
+     * @param documentSession The session of the document to preview; borrowed until the preview is cleared.
      */
-    public void loadDocument(File file) {
+    public void loadDocument(DocumentSession documentSession) {
+        loadGeneration++;
         clearPreviewArea(); // Clear previous content and reset state
 
-        if (file == null || !file.exists()) {
+        if (documentSession == null || !documentSession.getFile().exists()) {
             displayError("File not found or is invalid.");
             return;
         }
 
-        String fileName = file.getName().toLowerCase();
-
-        if (fileName.endsWith(".pdf")) {
-            loadPDFPreview(file);
-        } else if (fileName.endsWith(".docx")) {
-            loadDOCXPreview(file);
-        } else if (fileName.endsWith(".txt")) {
-            loadTXTPreview(file);
-        } else {
-            displayError("Unsupported file type: " + fileName);
+        switch (documentSession.getType()) {
+            case PDF:
+                session = documentSession.acquire();
+                loadPDFPreview(session);
+                break;
+            case DOCX:
+                session = documentSession.acquire();
+                loadDOCXPreview(session);
+                break;
+            case TXT:
+                session = documentSession.acquire();
+                loadTXTPreview(session.getFile());
+                break;
+            default:
+                displayError("Unsupported file type: " + documentSession.getFile().getName().toLowerCase());
         }
     }
 
+    /**
+     * Removes the current preview and releases its document
+     */
+    public void clear() {
+        loadGeneration++;
+        clearPreviewArea();
+    }
+
     /**
      * Creates rendering hints for PDF rendering
      * @return RenderingHints object with balanced settings for text clarity
@@ -115,7 +152,14 @@ public class DocumentPreviewPanel extends JPanel {
         return hints;
     }
     
-    private void loadPDFPreview(File file) {
+    /**
+     * Loads and displays a PDF file.
+     * Pages are rendered in the background, one at a time, and each page is
+     * added to the preview as soon as it is ready. The document lock is only
+     * held while a page renders, so the EDT never waits on text extraction.
+     * @param pdfSession The session of the PDF to display
+     */
+    private void loadPDFPreview(DocumentSession pdfSession) {
         // Ensure pagesPanel is the view for PDF
         if (currentView != pagesPanel) {
             scrollPane.setViewportView(pagesPanel);
@@ -127,181 +171,249 @@ public class DocumentPreviewPanel extends JPanel {
         // Reset layout for pagesPanel if it was changed by text views
         pagesPanel.setLayout(new BoxLayout(pagesPanel, BoxLayout.Y_AXIS));
         pagesPanel.setBackground(Color.WHITE);
-        
-        try (PDDocument document = PDDocument.load(file)) {
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            int numPages = document.getNumberOfPages();
-            
-            // Very low DPI for better overall readability
-            float dpi = 72f; // Lower DPI for clearer text with less processing
-
-            // Estimate panel width for initial scaling
-            int panelWidth = scrollPane.getViewport().getWidth() > 0 ? scrollPane.getViewport().getWidth() : 600;
-            // Reduced adjustment to give slightly more width for the image
-            panelWidth -= 15; // Adjust for scrollbar and padding
-
-            // Clear pagesPanel specifically (already done in clearPreviewArea, but good practice)
-            pagesPanel.removeAll(); 
-
-            // Apply rendering hints to PDFBox renderer
-            pdfRenderer.setRenderingHints(createRenderingHints());
-
-            for (int i = 0; i < numPages; i++) {
-                // Render the PDF page at higher DPI
-                BufferedImage originalImage = pdfRenderer.renderImageWithDPI(i, dpi);
-
-                // Calculate scaling to fit width while maintaining aspect ratio
-                double scale = (double) panelWidth / originalImage.getWidth();
-                int scaledWidth = panelWidth;
-                int scaledHeight = (int) (originalImage.getHeight() * scale);
-
-                // Create scaled image with better color model for text
-                BufferedImage scaledImage = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = scaledImage.createGraphics();
-                
-                // Set balanced rendering hints for the scaling operation
-                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_DEFAULT);
-                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-                // Fill with a clean white background
-                g.setColor(Color.WHITE);
-                g.fillRect(0, 0, scaledWidth, scaledHeight);
-                
-                // Draw the image with high-quality settings
-                g.drawImage(originalImage, 0, 0, scaledWidth, scaledHeight, null);
-                g.dispose();
-                
-                // Release memory of the large original image
+        // Clear pagesPanel specifically (already done in clearPreviewArea, but good practice)
+        pagesPanel.removeAll();
+
+        // Estimate panel width for initial scaling
+        int viewportWidth = scrollPane.getViewport().getWidth() > 0 ? scrollPane.getViewport().getWidth() : 600;
+        // Reduced adjustment to give slightly more width for the image
+        final int panelWidth = viewportWidth - 15; // Adjust for scrollbar and padding
+
+        final int generation = loadGeneration;
+        // The background render holds its own reference in case the preview is cleared first
+        pdfSession.acquire();
+        CompletableFuture.runAsync(() -> {
+            try {
+                renderPDFPages(pdfSession, panelWidth, generation);
+            } catch (Exception e) {
+                System.err.println("Error loading PDF: " + e.getMessage());
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == loadGeneration) {
+                        displayError("Error loading PDF: " + e.getMessage());
+                    }
+                });
+            } finally {
+                pdfSession.release();
+            }
+        });
+    }
+
+    /**
+     * Renders the PDF pages scaled to the panel width and hands each one to
+     * the EDT. Runs on a background thread.
+     */
+    private void renderPDFPages(DocumentSession pdfSession, int panelWidth, int generation) throws IOException {
+        // The session keeps the parsed PDF, so generation won't load it again
+        PDFRenderer pdfRenderer = pdfSession.withPdf(PDFRenderer::new);
+        int numPages = pdfSession.getPageCount();
+
+        // Very low DPI for better overall readability
+        float dpi = 72f; // Lower DPI for clearer text with less processing
+
+        // Apply rendering hints to PDFBox renderer
+        pdfRenderer.setRenderingHints(createRenderingHints());
+
+        long previewBytes = 0;
+        for (int i = 0; i < numPages; i++) {
+            // Stop early if another document was loaded in the meantime
+            if (generation != loadGeneration) {
+                return;
+            }
+
+            // Render the PDF page at higher DPI
+            final int pageIndex = i;
+            BufferedImage originalImage = pdfSession.withPdf(document -> pdfRenderer.renderImageWithDPI(pageIndex, dpi));
+
+            // Calculate scaling to fit width while maintaining aspect ratio
+            double scale = (double) panelWidth / originalImage.getWidth();
+            int scaledWidth = panelWidth;
+            int scaledHeight = (int) (originalImage.getHeight() * scale);
+
+            // Stop before the page images outgrow the preview budget
+            previewBytes += 4L * scaledWidth * scaledHeight;
+            if (i > 0 && previewBytes > PDF_PREVIEW_BUDGET_BYTES) {
                 originalImage.flush();
+                publishPDFNote("Preview shows the first " + i + " of " + numPages + " pages", generation);
+                break;
+            }
 
-                JLabel pageLabel = new JLabel(new ImageIcon(scaledImage));
-                pageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-                pagesPanel.add(pageLabel);
-                pagesPanel.add(Box.createVerticalStrut(10)); // Spacing between pages
-                
-                // Important: Repaint incrementally to show progress for large PDFs
-                if (i % 5 == 0) { // Update UI every 5 pages
-                     pagesPanel.revalidate();
-                     pagesPanel.repaint();
-                }
+            // Create scaled image with better color model for text
+            BufferedImage scaledImage = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaledImage.createGraphics();
+            
+            // Set balanced rendering hints for the scaling operation
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_DEFAULT);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            // Fill with a clean white background
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, scaledWidth, scaledHeight);
+            
+            // Draw the image with high-quality settings
+            g.drawImage(originalImage, 0, 0, scaledWidth, scaledHeight, null);
+            g.dispose();
+            
+            // Release memory of the large original image
+            originalImage.flush();
+
+            publishPDFPage(scaledImage, generation, i == 0);
+        }
+    }
+
+    /**
+     * Adds a rendered page to the preview on the EDT
+     */
+    private void publishPDFPage(BufferedImage image, int generation, boolean firstPage) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation != loadGeneration || currentView != pagesPanel) {
+                image.flush();
+                return;
             }
-            // Final update
+            JLabel pageLabel = new JLabel(new ImageIcon(image));
+            pageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            pagesPanel.add(pageLabel);
+            pagesPanel.add(Box.createVerticalStrut(10)); // Spacing between pages
             pagesPanel.revalidate();
             pagesPanel.repaint();
-            // Scroll to top after loading
-            SwingUtilities.invokeLater(() -> scrollPane.getVerticalScrollBar().setValue(0));
+            if (firstPage) {
+                // Start at the top of the document
+                scrollPane.getVerticalScrollBar().setValue(0);
+            }
+        });
+    }
 
-        } catch (IOException e) {
-            System.err.println("Error loading PDF: " + e.getMessage());
-            e.printStackTrace();
-            displayError("Error loading PDF: " + e.getMessage());
-        } catch (Exception e) {
-             System.err.println("An unexpected error occurred during PDF rendering: " + e.getMessage());
-             e.printStackTrace();
-             displayError("Error rendering PDF page.");
-        }
+    /**
+     * Adds a line of text below the rendered pages on the EDT
+     */
+    private void publishPDFNote(String note, int generation) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation == loadGeneration && currentView == pagesPanel) {
+                JLabel noteLabel = new JLabel(note);
+                noteLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+                pagesPanel.add(noteLabel);
+                pagesPanel.revalidate();
+                pagesPanel.repaint();
+            }
+        });
     }
 
     /**
-     * Loads and displays a DOCX file
-     * @param file The DOCX file to display
+     * Loads and displays a DOCX file.
+     * The document is parsed in the background and paragraphs are pushed
+     * to the preview in chunks, so large reports never block the EDT.
+     * @param docxSession The session of the DOCX to display
      */
-    private void loadDOCXPreview(File file) {
+    private void loadDOCXPreview(DocumentSession docxSession) {
         // Enable horizontal scrollbar for DOCX
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
-        try (FileInputStream fis = new FileInputStream(file);
-             XWPFDocument document = new XWPFDocument(fis)) {
-            
-            // Create a styled text pane for rich text display
-            JTextPane textPane = new JTextPane();
-            textPane.setEditable(false);
-            textPane.setBackground(Color.WHITE);
-            // Add padding within the text component itself
-            textPane.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15)); 
-            textPane.setCaretPosition(0); // Ensure view starts at the top
+        // Show the (empty) pane right away; it fills in as chunks arrive
+        DocxPreviewPane textPane = new DocxPreviewPane();
+        scrollPane.setViewportView(textPane);
+        currentView = textPane; // Track the current view
 
-            // Get the document content
-            StyledDocument styledDoc = textPane.getStyledDocument();
-            
-            // Define styles
-            Style defaultStyle = textPane.getStyle(StyleContext.DEFAULT_STYLE);
-            StyleConstants.setFontFamily(defaultStyle, "Serif");
-            StyleConstants.setFontSize(defaultStyle, 12);
-            
-            Style headingStyle = styledDoc.addStyle("Heading", defaultStyle);
-            StyleConstants.setFontSize(headingStyle, 18);
-            StyleConstants.setBold(headingStyle, true);
-            
-            Style boldStyle = styledDoc.addStyle("Bold", defaultStyle);
-            StyleConstants.setBold(boldStyle, true);
-            
-            Style italicStyle = styledDoc.addStyle("Italic", defaultStyle);
-            StyleConstants.setItalic(italicStyle, true);
-            
-            // Process paragraphs
-            List<XWPFParagraph> paragraphs = document.getParagraphs();
-            for (XWPFParagraph paragraph : paragraphs) {
-                // Determine if this might be a heading based on formatting
-                boolean isHeading = false;
-                // Check if paragraph is potentially a heading based on its runs
-                for (XWPFRun run : paragraph.getRuns()) {
-                    // Look for bold text or colored text as indicators of a heading
-                    if (run.isBold() || run.getColor() != null) {
-                        isHeading = true;
-                        break;
-                    }
-                }
-                
-                // Apply appropriate style and add the paragraph text
-                String text = paragraph.getText();
-                if (!text.isEmpty()) {
-                    if (isHeading) {
-                        styledDoc.insertString(styledDoc.getLength(), text, headingStyle);
-                    } else {
-                        styledDoc.insertString(styledDoc.getLength(), text, defaultStyle);
+        final int generation = loadGeneration;
+        // The background load holds its own reference in case the preview is cleared first
+        docxSession.acquire();
+        CompletableFuture.runAsync(() -> {
+            try {
+                docxSession.withDocx(document -> {
+                    publishDOCXParagraphs(document, textPane, generation);
+                    return null;
+                });
+            } catch (Exception e) {
+                System.err.println("Error loading DOCX: " + e.getMessage());
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == loadGeneration) {
+                        displayError("Error loading DOCX file: " + e.getMessage());
                     }
-                    styledDoc.insertString(styledDoc.getLength(), "\n\n", defaultStyle);
-                }
+                });
+            } finally {
+                docxSession.release();
+            }
+        });
+    }
+
+    /**
+     * Walks the DOCX paragraphs and hands them to the EDT in chunks.
+     * Runs on a background thread.
+     */
+    private void publishDOCXParagraphs(XWPFDocument document, DocxPreviewPane textPane, int generation) {
+        List<DocxPreviewPane.Paragraph> chunk = new ArrayList<>(DOCX_CHUNK_SIZE);
+        for (XWPFParagraph paragraph : document.getParagraphs()) {
+            // Stop early if another document was loaded in the meantime
+            if (generation != loadGeneration) {
+                return;
+            }
+
+            String text = paragraph.getText();
+            if (!text.isEmpty()) {
+                chunk.add(new DocxPreviewPane.Paragraph(text, isHeading(paragraph)));
+            }
+
+            if (chunk.size() == DOCX_CHUNK_SIZE) {
+                publishDOCXChunk(textPane, chunk, generation);
+                chunk = new ArrayList<>(DOCX_CHUNK_SIZE);
+            }
+        }
+        publishDOCXChunk(textPane, chunk, generation);
+    }
+
+    /**
+     * Hands a chunk of parsed paragraphs to the EDT for insertion
+     */
+    private void publishDOCXChunk(DocxPreviewPane textPane, List<DocxPreviewPane.Paragraph> chunk, int generation) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (generation == loadGeneration && currentView == textPane) {
+                textPane.appendParagraphs(chunk);
+            }
+        });
+    }
+
+    /**
+     * Guesses whether a paragraph is a heading.
+     * Checks the paragraph style first and only falls back to scanning runs
+     * for bold or colored text when the style doesn't say.
+     */
+    private static boolean isHeading(XWPFParagraph paragraph) {
+        String styleId = paragraph.getStyleID();
+        if (styleId != null && (styleId.startsWith("Heading") || styleId.equals("Title"))) {
+            return true;
+        }
+        for (XWPFRun run : paragraph.getRuns()) {
+            // Look for bold text or colored text as indicators of a heading
+            if (run.isBold() || run.getColor() != null) {
+                return true;
             }
-            
-            // Set the text pane as the direct view for the scroll pane
-            scrollPane.setViewportView(textPane);
-            currentView = textPane; // Track the current view
-            
-            // Scroll to top
-            SwingUtilities.invokeLater(() -> scrollPane.getViewport().setViewPosition(new Point(0, 0)));
-            
-        } catch (Exception e) {
-            System.err.println("Error loading DOCX: " + e.getMessage());
-            e.printStackTrace();
-            displayError("Error loading DOCX file: " + e.getMessage());
         }
+        return false;
     }
     
     /**
-     * Loads and displays a TXT file
+     * Loads and displays a TXT file.
+     * The file is memory-mapped and indexed in the background instead of
+     * being read into a String, so very large files open immediately.
      * @param file The TXT file to display
      */
     private void loadTXTPreview(File file) {
-         // Enable horizontal scrollbar for TXT if needed (though line wrap is on)
+        // Lines are not wrapped, so allow horizontal scrolling
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         
         try {
-            // Read the text file content
-            String content = new String(Files.readAllBytes(Paths.get(file.getAbsolutePath())), StandardCharsets.UTF_8);
+            MappedTextDocument document = MappedTextDocument.open(file);
             
-            // Create a text area for plain text display
-            JTextArea textArea = new JTextArea(content);
-            textArea.setEditable(false);
-            textArea.setLineWrap(true);       // Keep line wrapping
-            textArea.setWrapStyleWord(true); // Keep word wrapping
+            // Create a text area that only lays out the visible lines
+            MappedTextArea textArea = new MappedTextArea(document);
             textArea.setBackground(Color.WHITE);
             textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
             // Add padding within the text component itself
             textArea.setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15)); 
-            textArea.setCaretPosition(0); // Ensure view starts at the top
 
             // Set the text area as the direct view for the scroll pane
             scrollPane.setViewportView(textArea);
@@ -0,0 +1,334 @@
+package com.zapio;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.ooxml.POIXMLProperties;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds everything derived from one uploaded document for as long as the
+ * user works with it: the open PDDocument or XWPFDocument handle, the
+ * extracted text, page metadata and any other derived artifacts.
+ *
+ * The file is parsed at most once per session. Preview, extraction and
+ * generation borrow the session with {@link #acquire()} / {@link #release()};
+ * the owner gives up its own reference with {@link #close()}, and the parsed
+ * handle is closed as soon as the last borrower releases it.
+ *
+ * Access to the parsed handle is serialized, since neither PDFBox nor POI
+ * documents are thread-safe.
+ */
+public class DocumentSession {
+
+    /**
+     * Supported document formats
+     */
+    public enum Type { PDF, DOCX, TXT, UNSUPPORTED }
+
+    /**
+     * Work done with the session's parsed document
+     */
+    public interface DocumentAction<D, T> {
+        T apply(D document) throws IOException;
+    }
+
+    private final File file;
+    private final Type type;
+    private final Object lock = new Object();
+    // Separate from lock, so borrowing never waits for a long extraction or render
+    private final Object refLock = new Object();
+    private final Map<String, Object> artifacts = new ConcurrentHashMap<>();
+
+    // Guarded by refLock
+    private int refCount = 1; // The owner's reference
+    private boolean ownerReleased = false;
+
+    // Guarded by lock
+    private PDDocument pdfDocument;
+    private XWPFDocument docxDocument;
+    private String text;
+    private int pageCount = -1;
+
+    public DocumentSession(File file) {
+        this.file = file;
+        this.type = typeOf(file);
+    }
+
+    /**
+     * Loads and initializes PDFBox and POI by round-tripping a tiny document
+     * of each kind through the same calls the app makes: load, render,
+     * extract text. Most of the delay before the first document appears is
+     * spent here, in class loading and one-time library setup, so running
+     * this in the background while the user picks a file hides it. Failures
+     * are only logged; the real document would hit them again anyway.
+     */
+    public static void warmUp() {
+        try {
+            ByteArrayOutputStream pdfBytes = new ByteArrayOutputStream();
+            try (PDDocument document = PdfMemoryPolicy.createDocument()) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 720);
+                    content.showText("Zapio");
+                    content.endText();
+                }
+                document.save(pdfBytes);
+            }
+            try (PDDocument document = PDDocument.load(pdfBytes.toByteArray())) {
+                new PDFRenderer(document).renderImageWithDPI(0, 36);
+                new TextOnlyStripper().getText(document);
+            }
+
+            ByteArrayOutputStream docxBytes = new ByteArrayOutputStream();
+            try (XWPFDocument document = new XWPFDocument()) {
+                document.createParagraph().createRun().setText("Zapio");
+                document.write(docxBytes);
+            }
+            try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(docxBytes.toByteArray()))) {
+                XWPFWordExtractor extractor = new XWPFWordExtractor(document);
+                extractor.setCloseFilesystem(false);
+                extractor.getText();
+                document.getProperties().getExtendedProperties().getPages();
+            }
+        } catch (Exception e) {
+            System.err.println("Error warming up document libraries: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the format of a file from its name
+     */
+    static Type typeOf(File file) {
+        String fileName = file.getName().toLowerCase();
+        if (fileName.endsWith(".pdf")) {
+            return Type.PDF;
+        } else if (fileName.endsWith(".docx")) {
+            return Type.DOCX;
+        } else if (fileName.endsWith(".txt")) {
+            return Type.TXT;
+        }
+        return Type.UNSUPPORTED;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Borrows the session. Every call must be paired with {@link #release()}.
+     * @return this session
+     * @throws IllegalStateException if the session has already been closed
+     */
+    public DocumentSession acquire() {
+        synchronized (refLock) {
+            if (refCount == 0) {
+                throw new IllegalStateException("Document session for " + file.getName() + " is closed");
+            }
+            refCount++;
+        }
+        return this;
+    }
+
+    /**
+     * Returns a borrowed reference. The parsed document is closed when the
+     * last reference is released.
+     */
+    public void release() {
+        synchronized (refLock) {
+            if (refCount == 0) {
+                return;
+            }
+            refCount--;
+            if (refCount > 0) {
+                return;
+            }
+        }
+        synchronized (lock) {
+            closeHandles();
+        }
+    }
+
+    /**
+     * Gives up the owner's reference. Safe to call more than once.
+     */
+    public void close() {
+        synchronized (refLock) {
+            if (ownerReleased) {
+                return;
+            }
+            ownerReleased = true;
+        }
+        release();
+    }
+
+    /**
+     * Runs an action against the parsed PDF, loading it on first use.
+     * Other PDF access waits until the action returns.
+     */
+    public <T> T withPdf(DocumentAction<PDDocument, T> action) throws IOException {
+        synchronized (lock) {
+            return action.apply(pdf());
+        }
+    }
+
+    /**
+     * Runs an action against the parsed DOCX, loading it on first use.
+     * Other DOCX access waits until the action returns.
+     */
+    public <T> T withDocx(DocumentAction<XWPFDocument, T> action) throws IOException {
+        synchronized (lock) {
+            return action.apply(docx());
+        }
+    }
+
+    /**
+     * Returns the plain text of the document, extracting it on first use
+     * @throws IOException if the file can't be read or its format is unsupported
+     */
+    public String getText() throws IOException {
+        synchronized (lock) {
+            if (text == null) {
+                text = extractText();
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Returns the number of pages, or 1 for formats without pages
+     */
+    public int getPageCount() throws IOException {
+        synchronized (lock) {
+            if (pageCount < 0) {
+                if (type == Type.PDF) {
+                    pageCount = pdf().getNumberOfPages();
+                } else if (type == Type.DOCX) {
+                    POIXMLProperties.ExtendedProperties properties = docx().getProperties().getExtendedProperties();
+                    pageCount = Math.max(1, properties.getPages());
+                } else {
+                    pageCount = 1;
+                }
+            }
+            return pageCount;
+        }
+    }
+
+    /**
+     * Returns a derived artifact, computing and storing it on first request
+     * @param key Name of the artifact
+     * @param factory Creates the artifact if it isn't cached yet
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getArtifact(String key, Supplier<T> factory) {
+        return (T) artifacts.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * Stores a derived artifact, replacing any previous value
+     */
+    public void putArtifact(String key, Object value) {
+        artifacts.put(key, value);
+    }
+
+    /**
+     * Removes an artifact if it is still the given value, so it is computed again on next request
+     */
+    public void removeArtifact(String key, Object value) {
+        artifacts.remove(key, value);
+    }
+
+    private String extractText() throws IOException {
+        switch (type) {
+            case PDF:
+                // Skips content that can't hold text, such as scanned pages without an OCR layer
+                PDFTextStripper stripper = new TextOnlyStripper();
+                return stripper.getText(pdf());
+            case DOCX:
+                // Not closed: closing the extractor would close the shared document
+                XWPFWordExtractor extractor = new XWPFWordExtractor(docx());
+                extractor.setCloseFilesystem(false);
+                return extractor.getText();
+            case TXT:
+                return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            default:
+                throw new IOException("Unsupported file format: " + file.getName().toLowerCase());
+        }
+    }
+
+    // Must hold lock
+    private PDDocument pdf() throws IOException {
+        checkOpen();
+        if (type != Type.PDF) {
+            throw new IOException("Not a PDF document: " + file.getName());
+        }
+        if (pdfDocument == null) {
+            // Large scans would otherwise be buffered entirely in the heap
+            pdfDocument = PdfMemoryPolicy.load(file);
+        }
+        return pdfDocument;
+    }
+
+    // Must hold lock
+    private XWPFDocument docx() throws IOException {
+        checkOpen();
+        if (type != Type.DOCX) {
+            throw new IOException("Not a DOCX document: " + file.getName());
+        }
+        if (docxDocument == null) {
+            try (FileInputStream fis = new FileInputStream(file)) {
+                docxDocument = new XWPFDocument(fis);
+            }
+        }
+        return docxDocument;
+    }
+
+    private void checkOpen() throws IOException {
+        synchronized (refLock) {
+            if (refCount == 0) {
+                throw new IOException("Document session for " + file.getName() + " is closed");
+            }
+        }
+    }
+
+    // Must hold lock
+    private void closeHandles() {
+        try {
+            if (pdfDocument != null) {
+                pdfDocument.close();
+            }
+            if (docxDocument != null) {
+                docxDocument.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing document " + file.getName() + ": " + e.getMessage());
+        } finally {
+            pdfDocument = null;
+            docxDocument = null;
+            text = null;
+            artifacts.clear();
+        }
+    }
+}
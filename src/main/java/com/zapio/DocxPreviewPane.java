@@ -0,0 +1,111 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only text pane for DOCX previews that is filled in chunks.
+ * Paragraphs are appended in batches with a single document event per batch,
+ * and the lazy layout kit keeps layout work limited to what is on screen.
+ */
+public class DocxPreviewPane extends JTextPane {
+    private static final long serialVersionUID = 1L;
+
+    private final PreviewDocument previewDocument;
+    private final Style bodyStyle;
+    private final Style headingStyle;
+    private final SimpleAttributeSet paragraphAttributes;
+
+    /**
+     * A single paragraph of preview text, prepared off the EDT
+     */
+    public static class Paragraph {
+        private final String text;
+        private final boolean heading;
+
+        public Paragraph(String text, boolean heading) {
+            this.text = text;
+            this.heading = heading;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isHeading() {
+            return heading;
+        }
+    }
+
+    public DocxPreviewPane() {
+        setEditorKit(new LazyLayoutEditorKit());
+        previewDocument = new PreviewDocument();
+        setDocument(previewDocument);
+
+        setEditable(false);
+        setBackground(Color.WHITE);
+        // Add padding within the text component itself
+        setBorder(BorderFactory.createEmptyBorder(10, 15, 10, 15));
+
+        // Define styles
+        bodyStyle = previewDocument.addStyle("Body", previewDocument.getStyle(StyleContext.DEFAULT_STYLE));
+        StyleConstants.setFontFamily(bodyStyle, "Serif");
+        StyleConstants.setFontSize(bodyStyle, 12);
+
+        headingStyle = previewDocument.addStyle("Heading", bodyStyle);
+        StyleConstants.setFontSize(headingStyle, 18);
+        StyleConstants.setBold(headingStyle, true);
+
+        // Space paragraphs apart instead of inserting blank lines between them
+        paragraphAttributes = new SimpleAttributeSet();
+        paragraphAttributes.setResolveParent(bodyStyle);
+        StyleConstants.setSpaceBelow(paragraphAttributes, 12f);
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        // Batches are inserted at the end, where the caret sits; without this
+        // the view would follow every batch while the user reads the top
+        ((DefaultCaret) getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+    }
+
+    /**
+     * Appends a batch of paragraphs to the end of the preview.
+     * Must be called on the EDT.
+     */
+    public void appendParagraphs(List<Paragraph> paragraphs) {
+        if (paragraphs.isEmpty()) {
+            return;
+        }
+        try {
+            previewDocument.appendParagraphs(paragraphs);
+        } catch (BadLocationException e) {
+            System.err.println("Error appending DOCX preview text: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Styled document that accepts whole batches of paragraphs at once
+     */
+    private class PreviewDocument extends DefaultStyledDocument {
+        private static final long serialVersionUID = 1L;
+
+        void appendParagraphs(List<Paragraph> paragraphs) throws BadLocationException {
+            List<ElementSpec> specs = new ArrayList<>(paragraphs.size() * 3);
+            for (Paragraph paragraph : paragraphs) {
+                char[] chars = (paragraph.getText() + "\n").toCharArray();
+                // Close the current paragraph, open a new one and fill it
+                specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+                specs.add(new ElementSpec(paragraphAttributes, ElementSpec.StartTagType));
+                specs.add(new ElementSpec(paragraph.isHeading() ? headingStyle : bodyStyle,
+                        ElementSpec.ContentType, chars, 0, chars.length));
+            }
+            insert(getLength(), specs.toArray(new ElementSpec[0]));
+        }
+    }
+}
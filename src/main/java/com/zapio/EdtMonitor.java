@@ -0,0 +1,343 @@
+package com.zapio;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Watches the Swing event thread for events that keep it busy.
+ *
+ * A monitoring EventQueue times every event it dispatches. A background
+ * thread samples the EDT's stack while an event runs past the slow
+ * threshold, and posts a probe now and then to measure how long posted
+ * events wait before they run. The report has a histogram of each, plus
+ * the slowest events with what the EDT was doing during them. It's written
+ * to ~/.zapio/edt-diagnostics.txt when the app exits, and immediately
+ * whenever an event runs past the hang threshold, so a frozen app still
+ * leaves one behind.
+ *
+ * Off by default. System properties:
+ *   zapio.edt.monitor=true           turns it on
+ *   zapio.edt.slowMillis=100         events slower than this are recorded and sampled
+ *   zapio.edt.hangMillis=2000        events slower than this write the report right away
+ *   zapio.edt.diagnosticsFile=path   where the report goes
+ */
+public final class EdtMonitor {
+    private static final long SLOW_NANOS = Long.getLong("zapio.edt.slowMillis", 100) * 1_000_000L;
+    private static final long HANG_NANOS = Long.getLong("zapio.edt.hangMillis", 2000) * 1_000_000L;
+    private static final long SAMPLE_INTERVAL_MILLIS = 25;
+    private static final long PROBE_INTERVAL_NANOS = 500_000_000L;
+    private static final int SLOWEST_EVENTS_KEPT = 10;
+    private static final int SAMPLES_PER_EVENT = 8;
+    private static final int STACK_DEPTH = 25;
+
+    // Histogram bucket upper bounds in milliseconds; the last bucket is open-ended
+    private static final long[] BUCKET_MILLIS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096};
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static EdtMonitor instance;
+
+    private final File diagnosticsFile;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLongArray dispatchHistogram = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+    private final List<SlowEvent> slowestEvents = new ArrayList<>(); // Guarded by itself
+    private final ScheduledExecutorService sampler;
+
+    // Only touched on the EDT
+    private final Deque<Dispatch> inFlight = new ArrayDeque<>();
+    private volatile Dispatch current;
+    private volatile long probePostedNanos = -1;
+    private long lastProbeNanos;
+
+    private EdtMonitor(File diagnosticsFile) {
+        this.diagnosticsFile = diagnosticsFile;
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts monitoring the event thread if it's turned on and not already running
+     */
+    public static synchronized void install() {
+        if (!Boolean.getBoolean("zapio.edt.monitor") || instance != null) {
+            return;
+        }
+        String path = System.getProperty("zapio.edt.diagnosticsFile");
+        File file = path != null ? new File(path)
+                : new File(new File(System.getProperty("user.home"), ".zapio"), "edt-diagnostics.txt");
+        instance = new EdtMonitor(file);
+        instance.start();
+    }
+
+    /**
+     * Returns the running monitor, or null if it isn't installed
+     */
+    public static synchronized EdtMonitor getInstance() {
+        return instance;
+    }
+
+    private void start() {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new MonitoringEventQueue());
+        sampler.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeReport, "edt-monitor-report"));
+    }
+
+    /**
+     * Times each event; runs on the EDT
+     */
+    private class MonitoringEventQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            Dispatch parent = inFlight.peek();
+            if (parent != null) {
+                // A modal dialog or similar is running its own event loop inside the
+                // parent event, which then mostly waits; don't count it as busy
+                parent.nestedLoop = true;
+            }
+            Dispatch dispatch = new Dispatch(event, Thread.currentThread());
+            inFlight.push(dispatch);
+            current = dispatch;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                inFlight.pop();
+                current = inFlight.peek();
+                finished(dispatch, System.nanoTime() - dispatch.startNanos);
+            }
+        }
+    }
+
+    private void finished(Dispatch dispatch, long nanos) {
+        if (dispatch.nestedLoop) {
+            return;
+        }
+        dispatchHistogram.incrementAndGet(bucket(nanos));
+        if (nanos >= SLOW_NANOS) {
+            synchronized (slowestEvents) {
+                slowestEvents.add(new SlowEvent(dispatch, nanos));
+                slowestEvents.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+                if (slowestEvents.size() > SLOWEST_EVENTS_KEPT) {
+                    slowestEvents.remove(slowestEvents.size() - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs on the sampler thread: samples a slow event's stack and posts latency probes
+     */
+    private void sample() {
+        long now = System.nanoTime();
+        Dispatch dispatch = current;
+        if (dispatch != null && !dispatch.nestedLoop) {
+            long running = now - dispatch.startNanos;
+            if (running >= dispatch.nextSampleNanos && dispatch.samples.size() < SAMPLES_PER_EVENT) {
+                dispatch.samples.add(new StackSample(running, handlerStack(dispatch.thread.getStackTrace())));
+                // Samples get sparser as the event goes on, so a long one is covered from start to end
+                dispatch.nextSampleNanos = running + Math.max(SAMPLE_INTERVAL_MILLIS * 1_000_000L, running / 2);
+            }
+            if (running >= HANG_NANOS && !dispatch.hangReported) {
+                dispatch.hangReported = true;
+                System.err.println("Event thread busy for " + running / 1_000_000 + " ms: " + dispatch.description);
+                synchronized (slowestEvents) {
+                    // Include the hang itself, which hasn't finished yet
+                    slowestEvents.add(0, new SlowEvent(dispatch, running));
+                    writeReport();
+                    slowestEvents.remove(0);
+                }
+            }
+        }
+
+        if (probePostedNanos < 0 && now - lastProbeNanos >= PROBE_INTERVAL_NANOS) {
+            lastProbeNanos = now;
+            probePostedNanos = now;
+            EventQueue.invokeLater(() -> {
+                latencyHistogram.incrementAndGet(bucket(System.nanoTime() - probePostedNanos));
+                probePostedNanos = -1;
+            });
+        }
+    }
+
+    /**
+     * Cuts off the event queue's own frames below the code handling the event
+     */
+    private static StackTraceElement[] handlerStack(StackTraceElement[] stack) {
+        int end = stack.length;
+        for (int i = 0; i < stack.length; i++) {
+            if (stack[i].getClassName().equals("java.awt.EventQueue") && stack[i].getMethodName().equals("dispatchEventImpl")) {
+                end = i;
+                break;
+            }
+        }
+        return Arrays.copyOf(stack, Math.min(end, STACK_DEPTH));
+    }
+
+    private static int bucket(long nanos) {
+        long millis = nanos / 1_000_000;
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            if (millis < BUCKET_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_MILLIS.length;
+    }
+
+    /**
+     * Returns the diagnostics report as text
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append("Zapio event thread diagnostics, written ").append(Instant.now()).append('\n');
+        out.append("Monitoring since ").append(startedAt)
+                .append(", slow threshold ").append(SLOW_NANOS / 1_000_000).append(" ms\n\n");
+
+        out.append("Event dispatch time (how long each event kept the event thread busy)\n");
+        appendHistogram(out, dispatchHistogram);
+        out.append("\nQueue latency (how long a posted event waited before it ran)\n");
+        appendHistogram(out, latencyHistogram);
+
+        out.append("\nSlowest events\n");
+        synchronized (slowestEvents) {
+            if (slowestEvents.isEmpty()) {
+                out.append("  None over the threshold\n");
+            }
+            for (int i = 0; i < slowestEvents.size(); i++) {
+                SlowEvent event = slowestEvents.get(i);
+                out.append(String.format("%2d. %d ms at %s  %s%n", i + 1, event.nanos / 1_000_000,
+                        TIME_FORMAT.format(LocalTime.ofInstant(event.startedAt, ZoneId.systemDefault())),
+                        event.description));
+                StackTraceElement[] previous = null;
+                for (StackSample sample : event.samples) {
+                    if (Arrays.equals(sample.stack, previous)) {
+                        out.append(String.format("    +%d ms: same stack%n", sample.offsetNanos / 1_000_000));
+                        continue;
+                    }
+                    out.append(String.format("    +%d ms:%n", sample.offsetNanos / 1_000_000));
+                    for (StackTraceElement frame : sample.stack) {
+                        out.append("        at ").append(frame).append('\n');
+                    }
+                    previous = sample.stack;
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, AtomicLongArray histogram) {
+        long total = 0;
+        long max = 1;
+        for (int i = 0; i < histogram.length(); i++) {
+            total += histogram.get(i);
+            max = Math.max(max, histogram.get(i));
+        }
+        for (int i = 0; i < histogram.length(); i++) {
+            String label = i < BUCKET_MILLIS.length ? "< " + BUCKET_MILLIS[i] + " ms"
+                    : ">= " + BUCKET_MILLIS[BUCKET_MILLIS.length - 1] + " ms";
+            long count = histogram.get(i);
+            char[] bar = new char[(int) Math.ceil(40.0 * count / max)];
+            Arrays.fill(bar, '#');
+            out.append(String.format("  %-10s %8d  %s%n", label, count, new String(bar)));
+        }
+        out.append(String.format("  %-10s %8d%n", "Total", total));
+    }
+
+    /**
+     * Writes the report to the diagnostics file
+     */
+    public void writeReport() {
+        try {
+            File directory = diagnosticsFile.getAbsoluteFile().getParentFile();
+            if (directory != null) {
+                directory.mkdirs();
+            }
+            Files.write(diagnosticsFile.toPath(), report().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Error writing event thread diagnostics: " + e.getMessage());
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        String params = event.paramString();
+        if (event instanceof InvocationEvent) {
+            // invokeLater, Swing timers and other posted code: name what runs
+            int start = params.indexOf("runnable=");
+            if (start >= 0) {
+                String runnable = params.substring(start + "runnable=".length());
+                int end = runnable.indexOf(',');
+                runnable = end >= 0 ? runnable.substring(0, end) : runnable;
+                int lambda = runnable.indexOf("$$Lambda");
+                return "Posted " + (lambda >= 0 ? runnable.substring(0, lambda) + " lambda" : runnable);
+            }
+        }
+        int comma = params.indexOf(',');
+        String type = comma >= 0 ? params.substring(0, comma) : params;
+        Object source = event.getSource();
+        return type + " on " + (source != null ? source.getClass().getName() : "nothing");
+    }
+
+    /**
+     * One event being dispatched
+     */
+    private static class Dispatch {
+        final String description;
+        final Thread thread;
+        final Instant startedAt = Instant.now();
+        final long startNanos = System.nanoTime();
+        final List<StackSample> samples = new CopyOnWriteArrayList<>();
+        long nextSampleNanos = SLOW_NANOS;
+        volatile boolean nestedLoop;
+        volatile boolean hangReported;
+
+        Dispatch(AWTEvent event, Thread thread) {
+            this.description = describe(event);
+            this.thread = thread;
+        }
+    }
+
+    private static class StackSample {
+        final long offsetNanos;
+        final StackTraceElement[] stack;
+
+        StackSample(long offsetNanos, StackTraceElement[] stack) {
+            this.offsetNanos = offsetNanos;
+            this.stack = stack;
+        }
+    }
+
+    private static class SlowEvent {
+        final String description;
+        final Instant startedAt;
+        final long nanos;
+        final List<StackSample> samples;
+
+        SlowEvent(Dispatch dispatch, long nanos) {
+            this.description = dispatch.description;
+            this.startedAt = dispatch.startedAt;
+            this.nanos = nanos;
+            this.samples = new ArrayList<>(dispatch.samples);
+        }
+    }
+}
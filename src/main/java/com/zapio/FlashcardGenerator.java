@@ -1,111 +1,66 @@
 package com.zapio;
 
-import io.github.cdimascio.dotenv.Dotenv;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class FlashcardGenerator {
-    private static final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
-    private static final String MODEL = "google/gemini-2.0-flash-exp:free";
-    private String apiKey;
+    private static final int FLASHCARD_COUNT = 10;
+    
+    private final OpenRouterClient client;
     
     public FlashcardGenerator() {
-        // Load API key from .env file
-        try {
-            Dotenv dotenv = Dotenv.configure().load();
-            apiKey = dotenv.get("OPENROUTER_API_KEY");
-            if (apiKey == null || apiKey.isEmpty()) {
-                throw new IllegalStateException("OPENROUTER_API_KEY not found in .env file");
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading API key from .env file: " + e.getMessage());
-            throw new RuntimeException("Failed to load API key. Please ensure the .env file exists with OPENROUTER_API_KEY defined.", e);
-        }
+        // Loads the API key from the .env file the first time
+        client = OpenRouterClient.getInstance();
     }
     
-    public CompletableFuture<List<Flashcard>> generateFlashcardsAsync(File documentFile) {
+    public CompletableFuture<List<Flashcard>> generateFlashcardsAsync(DocumentSession session) {
+        // Borrow the session until generation finishes
+        session.acquire();
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Extract text from document
-                String documentText = extractTextFromDocument(documentFile);
-                
-                // Truncate if too long
-                if (documentText.length() > 15000) {
-                    documentText = documentText.substring(0, 15000);
-                }
-                
-                // Generate flashcards via API
-                String result = callGeminiAPI(documentText);
-                
-                // Parse response into flashcards
-                return parseFlashcardsFromResponse(result);
+                // Text is extracted once per session and shared
+                String result = callGeminiAPI(truncate(session.getText()));
+                // The screen always shows a full deck; cards the reply lacks are placeholders
+                return withPlaceholders(result);
             } catch (Exception e) {
                 System.err.println("Error generating flashcards: " + e.getMessage());
                 e.printStackTrace();
                 return new ArrayList<>();
+            } finally {
+                session.release();
             }
         });
     }
     
-    private String extractTextFromDocument(File file) throws IOException {
-        String fileName = file.getName().toLowerCase();
+    /**
+     * Generates flashcards from document text on the calling thread
+     * @throws IOException if the API request fails, or the reply can't be
+     *         parsed or has fewer flashcards than asked for
+     */
+    public List<Flashcard> generateFlashcards(String documentText) throws IOException {
+        // Generate flashcards via API
+        String result = callGeminiAPI(truncate(documentText));
         
-        if (fileName.endsWith(".pdf")) {
-            try (PDDocument document = PDDocument.load(file)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                return stripper.getText(document);
-            }
-        } else if (fileName.endsWith(".docx")) {
-            try (FileInputStream fis = new FileInputStream(file);
-                 XWPFDocument document = new XWPFDocument(fis);
-                 XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-                return extractor.getText();
-            }
-        } else if (fileName.endsWith(".txt")) {
-            return new String(Files.readAllBytes(Paths.get(file.getAbsolutePath())), StandardCharsets.UTF_8);
-        } else {
-            throw new IOException("Unsupported file format: " + fileName);
+        // Parse response into flashcards
+        List<Flashcard> flashcards = parseFlashcardsFromResponse(result);
+        if (flashcards.size() < FLASHCARD_COUNT) {
+            throw new IOException("The reply has " + flashcards.size() + " of " + FLASHCARD_COUNT + " flashcards");
         }
+        return flashcards;
+    }
+    
+    private static String truncate(String documentText) {
+        // Truncate if too long
+        return documentText.length() > 15000 ? documentText.substring(0, 15000) : documentText;
     }
     
     private String callGeminiAPI(String documentText) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPost request = new HttpPost(API_URL);
-        
-        // Set headers
-        request.setHeader("Content-Type", "application/json");
-        request.setHeader("Authorization", "Bearer " + apiKey);
-        request.setHeader("HTTP-Referer", "http://localhost:8080");
-        request.setHeader("X-Title", "Zapio Flashcard Generator");
-        
-        // Build request JSON
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("model", MODEL);
-        
-        JSONArray messages = new JSONArray();
-        JSONObject message = new JSONObject();
-        message.put("role", "user");
-        
         // Create prompt
         String prompt = "Based on the following document, create exactly 10 flashcards with key concepts. " +
                 "Each flashcard should have a concise question on the front and a clear, informative answer on the back. " +
@@ -113,91 +68,77 @@ public class FlashcardGenerator {
                 "{\"question\": \"Question text\", \"answer\": \"Answer text\"} " +
                 "Here's the document:\n\n" + documentText;
         
-        JSONArray content = new JSONArray();
-        JSONObject textContent = new JSONObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
-        content.put(textContent);
+        return client.complete(prompt, "Zapio Flashcard Generator");
+    }
+    
+    /**
+     * Parses the flashcards in a reply, skipping entries without a question and answer
+     * @throws IOException if the reply holds no JSON array
+     */
+    private List<Flashcard> parseFlashcardsFromResponse(String apiResponse) throws IOException {
+        // Try to extract JSON array from the response
+        String jsonContent = apiResponse.trim();
         
-        message.put("content", content);
-        messages.put(message);
-        requestBody.put("messages", messages);
+        // If the response includes explanatory text before/after the JSON, extract just the JSON part
+        int startBracket = jsonContent.indexOf('[');
+        int endBracket = jsonContent.lastIndexOf(']');
         
-        // Set request entity
-        request.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
+        if (startBracket >= 0 && endBracket > startBracket) {
+            jsonContent = jsonContent.substring(startBracket, endBracket + 1);
+        }
         
-        // Execute request
-        try (CloseableHttpResponse response = httpClient.execute(request)) {
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                String result = EntityUtils.toString(entity);
-                JSONObject jsonResponse = new JSONObject(result);
-                
-                // Extract the model's response from the JSON
-                String generatedContent = jsonResponse
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-                
-                return generatedContent;
-            }
+        JSONArray flashcardsArray;
+        try {
+            flashcardsArray = new JSONArray(jsonContent);
+        } catch (JSONException e) {
+            throw new IOException("The reply has no flashcards: " + e.getMessage(), e);
         }
         
-        throw new IOException("Failed to get a valid response from the API");
-    }
-    
-    private List<Flashcard> parseFlashcardsFromResponse(String apiResponse) {
+        // Parse each flashcard
         List<Flashcard> flashcards = new ArrayList<>();
-        
-        try {
-            // Try to extract JSON array from the response
-            String jsonContent = apiResponse.trim();
-            
-            // If the response includes explanatory text before/after the JSON, extract just the JSON part
-            int startBracket = jsonContent.indexOf('[');
-            int endBracket = jsonContent.lastIndexOf(']');
-            
-            if (startBracket >= 0 && endBracket > startBracket) {
-                jsonContent = jsonContent.substring(startBracket, endBracket + 1);
-            }
-            
-            JSONArray flashcardsArray = new JSONArray(jsonContent);
-            
-            // Parse each flashcard
-            for (int i = 0; i < flashcardsArray.length() && i < 10; i++) {
-                JSONObject flashcardObj = flashcardsArray.getJSONObject(i);
-                String question = flashcardObj.getString("question");
-                String answer = flashcardObj.getString("answer");
-                
-                // Create and add the flashcard
-                Flashcard flashcard = new Flashcard(question, answer);
-                flashcards.add(flashcard);
-            }
-            
-            // Ensure we have exactly 10 flashcards
-            while (flashcards.size() < 10) {
-                flashcards.add(new Flashcard(
-                    "Important concept " + (flashcards.size() + 1),
-                    "This is a placeholder for missing content."
-                ));
+        for (int i = 0; i < flashcardsArray.length() && flashcards.size() < FLASHCARD_COUNT; i++) {
+            JSONObject flashcardObj = flashcardsArray.optJSONObject(i);
+            String question = flashcardObj != null ? flashcardObj.optString("question").trim() : "";
+            String answer = flashcardObj != null ? flashcardObj.optString("answer").trim() : "";
+            if (question.isEmpty() || answer.isEmpty()) {
+                continue;
             }
             
-        } catch (Exception e) {
+            // Create and add the flashcard
+            flashcards.add(new Flashcard(question, answer));
+        }
+        return flashcards;
+    }
+    
+    /**
+     * Parses a reply for the GUI, filling in placeholder cards for any the reply lacks
+     */
+    private List<Flashcard> withPlaceholders(String apiResponse) {
+        List<Flashcard> flashcards;
+        try {
+            flashcards = parseFlashcardsFromResponse(apiResponse);
+        } catch (IOException e) {
             System.err.println("Error parsing API response: " + e.getMessage());
             e.printStackTrace();
             
             // Fallback: create some basic flashcards if parsing fails
-            if (flashcards.isEmpty()) {
-                for (int i = 1; i <= 10; i++) {
-                    flashcards.add(new Flashcard(
-                        "Key concept " + i,
-                        "Failed to generate content. Please try again."
-                    ));
-                }
+            flashcards = new ArrayList<>();
+            for (int i = 1; i <= FLASHCARD_COUNT; i++) {
+                flashcards.add(new Flashcard(
+                    "Key concept " + i,
+                    "Failed to generate content. Please try again."
+                ));
             }
+            return flashcards;
         }
         
+        // Ensure we have exactly 10 flashcards
+        while (flashcards.size() < FLASHCARD_COUNT) {
+            flashcards.add(new Flashcard(
+                "Important concept " + (flashcards.size() + 1),
+                "This is a placeholder for missing content."
+            ));
+        }
         return flashcards;
     }
 }
@@ -6,13 +6,15 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.RoundRectangle2D;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Screen to display flashcards with a modern, elegant UI
  * Features a minimalist black and white design with refined interactions
  */
-public class FlashcardScreen extends JPanel {
+public class FlashcardScreen extends JPanel implements ScreenLifecycle {
     private static final long serialVersionUID = 1L;
     private final List<Flashcard> flashcards;
     private int currentCardIndex = 0;
@@ -20,11 +22,12 @@ public class FlashcardScreen extends JPanel {
     
     // Main content components
     private final JPanel cardPanel;
-    private final JLabel contentLabel;
+    private final PreparedHtmlView contentView;
     private final JPanel leftNavPanel;
     private final JPanel rightNavPanel;
     private final JLabel progressLabel;
     private final JProgressBar progressBar;
+    private final CardFlipAnimator flipAnimator;
     
     // Colors for the modern UI - Black and White palette
     private static final Color BACKGROUND_COLOR = Color.WHITE;
@@ -37,6 +40,8 @@ public class FlashcardScreen extends JPanel {
     private static final float SHADOW_OPACITY = 0.15f;
     private static final int CARD_CORNER_RADIUS = 16;
     
+    private static final String EXPORT_LABEL = "Export Deck";
+    
     /**
      * Constructor for the flashcard screen
      */
@@ -149,20 +154,10 @@ public class FlashcardScreen extends JPanel {
                 Graphics2D g2 = (Graphics2D) g.create();
                 g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 
-                // Paint shadow first (slightly larger than the card)
-                g2.setColor(new Color(0, 0, 0, (int)(255 * SHADOW_OPACITY)));
-                for (int i = 0; i < SHADOW_SIZE; i++) {
-                    float alpha = SHADOW_OPACITY * (1 - (float)i / SHADOW_SIZE);
-                    g2.setColor(new Color(0, 0, 0, (int)(255 * alpha)));
-                    g2.fill(new RoundRectangle2D.Float(
-                        SHADOW_SIZE - i, 
-                        SHADOW_SIZE - i, 
-                        getWidth() - 2 * (SHADOW_SIZE - i), 
-                        getHeight() - 2 * (SHADOW_SIZE - i), 
-                        CARD_CORNER_RADIUS, 
-                        CARD_CORNER_RADIUS
-                    ));
-                }
+                // Paint shadow first (slightly larger than the card), from the shadow cache.
+                // Its middle is covered by the card background below.
+                ShadowRenderer.paint(g2, ShadowRenderer.Style.FILLED, 0, 0, getWidth(), getHeight(),
+                        SHADOW_SIZE, SHADOW_OPACITY, CARD_CORNER_RADIUS, false);
                 
                 // Paint card background
                 g2.setColor(CARD_BACKGROUND);
@@ -190,23 +185,27 @@ public class FlashcardScreen extends JPanel {
                 g2.dispose();
                 super.paintComponent(g);
             }
+
+            @Override
+            public void paint(Graphics g) {
+                // While flipping, the animator draws a snapshot of the card instead
+                if (!flipAnimator.paint(g)) {
+                    super.paint(g);
+                }
+            }
         };
+        flipAnimator = new CardFlipAnimator(cardPanel);
         cardPanel.setOpaque(false);
         cardPanel.setBorder(new EmptyBorder(SHADOW_SIZE + 20, SHADOW_SIZE + 20, SHADOW_SIZE + 20, SHADOW_SIZE + 20));
         cardPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
         cardPanel.setPreferredSize(new Dimension(0, 280)); // Control the height of the card
         
-        // Content label for question/answer
-        contentLabel = new JLabel();
-        contentLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
-        contentLabel.setForeground(PRIMARY_TEXT);
-        contentLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        contentLabel.setVerticalAlignment(SwingConstants.CENTER);
-        
-        // Make the content wrap properly
-        contentLabel.putClientProperty("html.disable", Boolean.FALSE);
+        // Content view for question/answer; card faces are laid out ahead of time
+        contentView = new PreparedHtmlView();
+        contentView.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        contentView.setForeground(PRIMARY_TEXT);
         
-        cardPanel.add(contentLabel, BorderLayout.CENTER);
+        cardPanel.add(contentView, BorderLayout.CENTER);
         
         // Add click listener to flip the card
         cardPanel.addMouseListener(new MouseAdapter() {
@@ -289,11 +288,9 @@ public class FlashcardScreen extends JPanel {
      * Updates the display with the current card content
      */
     private void updateCardDisplay() {
-        Flashcard currentCard = flashcards.get(currentCardIndex);
-        String content = showingAnswer ? currentCard.getAnswer() : currentCard.getQuestion();
-        
-        // Update label with HTML formatting for proper wrapping
-        contentLabel.setText("<html><div style='text-align: center;'>" + content + "</div></html>");
+        // Swap in the face prepared in the background, with HTML formatting for proper wrapping
+        contentView.show(faceKey(currentCardIndex, showingAnswer), faceHtml(currentCardIndex, showingAnswer));
+        prepareAdjacentFaces();
         
         // Update progress
         progressBar.setValue(currentCardIndex + 1);
@@ -309,40 +306,62 @@ public class FlashcardScreen extends JPanel {
         }
     }
     
+    /**
+     * Drops the flip snapshots and the prepared card content
+     */
+    @Override
+    public void dispose() {
+        flipAnimator.finish();
+        flipAnimator.clearSnapshots();
+        contentView.retainOnly(Collections.emptyList());
+    }
+    
+    /**
+     * Prepares both faces of the current and neighbouring cards, so flips and
+     * navigation only swap finished views
+     */
+    private void prepareAdjacentFaces() {
+        List<String> keys = new ArrayList<>();
+        int first = Math.max(0, currentCardIndex - 1);
+        int last = Math.min(flashcards.size() - 1, currentCardIndex + 1);
+        // The other face of this card is the most likely next view
+        for (int index : new int[] {currentCardIndex, currentCardIndex + 1, currentCardIndex - 1}) {
+            if (index < first || index > last) {
+                continue;
+            }
+            for (boolean answer : new boolean[] {!showingAnswer, showingAnswer}) {
+                String key = faceKey(index, answer);
+                contentView.prepare(key, faceHtml(index, answer));
+                keys.add(key);
+            }
+        }
+        contentView.retainOnly(keys);
+    }
+    
+    private static String faceKey(int index, boolean answer) {
+        return index + (answer ? ":answer" : ":question");
+    }
+    
+    private String faceHtml(int index, boolean answer) {
+        Flashcard card = flashcards.get(index);
+        String content = answer ? card.getAnswer() : card.getQuestion();
+        return "<html><div style='text-align: center;'>" + content + "</div></html>";
+    }
+    
     /**
      * Flips the current card between question and answer
      */
     private void flipCard() {
-        // Simple flip animation effect
-        Timer timer = new Timer(5, null);
-        final int[] width = {cardPanel.getWidth()};
-        final int targetWidth = cardPanel.getWidth();
-        
-        timer.addActionListener(e -> {
-            width[0] -= 40;
-            if (width[0] <= 0) {
-                // When fully collapsed, change content and expand
-                showingAnswer = !showingAnswer;
-                updateCardDisplay();
-                timer.removeActionListener(timer.getActionListeners()[0]);
-                
-                timer.addActionListener(e2 -> {
-                    width[0] += 40;
-                    if (width[0] >= targetWidth) {
-                        timer.stop();
-                        cardPanel.revalidate();
-                    } else {
-                        cardPanel.setPreferredSize(new Dimension(width[0], cardPanel.getHeight()));
-                        cardPanel.revalidate();
-                    }
-                });
-            } else {
-                cardPanel.setPreferredSize(new Dimension(width[0], cardPanel.getHeight()));
-                cardPanel.revalidate();
-            }
+        if (flipAnimator.isRunning()) {
+            return;
+        }
+        // Faces are cached per card, so flipping back and forth only paints each once
+        String fromKey = faceKey(currentCardIndex, showingAnswer);
+        String toKey = faceKey(currentCardIndex, !showingAnswer);
+        flipAnimator.flip(fromKey, toKey, () -> {
+            showingAnswer = !showingAnswer;
+            updateCardDisplay();
         });
-        
-        timer.start();
     }
     
     /**
@@ -350,6 +369,8 @@ public class FlashcardScreen extends JPanel {
      */
     private void showPreviousCard() {
         if (currentCardIndex > 0) {
+            flipAnimator.finish();
+            flipAnimator.clearSnapshots();
             currentCardIndex--;
             showingAnswer = false;
             updateCardDisplay();
@@ -361,6 +382,8 @@ public class FlashcardScreen extends JPanel {
      */
     private void showNextCard() {
         if (currentCardIndex < flashcards.size() - 1) {
+            flipAnimator.finish();
+            flipAnimator.clearSnapshots();
             currentCardIndex++;
             showingAnswer = false;
             updateCardDisplay();
@@ -377,38 +400,18 @@ public class FlashcardScreen extends JPanel {
         homePanel.setBackground(BACKGROUND_COLOR);
         homePanel.setBorder(new EmptyBorder(10, 0, 25, 0));
         
-        JButton homeButton = new JButton("Return to Home");
-        homeButton.setFont(new Font("SansSerif", Font.BOLD, 16));
-        homeButton.setForeground(Color.WHITE);
-        homeButton.setBackground(Color.BLACK);
-        homeButton.setFocusPainted(false);
-        homeButton.setBorderPainted(false);
-        homeButton.setContentAreaFilled(true);
-        homeButton.setOpaque(true);
-        homeButton.setUI(new RoundedButtonUI(12));
-        homeButton.setPreferredSize(new Dimension(220, 50));
-        homeButton.setCursor(new Cursor(Cursor.HAND_CURSOR)); // Set pointer cursor
-        
-        // Add hover effect - white background with black text
-        homeButton.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseEntered(MouseEvent e) {
-                homeButton.setBackground(Color.WHITE);
-                homeButton.setForeground(Color.BLACK);
-            }
-            
-            @Override
-            public void mouseExited(MouseEvent e) {
-                homeButton.setBackground(Color.BLACK);
-                homeButton.setForeground(Color.WHITE);
-            }
-        });
-        
+        JButton homeButton = createBottomButton("Return to Home");
         homeButton.addActionListener(e -> {
             // Restart the application
             AppRestarter.restartApplication(this);
         });
         
+        JButton exportButton = createBottomButton(EXPORT_LABEL);
+        exportButton.addActionListener(e -> StudyPackExportDialog.export(exportButton,
+                new StudyPack("Flashcards", flashcards, null, null), "Flashcards", "flashcards"));
+        
+        homePanel.add(exportButton);
+        homePanel.add(Box.createHorizontalStrut(20));
         homePanel.add(homeButton);
         
         // Remove any existing components in the SOUTH position
@@ -425,4 +428,34 @@ public class FlashcardScreen extends JPanel {
         revalidate();
         repaint();
     }
+    
+    private JButton createBottomButton(String text) {
+        JButton button = new JButton(text);
+        button.setFont(new Font("SansSerif", Font.BOLD, 16));
+        button.setForeground(Color.WHITE);
+        button.setBackground(Color.BLACK);
+        button.setFocusPainted(false);
+        button.setBorderPainted(false);
+        button.setContentAreaFilled(true);
+        button.setOpaque(true);
+        button.setUI(new RoundedButtonUI(12));
+        button.setPreferredSize(new Dimension(220, 50));
+        button.setCursor(new Cursor(Cursor.HAND_CURSOR)); // Set pointer cursor
+        
+        // Add hover effect - white background with black text
+        button.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseEntered(MouseEvent e) {
+                button.setBackground(Color.WHITE);
+                button.setForeground(Color.BLACK);
+            }
+            
+            @Override
+            public void mouseExited(MouseEvent e) {
+                button.setBackground(Color.BLACK);
+                button.setForeground(Color.WHITE);
+            }
+        });
+        return button;
+    }
 }
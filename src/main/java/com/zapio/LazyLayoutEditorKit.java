@@ -0,0 +1,58 @@
+package com.zapio;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AsyncBoxView;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.StyledEditorKit;
+import javax.swing.text.View;
+import javax.swing.text.ViewFactory;
+
+/**
+ * Styled editor kit that lays out paragraphs lazily.
+ * The section view is an AsyncBoxView, so only the paragraphs that are painted
+ * get laid out on the EDT; the rest are estimated and measured on Swing's
+ * background layout queue. Used for previews of very long documents.
+ */
+public class LazyLayoutEditorKit extends StyledEditorKit {
+    private static final long serialVersionUID = 1L;
+
+    private final ViewFactory styledFactory = super.getViewFactory();
+    private final ViewFactory lazyFactory = new ViewFactory() {
+        @Override
+        public View create(Element elem) {
+            if (AbstractDocument.SectionElementName.equals(elem.getName())) {
+                return new LazySectionView(elem);
+            }
+            return styledFactory.create(elem);
+        }
+    };
+
+    @Override
+    public ViewFactory getViewFactory() {
+        return lazyFactory;
+    }
+
+    /**
+     * AsyncBoxView that tolerates preference changes from children whose
+     * layout state is still being created. Paragraph views report a size
+     * change while they are being attached, before AsyncBoxView has a state
+     * for them, which it can't handle; such a change is passed on as a change
+     * to the whole section instead. The new child is measured once its state
+     * exists, and every other change goes to AsyncBoxView as usual.
+     */
+    private static class LazySectionView extends AsyncBoxView {
+        LazySectionView(Element elem) {
+            super(elem, View.Y_AXIS);
+        }
+
+        @Override
+        public synchronized void preferenceChanged(View child, boolean width, boolean height) {
+            if (child != null && getChildState(getViewIndex(child.getStartOffset(), Position.Bias.Forward)) == null) {
+                super.preferenceChanged(null, width, height);
+                return;
+            }
+            super.preferenceChanged(child, width, height);
+        }
+    }
+}
@@ -2,18 +2,18 @@ package com.zapio;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.geom.Path2D;
 
 /**
  * A loading screen component that displays a spinning animation
  * while background processes are running.
  */
-public class LoadingScreen extends JPanel {
+public class LoadingScreen extends JPanel implements ScreenLifecycle {
     private static final long serialVersionUID = 1L;
     private final int DIAMETER = 80; // Larger diameter for more impressive animation
-    private final Timer timer;
+    private static final double DEGREES_PER_SECOND = 125.0;
+    private final JPanel spinnerPanel;
+    private final AnimationScheduler.Animation spinAnimation;
     private int angle = 0;
     private final Color[] gradientColors = {
         new Color(0, 0, 0),
@@ -35,7 +35,7 @@ public class LoadingScreen extends JPanel {
         titleLabel.setForeground(Color.BLACK);
         
         // Create a panel for the spinner with a beautiful animation
-        JPanel spinnerPanel = new JPanel() {
+        spinnerPanel = new JPanel() {
             private static final long serialVersionUID = 1L;
             
             @Override
@@ -142,22 +142,23 @@ public class LoadingScreen extends JPanel {
         // Add the content panel to the main panel using GridBagLayout for perfect centering
         add(contentPanel);
         
-        // Setup timer for animation
-        timer = new Timer(40, new ActionListener() { // Faster refresh rate for smoother animation
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                // Update spinner angle
-                angle = (angle + 5) % 360;
-                spinnerPanel.repaint();
-            }
-        });
+        // Spin at a constant speed, driven by the shared animation clock
+        spinAnimation = elapsedNanos -> {
+            angle = (int) (elapsedNanos / 1_000_000_000.0 * DEGREES_PER_SECOND) % 360;
+            return true;
+        };
     }
     
     public void start() {
-        timer.start();
+        AnimationScheduler.getInstance().start(spinnerPanel, spinAnimation);
     }
     
     public void stop() {
-        timer.stop();
+        AnimationScheduler.getInstance().stop(spinAnimation);
+    }
+    
+    @Override
+    public void dispose() {
+        stop();
     }
 }
@@ -0,0 +1,187 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.*;
+import java.awt.*;
+
+/**
+ * Read-only, non-wrapping text area for a MappedTextDocument.
+ * Its view has a fixed line height and only decodes and paints the lines
+ * inside the clip, so scrolling cost doesn't depend on the file size.
+ */
+public class MappedTextArea extends JTextArea {
+    private static final long serialVersionUID = 1L;
+
+    // Longer lines are cut off in the preview
+    private static final int MAX_DISPLAY_CHARS = 4000;
+
+    private final MappedTextDocument mappedDocument;
+
+    public MappedTextArea(MappedTextDocument document) {
+        super(document);
+        this.mappedDocument = document;
+        setEditable(false);
+        setLineWrap(false);
+    }
+
+    @Override
+    public void updateUI() {
+        setUI(new MappedTextAreaUI());
+        // Indexed lines are inserted at the end, where the caret sits; without
+        // this the view would follow every chunk down to the bottom of the file
+        ((DefaultCaret) getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+    }
+
+    /**
+     * Stops indexing the underlying file
+     */
+    public void close() {
+        mappedDocument.close();
+    }
+
+    /**
+     * Text area UI that always uses the line view
+     */
+    private static class MappedTextAreaUI extends BasicTextAreaUI {
+        @Override
+        public View create(Element elem) {
+            return new LineView(elem);
+        }
+    }
+
+    /**
+     * View over all lines of the document. Lines have a fixed height, so the
+     * visible range is computed directly from the clip without measuring
+     * anything that's off screen.
+     */
+    private static class LineView extends View implements TabExpander {
+        private FontMetrics metrics;
+        private int tabBase;
+
+        LineView(Element elem) {
+            super(elem);
+        }
+
+        private MappedTextDocument document() {
+            return (MappedTextDocument) getDocument();
+        }
+
+        private void updateMetrics() {
+            Component host = getContainer();
+            Font font = host.getFont();
+            if (metrics == null || !metrics.getFont().equals(font)) {
+                metrics = host.getFontMetrics(font);
+            }
+        }
+
+        /**
+         * Returns the text of a line for display, cut to the display limit
+         */
+        private Segment lineSegment(int line) {
+            String text = document().getLineText(line);
+            int length = Math.min(text.length(), MAX_DISPLAY_CHARS);
+            return new Segment(text.toCharArray(), 0, length);
+        }
+
+        @Override
+        public float getPreferredSpan(int axis) {
+            updateMetrics();
+            if (axis == View.X_AXIS) {
+                int chars = Math.min(document().getMaxLineLength(), MAX_DISPLAY_CHARS);
+                return chars * metrics.charWidth('m') + 2;
+            }
+            return Math.max(1, document().getLineCount()) * metrics.getHeight();
+        }
+
+        @Override
+        public void paint(Graphics g, Shape a) {
+            updateMetrics();
+            Rectangle alloc = a.getBounds();
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = alloc;
+            }
+            tabBase = alloc.x;
+
+            int lineHeight = metrics.getHeight();
+            int lineCount = document().getLineCount();
+            int first = Math.max(0, (clip.y - alloc.y) / lineHeight);
+            int last = Math.min(lineCount - 1, (clip.y + clip.height - alloc.y) / lineHeight);
+
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setFont(metrics.getFont());
+            g2.setColor(getContainer().getForeground());
+            for (int line = first; line <= last; line++) {
+                float baseline = alloc.y + line * lineHeight + metrics.getAscent();
+                Utilities.drawTabbedText(lineSegment(line), alloc.x, baseline, g2, this,
+                        document().getLineStartOffset(line));
+            }
+        }
+
+        @Override
+        public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+            updateMetrics();
+            Rectangle alloc = a.getBounds();
+            tabBase = alloc.x;
+            int lineHeight = metrics.getHeight();
+            if (document().getLineCount() == 0) {
+                return new Rectangle(alloc.x, alloc.y, 1, lineHeight);
+            }
+
+            int line = document().getLineOfOffset(pos);
+            int lineStart = document().getLineStartOffset(line);
+            Segment segment = lineSegment(line);
+            segment.count = Math.max(0, Math.min(segment.count, pos - lineStart));
+            float width = Utilities.getTabbedTextWidth(segment, metrics, (float) alloc.x, this, lineStart);
+            return new Rectangle(alloc.x + Math.round(width), alloc.y + line * lineHeight, 1, lineHeight);
+        }
+
+        @Override
+        public int viewToModel(float x, float y, Shape a, Position.Bias[] biasReturn) {
+            updateMetrics();
+            biasReturn[0] = Position.Bias.Forward;
+            Rectangle alloc = a.getBounds();
+            tabBase = alloc.x;
+            int lineCount = document().getLineCount();
+            if (lineCount == 0) {
+                return 0;
+            }
+
+            int line = Math.max(0, Math.min(lineCount - 1, (int) (y - alloc.y) / metrics.getHeight()));
+            int lineStart = document().getLineStartOffset(line);
+            int offset = Utilities.getTabbedTextOffset(lineSegment(line), metrics, alloc.x, x, this, lineStart, true);
+            return lineStart + offset;
+        }
+
+        @Override
+        public float nextTabStop(float x, int tabOffset) {
+            Object tabSize = getDocument().getProperty(PlainDocument.tabSizeAttribute);
+            int tabWidth = metrics.charWidth(' ') * (tabSize instanceof Integer ? (Integer) tabSize : 8);
+            if (tabWidth == 0) {
+                return x;
+            }
+            int stops = ((int) x - tabBase) / tabWidth;
+            return tabBase + (stops + 1) * tabWidth;
+        }
+
+        @Override
+        public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            // New lines were indexed; grow the scrollable area
+            preferenceChanged(null, true, true);
+            getContainer().repaint();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            preferenceChanged(null, true, true);
+            getContainer().repaint();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            getContainer().repaint();
+        }
+    }
+}
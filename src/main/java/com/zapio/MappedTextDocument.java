@@ -0,0 +1,564 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.event.EventListenerList;
+import javax.swing.text.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Read-only Swing document backed by a memory-mapped UTF-8 text file.
+ *
+ * The file is never copied into a String. A background task scans the mapped
+ * bytes and builds a line-offset index, which is handed to the EDT in chunks;
+ * the document grows as lines are indexed. Line text is decoded on demand
+ * when a view asks for it, and a small cache keeps recently shown lines.
+ *
+ * Each line is exposed with a trailing newline, so a file that doesn't end
+ * with one gains a single newline at the end. Files larger than 2 GB are
+ * previewed up to the first 2 GB. The file stays mapped until the document
+ * is garbage collected, even after {@link #close()}.
+ */
+public class MappedTextDocument implements Document {
+
+    // Lines handed to the EDT per index chunk
+    private static final int INDEX_CHUNK_LINES = 65536;
+    // Decoded lines kept around for repainting
+    private static final int LINE_CACHE_SIZE = 512;
+
+    private final MappedByteBuffer buffer;
+    private final Element root = new RootElement();
+    private final EventListenerList listeners = new EventListenerList();
+    private final Dictionary<Object, Object> properties = new Hashtable<>();
+    private final Map<Integer, String> lineCache = new LinkedHashMap<Integer, String>(LINE_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > LINE_CACHE_SIZE;
+        }
+    };
+
+    // Line index, only touched on the EDT. Both arrays hold lineCount + 1 entries:
+    // the extra entry is where the next line starts (bytes) and the document length (chars).
+    private int[] lineByteStarts = new int[1024];
+    private int[] lineCharStarts = new int[1024];
+    private int lineCount = 0;
+    private int maxLineChars = 0;
+    private boolean fullyIndexed = false;
+
+    private volatile boolean closed = false;
+
+    private MappedTextDocument(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        putProperty(PlainDocument.tabSizeAttribute, 4);
+    }
+
+    /**
+     * Maps a text file and starts indexing it in the background.
+     * The returned document is empty at first and fills in as lines are indexed.
+     * @param file The text file to open
+     * @return The document backed by the mapped file
+     * @throws IOException if the file can't be mapped
+     */
+    public static MappedTextDocument open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), Integer.MAX_VALUE);
+            if (size < channel.size()) {
+                System.err.println("Text preview limited to the first 2 GB of " + file.getName());
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        MappedTextDocument document = new MappedTextDocument(buffer);
+        CompletableFuture.runAsync(document::buildIndex);
+        return document;
+    }
+
+    /**
+     * Stops background indexing. Java can't unmap a file explicitly, so the
+     * mapping is only released when the document is garbage collected; until
+     * then the file stays mapped and, on Windows, can't be deleted or replaced.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * @return true once the whole file has been indexed
+     */
+    public boolean isFullyIndexed() {
+        return fullyIndexed;
+    }
+
+    /**
+     * @return the number of lines indexed so far
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the length in characters of the longest line indexed so far
+     */
+    public int getMaxLineLength() {
+        return maxLineChars;
+    }
+
+    /**
+     * Returns the text of a line without its line terminator.
+     * @param line Index of the line
+     * @return The decoded line text
+     */
+    public String getLineText(int line) {
+        String text = lineCache.get(line);
+        if (text == null) {
+            text = decodeLine(line);
+            lineCache.put(line, text);
+        }
+        return text;
+    }
+
+    /**
+     * Returns the index of the line containing the given offset
+     */
+    public int getLineOfOffset(int offset) {
+        if (lineCount == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(lineCharStarts, 0, lineCount, offset);
+        int line = index >= 0 ? index : -index - 2;
+        return Math.max(0, Math.min(line, lineCount - 1));
+    }
+
+    /**
+     * Returns the offset of the first character of a line
+     */
+    public int getLineStartOffset(int line) {
+        return lineCharStarts[Math.max(0, Math.min(line, lineCount))];
+    }
+
+    /**
+     * Decodes a line from the mapped file.
+     * The indexer counts characters from the raw bytes; if the file has
+     * malformed UTF-8 the decoded text is padded or trimmed to match it so
+     * document offsets stay consistent.
+     */
+    private String decodeLine(int line) {
+        int start = lineByteStarts[line];
+        int end = lineByteStarts[line + 1] - 1; // Exclude the '\n'
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+
+        byte[] bytes = new byte[Math.max(0, end - start)];
+        ByteBuffer source = buffer.duplicate();
+        source.position(start);
+        source.get(bytes);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+
+        int expected = lineCharStarts[line + 1] - lineCharStarts[line] - 1;
+        if (text.length() > expected) {
+            text = text.substring(0, expected);
+        } else if (text.length() < expected) {
+            char[] padding = new char[expected - text.length()];
+            Arrays.fill(padding, '\uFFFD');
+            text = text + new String(padding);
+        }
+        return text;
+    }
+
+    /**
+     * Scans the mapped file for line breaks and publishes the index in chunks.
+     * Runs on a background thread.
+     */
+    private void buildIndex() {
+        int limit = buffer.limit();
+        int[] byteStarts = new int[INDEX_CHUNK_LINES + 1];
+        int[] charLengths = new int[INDEX_CHUNK_LINES];
+        int count = 0;
+        int lineStart = 0;
+        int lineChars = 0;
+
+        for (int pos = 0; pos < limit; pos++) {
+            byte b = buffer.get(pos);
+            if (b == '\n') {
+                byteStarts[count] = lineStart;
+                charLengths[count] = lineChars + 1;
+                count++;
+                lineStart = pos + 1;
+                lineChars = 0;
+
+                if (count == INDEX_CHUNK_LINES) {
+                    if (closed) {
+                        return;
+                    }
+                    byteStarts[count] = lineStart;
+                    publish(byteStarts, charLengths, count, false);
+                    byteStarts = new int[INDEX_CHUNK_LINES + 1];
+                    charLengths = new int[INDEX_CHUNK_LINES];
+                    count = 0;
+                }
+            } else if (b == '\r') {
+                // Only counted inside a line, not as part of a terminator
+                if (pos + 1 < limit && buffer.get(pos + 1) != '\n') {
+                    lineChars++;
+                }
+            } else if ((b & 0xC0) != 0x80) {
+                // Count code points by their lead bytes; 4-byte sequences need a surrogate pair
+                lineChars += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+
+        // Last line without a trailing newline
+        if (lineStart < limit) {
+            byteStarts[count] = lineStart;
+            charLengths[count] = lineChars + 1;
+            count++;
+            lineStart = limit + 1;
+        }
+        byteStarts[count] = lineStart;
+        publish(byteStarts, charLengths, count, true);
+    }
+
+    /**
+     * Hands a chunk of indexed lines to the EDT
+     */
+    private void publish(int[] byteStarts, int[] charLengths, int count, boolean last) {
+        SwingUtilities.invokeLater(() -> {
+            if (!closed) {
+                appendLines(byteStarts, charLengths, count, last);
+            }
+        });
+    }
+
+    /**
+     * Adds indexed lines to the document and notifies listeners. EDT only.
+     */
+    private void appendLines(int[] byteStarts, int[] charLengths, int count, boolean last) {
+        int needed = lineCount + count + 1;
+        if (needed > lineByteStarts.length) {
+            int capacity = Math.max(needed, lineByteStarts.length * 2);
+            lineByteStarts = Arrays.copyOf(lineByteStarts, capacity);
+            lineCharStarts = Arrays.copyOf(lineCharStarts, capacity);
+        }
+
+        int insertOffset = lineCharStarts[lineCount];
+        int charStart = insertOffset;
+        for (int i = 0; i < count; i++) {
+            // Stay within int offsets for pathological files
+            if ((long) charStart + charLengths[i] > Integer.MAX_VALUE - 1) {
+                count = i;
+                last = true;
+                break;
+            }
+            lineByteStarts[lineCount + i] = byteStarts[i];
+            lineCharStarts[lineCount + i] = charStart;
+            charStart += charLengths[i];
+            maxLineChars = Math.max(maxLineChars, charLengths[i] - 1);
+        }
+        lineCount += count;
+        lineByteStarts[lineCount] = byteStarts[count];
+        lineCharStarts[lineCount] = charStart;
+        fullyIndexed = last;
+
+        if (count > 0) {
+            fireInsertUpdate(insertOffset, charStart - insertOffset);
+        }
+    }
+
+    private void fireInsertUpdate(int offset, int length) {
+        DocumentEvent event = new InsertEvent(offset, length);
+        for (DocumentListener listener : listeners.getListeners(DocumentListener.class)) {
+            listener.insertUpdate(event);
+        }
+    }
+
+    // --- Document ---
+
+    @Override
+    public int getLength() {
+        return lineCharStarts[lineCount];
+    }
+
+    @Override
+    public void addDocumentListener(DocumentListener listener) {
+        listeners.add(DocumentListener.class, listener);
+    }
+
+    @Override
+    public void removeDocumentListener(DocumentListener listener) {
+        listeners.remove(DocumentListener.class, listener);
+    }
+
+    @Override
+    public void addUndoableEditListener(UndoableEditListener listener) {
+        // Read-only, nothing to undo
+    }
+
+    @Override
+    public void removeUndoableEditListener(UndoableEditListener listener) {
+        // Read-only, nothing to undo
+    }
+
+    @Override
+    public Object getProperty(Object key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public void putProperty(Object key, Object value) {
+        if (value == null) {
+            properties.remove(key);
+        } else {
+            properties.put(key, value);
+        }
+    }
+
+    @Override
+    public void remove(int offs, int len) throws BadLocationException {
+        throw new BadLocationException("Document is read-only", offs);
+    }
+
+    @Override
+    public void insertString(int offset, String str, AttributeSet a) throws BadLocationException {
+        throw new BadLocationException("Document is read-only", offset);
+    }
+
+    @Override
+    public String getText(int offset, int length) throws BadLocationException {
+        Segment segment = new Segment();
+        getText(offset, length, segment);
+        return segment.toString();
+    }
+
+    @Override
+    public void getText(int offset, int length, Segment txt) throws BadLocationException {
+        if (offset < 0 || length < 0 || offset + length > getLength()) {
+            throw new BadLocationException("Invalid range", offset);
+        }
+
+        StringBuilder text = new StringBuilder(length);
+        int line = getLineOfOffset(offset);
+        int position = offset;
+        while (text.length() < length) {
+            String lineText = getLineText(line) + "\n";
+            int from = position - lineCharStarts[line];
+            int to = Math.min(lineText.length(), from + (length - text.length()));
+            text.append(lineText, from, to);
+            position += to - from;
+            line++;
+        }
+
+        char[] chars = new char[text.length()];
+        text.getChars(0, chars.length, chars, 0);
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = chars.length;
+    }
+
+    @Override
+    public Position getStartPosition() {
+        return () -> 0;
+    }
+
+    @Override
+    public Position getEndPosition() {
+        // Tracks the end as the document grows
+        return () -> getLength();
+    }
+
+    @Override
+    public Position createPosition(int offs) throws BadLocationException {
+        if (offs < 0 || offs > getLength()) {
+            throw new BadLocationException("Invalid position", offs);
+        }
+        // Content never changes, so positions never move
+        return () -> offs;
+    }
+
+    @Override
+    public Element[] getRootElements() {
+        return new Element[] { root };
+    }
+
+    @Override
+    public Element getDefaultRootElement() {
+        return root;
+    }
+
+    @Override
+    public void render(Runnable r) {
+        // All reads and updates happen on the EDT
+        r.run();
+    }
+
+    /**
+     * Root element whose children are the indexed lines.
+     * Line elements are created on demand rather than stored.
+     */
+    private class RootElement implements Element {
+        @Override
+        public Document getDocument() {
+            return MappedTextDocument.this;
+        }
+
+        @Override
+        public Element getParentElement() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return AbstractDocument.SectionElementName;
+        }
+
+        @Override
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        @Override
+        public int getStartOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getEndOffset() {
+            return getLength();
+        }
+
+        @Override
+        public int getElementIndex(int offset) {
+            return getLineOfOffset(offset);
+        }
+
+        @Override
+        public int getElementCount() {
+            return lineCount;
+        }
+
+        @Override
+        public Element getElement(int index) {
+            return index >= 0 && index < lineCount ? new LineElement(index) : null;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return false;
+        }
+    }
+
+    /**
+     * A single line, including its trailing newline
+     */
+    private class LineElement implements Element {
+        private final int line;
+
+        LineElement(int line) {
+            this.line = line;
+        }
+
+        @Override
+        public Document getDocument() {
+            return MappedTextDocument.this;
+        }
+
+        @Override
+        public Element getParentElement() {
+            return root;
+        }
+
+        @Override
+        public String getName() {
+            return AbstractDocument.ParagraphElementName;
+        }
+
+        @Override
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        @Override
+        public int getStartOffset() {
+            return lineCharStarts[line];
+        }
+
+        @Override
+        public int getEndOffset() {
+            return lineCharStarts[line + 1];
+        }
+
+        @Override
+        public int getElementIndex(int offset) {
+            return -1;
+        }
+
+        @Override
+        public int getElementCount() {
+            return 0;
+        }
+
+        @Override
+        public Element getElement(int index) {
+            return null;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return true;
+        }
+    }
+
+    /**
+     * Event fired when a chunk of lines is appended
+     */
+    private class InsertEvent implements DocumentEvent {
+        private final int offset;
+        private final int length;
+
+        InsertEvent(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public Document getDocument() {
+            return MappedTextDocument.this;
+        }
+
+        @Override
+        public EventType getType() {
+            return EventType.INSERT;
+        }
+
+        @Override
+        public ElementChange getChange(Element elem) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.zapio;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection to the OpenRouter chat completions API, shared by all generators.
+ *
+ * The API key is read from the .env file once, and requests go through one
+ * pooled HTTP client, so a generation after the first reuses the open TLS
+ * connection instead of setting up a new one. Idle connections are closed
+ * after a while.
+ *
+ * The system property zapio.api.url, or else OPENROUTER_API_URL in the
+ * .env file or the environment, points the client at another endpoint with
+ * the same API, such as the MockOpenRouterServer in the test sources. The
+ * key can come from the environment as well. With the system property zapio.api.stream set to
+ * true, replies are requested as a stream of server-sent events; either
+ * kind of reply is accepted. A reply that stalls for zapio.api.timeoutSeconds
+ * (default 120) fails rather than holding its generator forever.
+ */
+public class OpenRouterClient {
+    private static final String DEFAULT_API_URL = "https://openrouter.ai/api/v1/chat/completions";
+    private static final String MODEL = "google/gemini-2.0-flash-exp:free";
+    private static final int MAX_CONNECTIONS = 8;
+    private static final long IDLE_CONNECTION_SECONDS = 60;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_MILLIS = 1000;
+    // Rough size of a request for the token budget; corrected by the usage in the response
+    private static final int CHARACTERS_PER_TOKEN = 4;
+    private static final int REPLY_TOKENS = 2000;
+    private static final boolean STREAM = Boolean.getBoolean("zapio.api.stream");
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    // Longest wait for the next bytes of a reply; a long generation sends nothing until it is done
+    private static final int READ_TIMEOUT_MILLIS = 1000 * Math.max(1, Integer.getInteger("zapio.api.timeoutSeconds", 120));
+
+    private static OpenRouterClient instance;
+
+    private final String apiKey;
+    private final String apiUrl;
+    private final CloseableHttpClient httpClient;
+
+    private OpenRouterClient(String apiKey, String apiUrl) {
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                        .setConnectionRequestTimeout(CONNECT_TIMEOUT_MILLIS)
+                        .setSocketTimeout(READ_TIMEOUT_MILLIS)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Returns the shared client, loading the API key on first use
+     * @throws RuntimeException if the .env file or the key is missing; the next call tries again
+     */
+    public static synchronized OpenRouterClient getInstance() {
+        if (instance == null) {
+            Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+            String apiUrl = System.getProperty("zapio.api.url", dotenv.get("OPENROUTER_API_URL", DEFAULT_API_URL));
+            instance = new OpenRouterClient(loadApiKey(dotenv), apiUrl);
+        }
+        return instance;
+    }
+
+    /**
+     * Sends every request from generators created after this call to another endpoint, without reading the .env
+     * file; for load tests that run the generators in the same JVM as a stand-in.
+     * The previous client's connections are closed, so generators created before
+     * this call can't make requests any more.
+     */
+    static synchronized void useEndpoint(String apiUrl, String apiKey) {
+        if (instance != null) {
+            try {
+                instance.httpClient.close();
+            } catch (IOException e) {
+                System.err.println("Error closing the previous API client: " + e.getMessage());
+            }
+        }
+        instance = new OpenRouterClient(apiKey, apiUrl);
+    }
+
+    private static String loadApiKey(Dotenv dotenv) {
+        try {
+            String apiKey = dotenv.get("OPENROUTER_API_KEY");
+            if (apiKey == null || apiKey.isEmpty()) {
+                throw new IllegalStateException("OPENROUTER_API_KEY not found in .env file");
+            }
+            return apiKey;
+        } catch (Exception e) {
+            System.err.println("Error loading API key from .env file: " + e.getMessage());
+            throw new RuntimeException("Failed to load API key. Please ensure the .env file exists with OPENROUTER_API_KEY defined.", e);
+        }
+    }
+
+    /**
+     * Sends a prompt as a single user message and returns the model's reply.
+     * Waits for the current tenant's turn in the {@link UpstreamScheduler};
+     * when the API answers 429, every request backs off and this one is
+     * sent again, up to {@value #MAX_ATTEMPTS} times.
+     * @param title Identifies the calling feature to OpenRouter
+     * @throws IOException if the request fails or the response has no reply
+     */
+    public String complete(String prompt, String title) throws IOException {
+        HttpPost request = createRequest(prompt, title);
+        UpstreamScheduler scheduler = UpstreamScheduler.getInstance();
+        UpstreamScheduler.Permit permit = scheduler.acquire(prompt.length() / CHARACTERS_PER_TOKEN + REPLY_TOKENS);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                // Reading the whole entity hands the connection back to the pool
+                try (CloseableHttpResponse response = httpClient.execute(request)) {
+                    int status = response.getStatusLine().getStatusCode();
+                    HttpEntity entity = response.getEntity();
+                    String result = entity != null ? EntityUtils.toString(entity) : null;
+                    if (status == 429 && attempt < MAX_ATTEMPTS) {
+                        scheduler.backOff(retryAfterMillis(response, attempt));
+                    } else if (status == 429) {
+                        throw new IOException("The API is rate limiting requests; try again later");
+                    } else if (status >= 400) {
+                        throw new IOException("The API answered " + status);
+                    } else if (result != null) {
+                        Header contentType = entity.getContentType();
+                        boolean stream = contentType != null && contentType.getValue().startsWith("text/event-stream");
+                        return stream ? readEventStream(result, permit) : readMessage(result, permit);
+                    } else {
+                        throw new IOException("Failed to get a valid response from the API");
+                    }
+                }
+                permit.requeue();
+            }
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Returns the reply in a complete response
+     * @throws IOException if the response isn't valid JSON or has no reply
+     */
+    private static String readMessage(String body, UpstreamScheduler.Permit permit) throws IOException {
+        try {
+            JSONObject jsonResponse = new JSONObject(body);
+            JSONObject usage = jsonResponse.optJSONObject("usage");
+            if (usage != null) {
+                permit.setUsedTokens(usage.optInt("total_tokens", -1));
+            }
+
+            // Extract the model's response from the JSON
+            return jsonResponse
+                .getJSONArray("choices")
+                .getJSONObject(0)
+                .getJSONObject("message")
+                .getString("content");
+        } catch (JSONException e) {
+            throw new IOException("The API sent a malformed response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Joins the pieces of a streamed reply: "data:" events with a JSON chunk
+     * each, ending with "data: [DONE]". Lines starting with a colon are
+     * comments the API sends to keep the connection open.
+     * @throws IOException if an event isn't valid JSON, reports an error, or the stream ends early
+     */
+    private static String readEventStream(String body, UpstreamScheduler.Permit permit) throws IOException {
+        StringBuilder reply = new StringBuilder();
+        try {
+            for (String line : body.split("\r?\n")) {
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String data = line.substring("data:".length()).trim();
+                if (data.equals("[DONE]")) {
+                    return reply.toString();
+                }
+                JSONObject chunk = new JSONObject(data);
+                JSONObject error = chunk.optJSONObject("error");
+                if (error != null) {
+                    throw new IOException("The API reported an error: " + error.optString("message"));
+                }
+                JSONObject usage = chunk.optJSONObject("usage");
+                if (usage != null) {
+                    permit.setUsedTokens(usage.optInt("total_tokens", -1));
+                }
+                JSONArray choices = chunk.optJSONArray("choices");
+                if (choices != null && choices.length() > 0) {
+                    JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+                    if (delta != null) {
+                        reply.append(delta.optString("content", ""));
+                    }
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("The API sent a malformed response: " + e.getMessage(), e);
+        }
+        throw new IOException("The API's streamed response ended early");
+    }
+
+    /**
+     * Returns how long to hold back after a 429: what Retry-After asks for, or a doubling delay without it
+     */
+    private static long retryAfterMillis(CloseableHttpResponse response, int attempt) {
+        Header retryAfter = response.getFirstHeader("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.getValue().trim())));
+            } catch (NumberFormatException e) {
+                // An HTTP date; fall back to the doubling delay
+            }
+        }
+        return BACKOFF_MILLIS << (attempt - 1);
+    }
+
+    private HttpPost createRequest(String prompt, String title) {
+        HttpPost request = new HttpPost(apiUrl);
+
+        // Set headers
+        request.setHeader("Content-Type", "application/json");
+        request.setHeader("Authorization", "Bearer " + apiKey);
+        request.setHeader("HTTP-Referer", "http://localhost:8080");
+        request.setHeader("X-Title", title);
+
+        // Build request JSON
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", MODEL);
+
+        JSONArray messages = new JSONArray();
+        JSONObject message = new JSONObject();
+        message.put("role", "user");
+
+        JSONArray content = new JSONArray();
+        JSONObject textContent = new JSONObject();
+        textContent.put("type", "text");
+        textContent.put("text", prompt);
+        content.put(textContent);
+
+        message.put("content", content);
+        messages.put(message);
+        requestBody.put("messages", messages);
+        if (STREAM) {
+            requestBody.put("stream", true);
+        }
+
+        request.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
+        return request;
+    }
+}
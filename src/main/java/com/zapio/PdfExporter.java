@@ -0,0 +1,376 @@
+package com.zapio;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes plain text to a PDF, such as an exported cheatsheet.
+ *
+ * Lines are wrapped to the page width using the font's own glyph widths,
+ * keeping indentation and hanging list markers. Headings are lines starting
+ * with # or written in capitals. The text is set in one TrueType font found
+ * on the system, parsed once and then embedded as a subset in each export;
+ * without one it falls back to Helvetica, replacing characters Helvetica
+ * can't show. The document is buffered like a mid-sized PDF (see
+ * {@link PdfMemoryPolicy#createDocument()}), so page content beyond a few
+ * megabytes goes to a scratch file, and it's saved to a temporary file that
+ * only replaces the output once complete.
+ *
+ * Exports run one at a time on a background thread. The font can be set
+ * with the zapio.pdf.font system property (path to a .ttf file).
+ */
+public final class PdfExporter {
+
+    /**
+     * Receives progress as lines of input are laid out
+     */
+    public interface ProgressListener {
+        void onProgress(int linesDone, int totalLines);
+    }
+
+    private static final PDRectangle PAGE_SIZE = PDRectangle.A4;
+    private static final float MARGIN = 50;
+    private static final float TITLE_SIZE = 16;
+    private static final float HEADING_SIZE = 12;
+    // Shorter all-caps lines are usually acronyms rather than headings
+    private static final int MIN_CAPS_HEADING_LETTERS = 6;
+    // Longer lines ending in a colon are sentences introducing a list
+    private static final int MAX_COLON_HEADING_WORDS = 6;
+    private static final float BODY_SIZE = 10;
+    private static final float LINE_SPACING = 1.5f;
+    private static final int TAB_WIDTH = 4;
+
+    private static final String[] FONT_CANDIDATES = {
+        "C:/Windows/Fonts/arial.ttf",
+        "C:/Windows/Fonts/segoeui.ttf",
+        "/System/Library/Fonts/Supplemental/Arial.ttf",
+        "/Library/Fonts/Arial.ttf",
+        "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+        "/usr/share/fonts/dejavu/DejaVuSans.ttf",
+        "/usr/share/fonts/truetype/liberation/LiberationSans-Regular.ttf",
+        "/usr/share/fonts/liberation-sans/LiberationSans-Regular.ttf",
+    };
+
+    // A list marker such as "1.", "a)", "-" or "•" followed by the item's text
+    private static final Pattern LIST_MARKER = Pattern.compile("^(\\d+[.)]|[a-zA-Z][.)]|[-*\u2022])\\s+");
+
+    private static final ExecutorService EXPORTER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdf-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by the class lock, since a TrueTypeFont isn't safe to share between threads
+    private static TrueTypeFont cachedFont;
+    private static boolean fontLookedUp;
+
+    private final PDDocument document;
+    private final PDFont font;
+    private final Map<Integer, Boolean> supportedChars = new HashMap<>();
+    private PDPageContentStream content;
+    private float y;
+    private int pageCount;
+
+    private PdfExporter(PDDocument document, PDFont font) {
+        this.document = document;
+        this.font = font;
+    }
+
+    /**
+     * Exports text to a PDF on the export thread
+     * @param title Title printed at the top of the first page
+     * @param text The text, one paragraph per line
+     * @param output The file to write
+     * @param listener Called on the export thread as lines are laid out, may be null
+     * @return The number of pages written, when the file is complete
+     */
+    public static CompletableFuture<Integer> exportAsync(String title, String text, File output, ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return export(title, text, output, listener);
+            } catch (IOException e) {
+                throw new RuntimeException("Error exporting PDF: " + e.getMessage(), e);
+            }
+        }, EXPORTER);
+    }
+
+    /**
+     * Exports text to a PDF on the calling thread; see {@link #exportAsync}
+     * @return The number of pages written
+     */
+    public static int export(String title, String text, File output, ProgressListener listener) throws IOException {
+        List<String> lines = Arrays.asList(text.split("\n", -1));
+        return export(title, lines.iterator(), lines.size(), output, listener);
+    }
+
+    /**
+     * Exports lines of text to a PDF on the calling thread, taking each line
+     * only when it's laid out, so the text never has to be in memory at once
+     * @return The number of pages written
+     */
+    public static int export(String title, Iterator<String> lines, File output) throws IOException {
+        return export(title, lines, 0, output, null);
+    }
+
+    private static synchronized int export(String title, Iterator<String> lines, int totalLines, File output,
+                                           ProgressListener listener) throws IOException {
+        File partial = new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".part");
+        try (PDDocument document = PdfMemoryPolicy.createDocument()) {
+            PdfExporter exporter = new PdfExporter(document, loadFont(document));
+            exporter.write(title, lines, totalLines, listener);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial.toPath()))) {
+                document.save(out);
+            }
+            try {
+                Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return exporter.pageCount;
+        } finally {
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+
+    /**
+     * Returns the font for a new document: the cached system font embedded as a subset, or Helvetica
+     */
+    private static PDFont loadFont(PDDocument document) {
+        if (!fontLookedUp) {
+            fontLookedUp = true;
+            cachedFont = findSystemFont();
+        }
+        if (cachedFont != null) {
+            try {
+                // The cached font stays open; the document doesn't close it
+                return PDType0Font.load(document, cachedFont, true);
+            } catch (IOException e) {
+                System.err.println("Error embedding font for PDF export, using Helvetica: " + e.getMessage());
+                cachedFont = null;
+            }
+        }
+        return PDType1Font.HELVETICA;
+    }
+
+    private static TrueTypeFont findSystemFont() {
+        List<String> candidates = new ArrayList<>();
+        String configured = System.getProperty("zapio.pdf.font");
+        if (configured != null && !configured.isEmpty()) {
+            candidates.add(configured);
+        }
+        for (String path : FONT_CANDIDATES) {
+            candidates.add(path);
+        }
+        for (String path : candidates) {
+            File file = new File(path);
+            if (!file.isFile()) {
+                continue;
+            }
+            try {
+                return new TTFParser().parse(file);
+            } catch (IOException e) {
+                System.err.println("Error loading font " + path + " for PDF export: " + e.getMessage());
+            }
+        }
+        System.err.println("No TrueType font found for PDF export, using Helvetica");
+        return null;
+    }
+
+    private void write(String title, Iterator<String> lines, int totalLines, ProgressListener listener) throws IOException {
+        newPage();
+        for (String wrapped : wrap(sanitize(title), TITLE_SIZE, contentWidth())) {
+            writeLine(wrapped, TITLE_SIZE, MARGIN);
+        }
+        y -= TITLE_SIZE;
+
+        int lastPercent = -1;
+        for (int done = 1; lines.hasNext(); done++) {
+            writeParagraph(lines.next());
+            int percent = totalLines > 0 ? (int) (100L * done / totalLines) : 0;
+            if (listener != null && percent != lastPercent) {
+                lastPercent = percent;
+                listener.onProgress(done, totalLines);
+            }
+        }
+        content.close();
+    }
+
+    private void writeParagraph(String line) throws IOException {
+        String text = sanitize(line.replace("\t", " ".repeat(TAB_WIDTH)));
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            y -= BODY_SIZE * LINE_SPACING;
+            return;
+        }
+
+        if (isHeading(trimmed)) {
+            String heading = trimmed.startsWith("#") ? trimmed.replaceFirst("^#+\\s*", "") : trimmed;
+            y -= HEADING_SIZE * 0.5f;
+            for (String wrapped : wrap(heading, HEADING_SIZE, contentWidth())) {
+                writeLine(wrapped, HEADING_SIZE, MARGIN);
+            }
+            return;
+        }
+
+        // Keep the line's indentation, and line up continuation lines after a list marker
+        int spaces = text.length() - text.replaceFirst("^ +", "").length();
+        float indent = Math.min(spaces * width(" ", BODY_SIZE), contentWidth() / 2);
+        Matcher marker = LIST_MARKER.matcher(trimmed);
+        float hanging = marker.find() ? width(marker.group(), BODY_SIZE) : 0;
+
+        List<String> wrapped = wrap(trimmed, BODY_SIZE, contentWidth() - indent - hanging);
+        for (int i = 0; i < wrapped.size(); i++) {
+            writeLine(wrapped.get(i), BODY_SIZE, MARGIN + indent + (i == 0 ? 0 : hanging));
+        }
+    }
+
+    /**
+     * A markdown heading, a short line ending in a colon such as "Key terms:",
+     * or an all-caps line such as "KEY CONCEPTS". All-caps lines need enough
+     * letters and no digits, so acronyms like "DNA" or "HTTP/2" stay body text.
+     */
+    private static boolean isHeading(String line) {
+        if (line.startsWith("#")) {
+            return true;
+        }
+        if (line.endsWith(":")) {
+            return line.split("\\s+").length <= MAX_COLON_HEADING_WORDS;
+        }
+        int letters = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLowerCase(c) || Character.isDigit(c)) {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                letters++;
+            }
+        }
+        return letters >= MIN_CAPS_HEADING_LETTERS;
+    }
+
+    private void writeLine(String text, float size, float x) throws IOException {
+        float lineHeight = size * LINE_SPACING;
+        if (y - lineHeight < MARGIN) {
+            content.close();
+            newPage();
+        }
+        y -= lineHeight;
+        content.beginText();
+        content.setFont(font, size);
+        content.newLineAtOffset(x, y);
+        content.showText(text);
+        content.endText();
+    }
+
+    private void newPage() throws IOException {
+        PDPage page = new PDPage(PAGE_SIZE);
+        document.addPage(page);
+        content = new PDPageContentStream(document, page);
+        y = PAGE_SIZE.getHeight() - MARGIN;
+        pageCount++;
+    }
+
+    /**
+     * Breaks text into lines no wider than the given width, at spaces where
+     * possible and inside words that are too long for a line on their own
+     */
+    private List<String> wrap(String text, float size, float maxWidth) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        float lineWidth = 0;
+        float spaceWidth = width(" ", size);
+        for (String word : text.split(" +")) {
+            float wordWidth = width(word, size);
+            if (line.length() > 0 && lineWidth + spaceWidth + wordWidth <= maxWidth) {
+                line.append(' ').append(word);
+                lineWidth += spaceWidth + wordWidth;
+                continue;
+            }
+            if (line.length() > 0) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            if (wordWidth > maxWidth) {
+                // One pass that adds up character widths, so a long token such as a URL costs linear time
+                int start = 0;
+                float chunkWidth = 0;
+                for (int i = 0; i < word.length(); ) {
+                    int next = i + Character.charCount(word.codePointAt(i));
+                    float charWidth = width(word.substring(i, next), size);
+                    if (i > start && chunkWidth + charWidth > maxWidth) {
+                        lines.add(word.substring(start, i));
+                        start = i;
+                        chunkWidth = 0;
+                    }
+                    chunkWidth += charWidth;
+                    i = next;
+                }
+                word = word.substring(start);
+                wordWidth = chunkWidth;
+            }
+            line.append(word);
+            lineWidth = wordWidth;
+        }
+        if (line.length() > 0 || lines.isEmpty()) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private float width(String text, float size) throws IOException {
+        return font.getStringWidth(text) / 1000 * size;
+    }
+
+    private float contentWidth() {
+        return PAGE_SIZE.getWidth() - 2 * MARGIN;
+    }
+
+    /**
+     * Replaces characters the font has no glyph for, and drops control characters
+     */
+    private String sanitize(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        text.codePoints().forEach(codePoint -> {
+            if (Character.isISOControl(codePoint)) {
+                return;
+            }
+            boolean supported = supportedChars.computeIfAbsent(codePoint, c -> {
+                try {
+                    font.encode(new String(Character.toChars(c)));
+                    return true;
+                } catch (IOException | IllegalArgumentException e) {
+                    return false;
+                }
+            });
+            out.appendCodePoint(supported ? codePoint : '?');
+        });
+        return out.toString();
+    }
+}
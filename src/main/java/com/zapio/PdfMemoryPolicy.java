@@ -0,0 +1,231 @@
+package com.zapio;
+
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides how much heap PDFBox may use for a document. Every PDF in the app
+ * is opened through {@link #load(File)}.
+ *
+ * Small files are parsed entirely in main memory. Larger files buffer their
+ * parsed streams in a bounded amount of heap and spill the rest to a temp
+ * file, and very large files go straight to temp files. The PDFBox resource
+ * cache is replaced with a bounded one that never holds images.
+ *
+ * Thresholds default to fractions of the maximum heap and can be overridden
+ * with system properties (all sizes in bytes):
+ * <ul>
+ *   <li>zapio.pdf.memoryMode - auto (default), main, mixed or tempfile</li>
+ *   <li>zapio.pdf.mainMemoryMaxFileSize - largest file parsed in main memory only</li>
+ *   <li>zapio.pdf.tempFileMinFileSize - smallest file parsed with temp files only</li>
+ *   <li>zapio.pdf.mixedMainMemoryBytes - heap a mixed-mode document may use</li>
+ *   <li>zapio.pdf.tempDir - directory for scratch files</li>
+ *   <li>zapio.pdf.resourceCacheSize - cached resources per kind, 0 disables the cache</li>
+ * </ul>
+ */
+public final class PdfMemoryPolicy {
+
+    /**
+     * Where PDFBox keeps parsed stream data
+     */
+    public enum Mode { MAIN_MEMORY, MIXED, TEMP_FILE_ONLY }
+
+    private static final long MB = 1024L * 1024L;
+
+    private PdfMemoryPolicy() {
+    }
+
+    /**
+     * Opens a PDF with the memory settings for its size
+     * @param file The PDF to open
+     * @return The loaded document, which the caller must close
+     */
+    public static PDDocument load(File file) throws IOException {
+        PDDocument document = PDDocument.load(file, settingFor(file.length()));
+        int cacheSize = Integer.getInteger("zapio.pdf.resourceCacheSize", 256);
+        document.setResourceCache(cacheSize > 0 ? new BoundedResourceCache(cacheSize) : null);
+        return document;
+    }
+
+    /**
+     * Creates an empty document for writing, buffered like a mid-sized file
+     */
+    public static PDDocument createDocument() {
+        return new PDDocument(settingFor(Mode.MIXED));
+    }
+
+    /**
+     * Picks the mode for a file of the given size
+     */
+    public static Mode modeFor(long fileSize) {
+        String configured = System.getProperty("zapio.pdf.memoryMode", "auto").trim().toLowerCase();
+        switch (configured) {
+            case "main":
+                return Mode.MAIN_MEMORY;
+            case "mixed":
+                return Mode.MIXED;
+            case "tempfile":
+                return Mode.TEMP_FILE_ONLY;
+            default:
+                break;
+        }
+
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        long mainMemoryMax = Long.getLong("zapio.pdf.mainMemoryMaxFileSize", Math.max(16 * MB, maxHeap / 16));
+        long tempFileMin = Long.getLong("zapio.pdf.tempFileMinFileSize", Math.max(64 * MB, maxHeap / 4));
+        if (fileSize <= mainMemoryMax) {
+            return Mode.MAIN_MEMORY;
+        } else if (fileSize < tempFileMin) {
+            return Mode.MIXED;
+        }
+        return Mode.TEMP_FILE_ONLY;
+    }
+
+    /**
+     * Returns the PDFBox memory setting for a file of the given size
+     */
+    public static MemoryUsageSetting settingFor(long fileSize) {
+        return settingFor(modeFor(fileSize));
+    }
+
+    private static MemoryUsageSetting settingFor(Mode mode) {
+        MemoryUsageSetting setting;
+        switch (mode) {
+            case MAIN_MEMORY:
+                setting = MemoryUsageSetting.setupMainMemoryOnly();
+                break;
+            case MIXED:
+                long maxHeap = Runtime.getRuntime().maxMemory();
+                long mainMemoryBytes = Long.getLong("zapio.pdf.mixedMainMemoryBytes", Math.max(8 * MB, maxHeap / 32));
+                setting = MemoryUsageSetting.setupMixed(mainMemoryBytes);
+                break;
+            default:
+                setting = MemoryUsageSetting.setupTempFileOnly();
+                break;
+        }
+        String tempDir = System.getProperty("zapio.pdf.tempDir");
+        if (tempDir != null && !tempDir.isEmpty()) {
+            setting.setTempDir(new File(tempDir));
+        }
+        return setting;
+    }
+
+    /**
+     * Resource cache with a fixed number of entries per resource kind.
+     * The default PDFBox cache keeps every shared resource for the lifetime of
+     * the document; here the least recently used ones are dropped instead.
+     * XObjects are never cached, since a decoded image can be many megabytes.
+     */
+    static class BoundedResourceCache implements ResourceCache {
+        private final Map<COSObject, PDFont> fonts;
+        private final Map<COSObject, PDColorSpace> colorSpaces;
+        private final Map<COSObject, PDExtendedGraphicsState> extGStates;
+        private final Map<COSObject, PDShading> shadings;
+        private final Map<COSObject, PDAbstractPattern> patterns;
+        private final Map<COSObject, PDPropertyList> properties;
+
+        BoundedResourceCache(int maxEntries) {
+            fonts = lruMap(maxEntries);
+            colorSpaces = lruMap(maxEntries);
+            extGStates = lruMap(maxEntries);
+            shadings = lruMap(maxEntries);
+            patterns = lruMap(maxEntries);
+            properties = lruMap(maxEntries);
+        }
+
+        private static <V> Map<COSObject, V> lruMap(int maxEntries) {
+            return new LinkedHashMap<COSObject, V>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<COSObject, V> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        @Override
+        public synchronized PDFont getFont(COSObject indirect) {
+            return fonts.get(indirect);
+        }
+
+        @Override
+        public synchronized PDColorSpace getColorSpace(COSObject indirect) {
+            return colorSpaces.get(indirect);
+        }
+
+        @Override
+        public synchronized PDExtendedGraphicsState getExtGState(COSObject indirect) {
+            return extGStates.get(indirect);
+        }
+
+        @Override
+        public synchronized PDShading getShading(COSObject indirect) {
+            return shadings.get(indirect);
+        }
+
+        @Override
+        public synchronized PDAbstractPattern getPattern(COSObject indirect) {
+            return patterns.get(indirect);
+        }
+
+        @Override
+        public synchronized PDPropertyList getProperties(COSObject indirect) {
+            return properties.get(indirect);
+        }
+
+        @Override
+        public PDXObject getXObject(COSObject indirect) {
+            return null;
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDFont font) {
+            fonts.put(indirect, font);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDColorSpace colorSpace) {
+            colorSpaces.put(indirect, colorSpace);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDExtendedGraphicsState extGState) {
+            extGStates.put(indirect, extGState);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDShading shading) {
+            shadings.put(indirect, shading);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDAbstractPattern pattern) {
+            patterns.put(indirect, pattern);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDPropertyList propertyList) {
+            properties.put(indirect, propertyList);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDXObject xobject) {
+            // Images are decoded again when needed rather than pinned in the heap
+        }
+    }
+}
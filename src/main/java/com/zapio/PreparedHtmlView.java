@@ -0,0 +1,198 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.text.View;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows one of several HTML snippets, centered like an HTML JLabel.
+ *
+ * A JLabel parses its HTML and builds a new view tree on the EDT every time
+ * its text changes. Here the snippets that will be needed next are parsed
+ * and laid out at the current width on a background thread with
+ * {@link #prepare(Object, String)}, and {@link #show(Object, String)} just
+ * swaps in the finished view. Only a resize lays a view out again on the EDT.
+ */
+public class PreparedHtmlView extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    // One thread, so snippets are prepared in the order they were requested
+    private static final ExecutorService PREPARER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "html-view-preparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Object, CompletableFuture<PreparedView>> prepared = new HashMap<>();
+    private PreparedView current;
+
+    public PreparedHtmlView() {
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                relayoutPrepared();
+            }
+        });
+    }
+
+    /**
+     * Starts parsing and laying out a snippet in the background, unless it's already prepared
+     * @param key Identifies the snippet for {@link #show(Object, String)}
+     */
+    public void prepare(Object key, String html) {
+        if (prepared.containsKey(key)) {
+            return;
+        }
+        int width = contentWidth();
+        prepared.put(key, CompletableFuture.supplyAsync(() -> new PreparedView(this, html, width), PREPARER));
+    }
+
+    /**
+     * Shows a snippet, using the prepared view if it's ready and building it now otherwise
+     */
+    public void show(Object key, String html) {
+        CompletableFuture<PreparedView> future = prepared.get(key);
+        PreparedView view = future != null ? future.getNow(null) : null;
+        if (view == null) {
+            view = new PreparedView(this, html, contentWidth());
+            prepared.put(key, CompletableFuture.completedFuture(view));
+        }
+        current = view;
+        repaint();
+    }
+
+    /**
+     * Drops prepared snippets other than the given ones
+     */
+    public void retainOnly(Collection<?> keys) {
+        for (Iterator<Map.Entry<Object, CompletableFuture<PreparedView>>> it = prepared.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Object, CompletableFuture<PreparedView>> entry = it.next();
+            if (!keys.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Lays the waiting views out again at the new width, in the background.
+     * The view on screen is laid out when it's painted.
+     */
+    private void relayoutPrepared() {
+        int width = contentWidth();
+        if (width <= 0) {
+            return;
+        }
+        for (Map.Entry<Object, CompletableFuture<PreparedView>> entry : prepared.entrySet()) {
+            CompletableFuture<PreparedView> future = entry.getValue();
+            if (current == null || future.getNow(null) != current) {
+                entry.setValue(future.thenApplyAsync(view -> {
+                    view.layout(width);
+                    return view;
+                }, PREPARER));
+            }
+        }
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        clearPrepared();
+    }
+
+    @Override
+    public void setForeground(Color foreground) {
+        super.setForeground(foreground);
+        clearPrepared();
+    }
+
+    /**
+     * Views are styled with the font and color they were created with
+     */
+    private void clearPrepared() {
+        if (prepared != null) {
+            prepared.clear();
+        }
+        current = null;
+        repaint();
+    }
+
+    private int contentWidth() {
+        Insets insets = getInsets();
+        return getWidth() - insets.left - insets.right;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() || current == null) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        return new Dimension((int) current.view.getPreferredSpan(View.X_AXIS) + insets.left + insets.right,
+                (int) current.view.getPreferredSpan(View.Y_AXIS) + insets.top + insets.bottom);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (current == null) {
+            return;
+        }
+        Insets insets = getInsets();
+        int width = contentWidth();
+        int height = getHeight() - insets.top - insets.bottom;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // Only happens when the component was resized after the view was prepared
+        current.layout(width);
+
+        // Center the text block the way JLabel centers HTML
+        int textWidth = Math.min(width, (int) current.view.getPreferredSpan(View.X_AXIS));
+        int textHeight = (int) current.view.getPreferredSpan(View.Y_AXIS);
+        Rectangle allocation = new Rectangle(insets.left + (width - textWidth) / 2,
+                insets.top + (height - textHeight) / 2, textWidth, textHeight);
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        Object desktopHints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        if (desktopHints instanceof Map) {
+            g2.addRenderingHints((Map<?, ?>) desktopHints);
+        }
+        g2.clipRect(insets.left, insets.top, width, height);
+        current.view.paint(g2, allocation);
+        g2.dispose();
+    }
+
+    /**
+     * A parsed snippet and the width it was last laid out at
+     */
+    private static class PreparedView {
+        final View view;
+        int layoutWidth = -1;
+
+        PreparedView(JComponent host, String html, int width) {
+            view = BasicHTML.createHTMLView(host, html);
+            if (width > 0) {
+                layout(width);
+            }
+        }
+
+        void layout(int width) {
+            if (width != layoutWidth) {
+                // Wraps the text at the width, which fixes its preferred height
+                view.setSize(width, Integer.MAX_VALUE);
+                layoutWidth = width;
+            }
+        }
+    }
+}
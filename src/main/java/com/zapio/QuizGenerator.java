@@ -1,111 +1,66 @@
 package com.zapio;
 
-import io.github.cdimascio.dotenv.Dotenv;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class QuizGenerator {
-    private static final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
-    private static final String MODEL = "google/gemini-2.0-flash-exp:free";
-    private String apiKey;
+    private static final int QUESTION_COUNT = 10;
+    
+    private final OpenRouterClient client;
     
     public QuizGenerator() {
-        // Load API key from .env file
-        try {
-            Dotenv dotenv = Dotenv.configure().load();
-            apiKey = dotenv.get("OPENROUTER_API_KEY");
-            if (apiKey == null || apiKey.isEmpty()) {
-                throw new IllegalStateException("OPENROUTER_API_KEY not found in .env file");
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading API key from .env file: " + e.getMessage());
-            throw new RuntimeException("Failed to load API key. Please ensure the .env file exists with OPENROUTER_API_KEY defined.", e);
-        }
+        // Loads the API key from the .env file the first time
+        client = OpenRouterClient.getInstance();
     }
     
-    public CompletableFuture<List<QuizQuestion>> generateQuestionsAsync(File documentFile) {
+    public CompletableFuture<List<QuizQuestion>> generateQuestionsAsync(DocumentSession session) {
+        // Borrow the session until generation finishes
+        session.acquire();
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Extract text from document
-                String documentText = extractTextFromDocument(documentFile);
-                
-                // Truncate if too long
-                if (documentText.length() > 15000) {
-                    documentText = documentText.substring(0, 15000);
-                }
-                
-                // Generate questions via API
-                String result = callGeminiAPI(documentText);
-                
-                // Parse response into questions
-                return parseQuestionsFromResponse(result);
+                // Text is extracted once per session and shared
+                String result = callGeminiAPI(truncate(session.getText()));
+                // The screen shows placeholder questions rather than nothing when the reply doesn't parse
+                return withPlaceholders(result);
             } catch (Exception e) {
                 System.err.println("Error generating questions: " + e.getMessage());
                 e.printStackTrace();
                 return new ArrayList<>();
+            } finally {
+                session.release();
             }
         });
     }
     
-    private String extractTextFromDocument(File file) throws IOException {
-        String fileName = file.getName().toLowerCase();
+    /**
+     * Generates quiz questions from document text on the calling thread
+     * @throws IOException if the API request fails, or the reply can't be
+     *         parsed or has fewer questions than asked for
+     */
+    public List<QuizQuestion> generateQuestions(String documentText) throws IOException {
+        // Generate questions via API
+        String result = callGeminiAPI(truncate(documentText));
         
-        if (fileName.endsWith(".pdf")) {
-            try (PDDocument document = PDDocument.load(file)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                return stripper.getText(document);
-            }
-        } else if (fileName.endsWith(".docx")) {
-            try (FileInputStream fis = new FileInputStream(file);
-                 XWPFDocument document = new XWPFDocument(fis);
-                 XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-                return extractor.getText();
-            }
-        } else if (fileName.endsWith(".txt")) {
-            return new String(Files.readAllBytes(Paths.get(file.getAbsolutePath())), StandardCharsets.UTF_8);
-        } else {
-            throw new IOException("Unsupported file format: " + fileName);
+        // Parse response into questions
+        List<QuizQuestion> questions = parseQuestionsFromResponse(result);
+        if (questions.size() < QUESTION_COUNT) {
+            throw new IOException("The reply has " + questions.size() + " of " + QUESTION_COUNT + " questions");
         }
+        return questions;
+    }
+    
+    private static String truncate(String documentText) {
+        // Truncate if too long
+        return documentText.length() > 15000 ? documentText.substring(0, 15000) : documentText;
     }
     
     private String callGeminiAPI(String documentText) throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        HttpPost request = new HttpPost(API_URL);
-        
-        // Set headers
-        request.setHeader("Content-Type", "application/json");
-        request.setHeader("Authorization", "Bearer " + apiKey);
-        request.setHeader("HTTP-Referer", "http://localhost:8080");
-        request.setHeader("X-Title", "Zapio Quiz Generator");
-        
-        // Build request JSON
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("model", MODEL);
-        
-        JSONArray messages = new JSONArray();
-        JSONObject message = new JSONObject();
-        message.put("role", "user");
-        
         // Create prompt
         String prompt = "Based on the following document, create a quiz with 10 single-choice questions. " +
                 "For each question, provide exactly 4 options where only ONE is correct. " +
@@ -113,93 +68,84 @@ public class QuizGenerator {
                 "{\"question\": \"Question text\", \"options\": [\"option1\", \"option2\", \"option3\", \"option4\"], \"correctOption\": 0} " +
                 "where correctOption is the index (0-3) of the correct answer. Here's the document:\n\n" + documentText;
         
-        JSONArray content = new JSONArray();
-        JSONObject textContent = new JSONObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
-        content.put(textContent);
+        return client.complete(prompt, "Zapio Quiz Generator");
+    }
+    
+    /**
+     * Parses the questions in a reply, skipping entries without a question,
+     * options or a valid correct option
+     * @throws IOException if the reply holds no JSON array
+     */
+    private List<QuizQuestion> parseQuestionsFromResponse(String apiResponse) throws IOException {
+        // Try to extract JSON array from the response
+        // First, try to find array directly
+        String jsonContent = apiResponse.trim();
         
-        message.put("content", content);
-        messages.put(message);
-        requestBody.put("messages", messages);
+        // If the response includes explanatory text before/after the JSON, extract just the JSON part
+        int startBracket = jsonContent.indexOf('[');
+        int endBracket = jsonContent.lastIndexOf(']');
         
-        // Set request entity
-        request.setEntity(new StringEntity(requestBody.toString(), StandardCharsets.UTF_8));
+        if (startBracket >= 0 && endBracket > startBracket) {
+            jsonContent = jsonContent.substring(startBracket, endBracket + 1);
+        }
         
-        // Execute request
-        try (CloseableHttpResponse response = httpClient.execute(request)) {
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                String result = EntityUtils.toString(entity);
-                JSONObject jsonResponse = new JSONObject(result);
-                
-                // Extract the model's response from the JSON
-                String generatedContent = jsonResponse
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-                
-                return generatedContent;
-            }
+        JSONArray questionsArray;
+        try {
+            questionsArray = new JSONArray(jsonContent);
+        } catch (JSONException e) {
+            throw new IOException("The reply has no questions: " + e.getMessage(), e);
         }
         
-        throw new IOException("Failed to get a valid response from the API");
-    }
-    
-    private List<QuizQuestion> parseQuestionsFromResponse(String apiResponse) {
+        // Parse each question
         List<QuizQuestion> questions = new ArrayList<>();
-        
-        try {
-            // Try to extract JSON array from the response
-            // First, try to find array directly
-            String jsonContent = apiResponse.trim();
-            
-            // If the response includes explanatory text before/after the JSON, extract just the JSON part
-            int startBracket = jsonContent.indexOf('[');
-            int endBracket = jsonContent.lastIndexOf(']');
+        for (int i = 0; i < questionsArray.length() && questions.size() < QUESTION_COUNT; i++) {
+            JSONObject questionObj = questionsArray.optJSONObject(i);
+            if (questionObj == null) {
+                continue;
+            }
+            String questionText = questionObj.optString("question").trim();
+            JSONArray optionsArray = questionObj.optJSONArray("options");
+            int correctOption = questionObj.optInt("correctOption", -1);
+            if (questionText.isEmpty() || optionsArray == null || correctOption < 0
+                    || correctOption >= Math.min(optionsArray.length(), 4)) {
+                continue;
+            }
             
-            if (startBracket >= 0 && endBracket > startBracket) {
-                jsonContent = jsonContent.substring(startBracket, endBracket + 1);
+            List<String> options = new ArrayList<>();
+            for (int j = 0; j < optionsArray.length() && j < 4; j++) {
+                options.add(optionsArray.optString(j));
             }
             
-            JSONArray questionsArray = new JSONArray(jsonContent);
+            // Ensure we have exactly 4 options
+            while (options.size() < 4) {
+                options.add("N/A");
+            }
             
-            // Parse each question
-            for (int i = 0; i < questionsArray.length() && i < 10; i++) {
-                JSONObject questionObj = questionsArray.getJSONObject(i);
-                String questionText = questionObj.getString("question");
-                
-                JSONArray optionsArray = questionObj.getJSONArray("options");
-                List<String> options = new ArrayList<>();
-                
-                for (int j = 0; j < optionsArray.length() && j < 4; j++) {
-                    options.add(optionsArray.getString(j));
-                }
-                
-                // Ensure we have exactly 4 options
-                while (options.size() < 4) {
-                    options.add("N/A");
-                }
-                
-                int correctOption = questionObj.getInt("correctOption");
-                
-                // Create and add the question
-                QuizQuestion quizQuestion = new QuizQuestion(questionText, options, correctOption);
-                questions.add(quizQuestion);
+            // Create and add the question
+            questions.add(new QuizQuestion(questionText, options, correctOption));
+        }
+        return questions;
+    }
+    
+    /**
+     * Parses a reply for the GUI, with placeholder questions if it can't be parsed
+     */
+    private List<QuizQuestion> withPlaceholders(String apiResponse) {
+        try {
+            List<QuizQuestion> questions = parseQuestionsFromResponse(apiResponse);
+            if (!questions.isEmpty()) {
+                return questions;
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             System.err.println("Error parsing API response: " + e.getMessage());
             e.printStackTrace();
-            
-            // Fallback: create some basic questions if parsing fails
-            if (questions.isEmpty()) {
-                List<String> defaultOptions = List.of("Option 1", "Option 2", "Option 3", "Option 4");
-                questions.add(new QuizQuestion("Failed to parse API response. Question 1?", defaultOptions));
-                questions.add(new QuizQuestion("Failed to parse API response. Question 2?", defaultOptions));
-            }
         }
         
+        // Fallback: create some basic questions if parsing fails
+        List<QuizQuestion> questions = new ArrayList<>();
+        List<String> defaultOptions = List.of("Option 1", "Option 2", "Option 3", "Option 4");
+        questions.add(new QuizQuestion("Failed to parse API response. Question 1?", defaultOptions));
+        questions.add(new QuizQuestion("Failed to parse API response. Question 2?", defaultOptions));
         return questions;
     }
 }
@@ -365,10 +365,17 @@ public class QuizScreen extends JPanel {
             }
         }
         
-        // Show results screen
-        parentFrame.getContentPane().removeAll();
-        parentFrame.getContentPane().add(new ResultScreen(parentFrame, correctAnswers, questions.size()));
-        parentFrame.validate();
-        parentFrame.repaint();
+        // Show results screen; this screen is discarded
+        ResultScreen resultScreen = new ResultScreen(parentFrame, correctAnswers, questions.size(), questions);
+        ScreenNavigator navigator = ScreenNavigator.forComponent(this);
+        if (navigator != null) {
+            navigator.show(resultScreen);
+            return;
+        }
+        // No longer shown inside a navigator, for instance after the session was reset
+        ZapioApp app = ZapioApp.forComponent(this);
+        if (app != null) {
+            app.showContent(resultScreen);
+        }
     }
 }
@@ -0,0 +1,208 @@
+package com.zapio;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fonts and images bundled with the app.
+ *
+ * Everything is read from the classpath (the assets folder is packaged into
+ * the jar), so the app runs from any directory. Fonts are created and
+ * registered and images are decoded in parallel on background threads, each
+ * at most once. Scaled icons are made off the EDT too and shared, so a screen
+ * only waits for the resources it actually uses, and only if they aren't
+ * ready yet.
+ */
+public final class Resources {
+
+    /**
+     * Bundled fonts
+     */
+    public enum AppFont {
+        INTER_REGULAR("Inter-Regular.otf"),
+        INTER_MEDIUM("Inter-Medium.otf"),
+        INTER_LIGHT("Inter-Light-BETA.otf"),
+        INTER_BOLD("Inter-Bold.otf"),
+        DANCING_SCRIPT("Dancing Script OT.otf");
+
+        private final String fileName;
+
+        AppFont(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    /**
+     * Bundled images
+     */
+    public enum AppImage {
+        LOGO("zapio_logo.png"),
+        UPLOAD_ICON("uploadicon.png");
+
+        private final String fileName;
+
+        AppImage(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    private static final String FONT_DIR = "/assets/fonts/";
+    private static final String IMAGE_DIR = "/assets/images/";
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), runnable -> {
+                Thread thread = new Thread(runnable, "resource-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final Map<AppFont, CompletableFuture<Font>> FONTS = new ConcurrentHashMap<>();
+    private static final Map<AppImage, CompletableFuture<BufferedImage>> IMAGES = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<ImageIcon>> ICONS = new ConcurrentHashMap<>();
+
+    private Resources() {
+    }
+
+    /**
+     * Starts loading every bundled font and image that isn't loading yet.
+     * Resources requested earlier are queued first.
+     */
+    public static void preload() {
+        for (AppFont font : AppFont.values()) {
+            loadFont(font);
+        }
+        for (AppImage image : AppImage.values()) {
+            loadImage(image);
+        }
+    }
+
+    /**
+     * Starts creating and registering a font in the background
+     */
+    public static CompletableFuture<Font> loadFont(AppFont font) {
+        return FONTS.computeIfAbsent(font, key -> CompletableFuture.supplyAsync(() -> createFont(key), LOADER));
+    }
+
+    /**
+     * Starts decoding an image in the background
+     */
+    public static CompletableFuture<BufferedImage> loadImage(AppImage image) {
+        return IMAGES.computeIfAbsent(image, key -> CompletableFuture.supplyAsync(() -> readImage(key), LOADER));
+    }
+
+    /**
+     * Starts scaling an image to an icon of the given size in the background
+     */
+    public static CompletableFuture<ImageIcon> prepareIcon(AppImage image, int width, int height) {
+        return ICONS.computeIfAbsent(image + "@" + width + "x" + height,
+                key -> loadImage(image).thenApplyAsync(source -> createIcon(source, width, height), LOADER));
+    }
+
+    /**
+     * Returns a bundled font at the given size, waiting for it if it's still loading.
+     * Falls back to SansSerif if the font couldn't be loaded.
+     */
+    public static Font font(AppFont font, float size) {
+        Font base = loadFont(font).join();
+        return base != null ? base.deriveFont(Font.PLAIN, size) : new Font("SansSerif", Font.PLAIN, Math.round(size));
+    }
+
+    /**
+     * Returns an image scaled to an icon of the given size, waiting for it if it's still being made.
+     * The icon is empty if the image couldn't be loaded.
+     */
+    public static ImageIcon icon(AppImage image, int width, int height) {
+        return prepareIcon(image, width, height).join();
+    }
+
+    private static Font createFont(AppFont font) {
+        try (InputStream in = open(FONT_DIR + font.fileName)) {
+            Font created = Font.createFont(Font.TRUETYPE_FONT, in);
+            GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(created);
+            return created;
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println("Error loading font " + font.fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static BufferedImage readImage(AppImage image) {
+        try (InputStream in = open(IMAGE_DIR + image.fileName)) {
+            BufferedImage read = ImageIO.read(in);
+            if (read == null) {
+                throw new IOException("Unsupported image format");
+            }
+            return read;
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println("Error loading image " + image.fileName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static InputStream open(String path) throws IOException {
+        InputStream in = Resources.class.getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+        return in;
+    }
+
+    /**
+     * Scales an image for the default screen, adding a sharper variant on HiDPI displays
+     */
+    private static ImageIcon createIcon(BufferedImage source, int width, int height) {
+        if (source == null) {
+            return new ImageIcon(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+        }
+        BufferedImage base = scale(source, width, height);
+        double screenScale = screenScale();
+        if (screenScale <= 1.0) {
+            return new ImageIcon(base);
+        }
+        BufferedImage sharp = scale(source, (int) Math.ceil(width * screenScale), (int) Math.ceil(height * screenScale));
+        return new ImageIcon(new BaseMultiResolutionImage(base, sharp));
+    }
+
+    /**
+     * Downscales in halving steps with bilinear filtering, which looks as
+     * smooth as Image.SCALE_SMOOTH at a fraction of the cost
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = step.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g2.dispose();
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static double screenScale() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1.0;
+        }
+        GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return config.getDefaultTransform().getScaleX();
+    }
+}
@@ -7,6 +7,7 @@ import java.awt.event.*;
 import java.awt.geom.Arc2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.RoundRectangle2D;
+import java.util.List;
 
 /**
  * Screen to display the quiz results with a modern, elegant UI
@@ -24,7 +25,13 @@ public class ResultScreen extends JPanel {
     private static final Color WARNING_COLOR = new Color(60, 60, 60);
     private static final Color ERROR_COLOR = new Color(120, 120, 120);
     
-    public ResultScreen(JFrame parentFrame, int score, int totalQuestions) {
+    // Entrance animation timing
+    private static final long FADE_NANOS = 600_000_000L;
+    private static final long MESSAGE_DELAY_NANOS = 300_000_000L;
+    private static final long PROGRESS_DELAY_NANOS = 200_000_000L;
+    private static final double PROGRESS_PER_SECOND = 1.25;
+    
+    public ResultScreen(JFrame parentFrame, int score, int totalQuestions, List<QuizQuestion> questions) {
         // Use absolute positioning for complete control
         setLayout(null);
         setBackground(BACKGROUND_COLOR);
@@ -45,21 +52,12 @@ public class ResultScreen extends JPanel {
         
         // Add subtle animation to title for micro-interaction
         titleLabel.putClientProperty("original-location-y", titleLabel.getLocation().y);
-        new Timer(40, new ActionListener() {
-            private int frame = 0;
-            private final int totalFrames = 15;
-            
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (frame < totalFrames) {
-                    float alpha = (float) frame / totalFrames;
-                    titleLabel.setForeground(new Color(0, 0, 0, (int)(alpha * 255)));
-                    frame++;
-                } else {
-                    ((Timer)e.getSource()).stop();
-                }
-            }
-        }).start();
+        titleLabel.setForeground(new Color(0, 0, 0, 0));
+        AnimationScheduler.getInstance().start(titleLabel, elapsedNanos -> {
+            float alpha = Math.min(1f, elapsedNanos / (float) FADE_NANOS);
+            titleLabel.setForeground(new Color(0, 0, 0, (int)(alpha * 255)));
+            return alpha < 1f;
+        });
         
         // Create main content panel with comfortable spacing
         JPanel contentPanel = new JPanel();
@@ -163,33 +161,23 @@ public class ResultScreen extends JPanel {
         messagePanel.putClientProperty("original-location-y", messagePanel.getLocation().y);
         messagePanel.setVisible(false); // Start invisible for fade-in effect
         
-        // Create a timer for animation
-        Timer messageTimer = new Timer(40, new ActionListener() {
-            private int frame = 0;
-            private final int totalFrames = 15;
-            
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (frame == 0) {
-                    messagePanel.setVisible(true);
-                }
-                
-                if (frame < totalFrames) {
-                    float alpha = (float) frame / totalFrames;
-                    messagePanel.setBackground(new Color(
-                        CARD_BACKGROUND.getRed(),
-                        CARD_BACKGROUND.getGreen(),
-                        CARD_BACKGROUND.getBlue(),
-                        (int)(alpha * 255)
-                    ));
-                    frame++;
-                } else {
-                    ((Timer)e.getSource()).stop();
-                }
+        // Fade the message in once the score is showing. The panel itself is hidden
+        // until then, so the animation runs against the screen.
+        AnimationScheduler.getInstance().start(this, elapsedNanos -> {
+            long fadeNanos = elapsedNanos - MESSAGE_DELAY_NANOS;
+            if (fadeNanos < 0) {
+                return true;
             }
+            messagePanel.setVisible(true);
+            float alpha = Math.min(1f, fadeNanos / (float) FADE_NANOS);
+            messagePanel.setBackground(new Color(
+                CARD_BACKGROUND.getRed(),
+                CARD_BACKGROUND.getGreen(),
+                CARD_BACKGROUND.getBlue(),
+                (int)(alpha * 255)
+            ));
+            return alpha < 1f;
         });
-        messageTimer.setInitialDelay(300); // Delay to show after score
-        messageTimer.start();
         
         // Return to home button with elegant styling matching QuizScreen
         JButton returnButton = new JButton("Return to Home");
@@ -208,6 +196,17 @@ public class ResultScreen extends JPanel {
             }
         });
         
+        // Export the quiz questions, styled as the secondary button
+        JButton exportButton = new JButton("Export Quiz");
+        exportButton.setFont(new Font("SansSerif", Font.PLAIN, 16));
+        exportButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        exportButton.setBackground(Color.WHITE);
+        exportButton.setForeground(SECONDARY_TEXT);
+        exportButton.setUI(new RoundedButtonUI(30, false));
+        exportButton.setPreferredSize(new Dimension(200, 44));
+        exportButton.addActionListener(e -> StudyPackExportDialog.export(exportButton,
+                new StudyPack("Quiz", null, questions, null), "Quiz", "quiz"));
+        
         // Position components using absolute coordinates for precise control
         
         // Get dimensions for positioning
@@ -244,10 +243,11 @@ public class ResultScreen extends JPanel {
         messagePanel.setBounds(messagePanelX, messagePanelY, messagePanelWidth, messagePanelHeight);
         mainLayeredPane.add(messagePanel, JLayeredPane.DEFAULT_LAYER);
         
-        // Position button below message panel
+        // Position the buttons side by side below message panel
         final int buttonWidth = 200;
         final int buttonHeight = 44;
-        final int buttonX = (screenWidth - buttonWidth) / 2;
+        final int buttonGap = 20;
+        final int buttonX = screenWidth / 2 - buttonWidth - buttonGap / 2;
         // Calculate the button Y position - moved up by reducing the gap and an extra 15px
         int tempButtonY = messagePanelY + messagePanelHeight + 25; // Reduced from 40 to 25
         
@@ -259,7 +259,9 @@ public class ResultScreen extends JPanel {
             buttonY = tempButtonY;
         }
         
-        returnButton.setBounds(buttonX, buttonY, buttonWidth, buttonHeight);
+        exportButton.setBounds(buttonX, buttonY, buttonWidth, buttonHeight);
+        mainLayeredPane.add(exportButton, JLayeredPane.DEFAULT_LAYER);
+        returnButton.setBounds(buttonX + buttonWidth + buttonGap, buttonY, buttonWidth, buttonHeight);
         mainLayeredPane.add(returnButton, JLayeredPane.DEFAULT_LAYER);
         
         // Add component listener to handle resizing
@@ -277,9 +279,10 @@ public class ResultScreen extends JPanel {
                 int newMessagePanelX = (getWidth() - messagePanelWidth) / 2;
                 messagePanel.setBounds(newMessagePanelX, messagePanelY, messagePanelWidth, messagePanelHeight);
                 
-                // Button X position changes with width, Y remains the same
-                int newButtonX = (getWidth() - buttonWidth) / 2;
-                returnButton.setBounds(newButtonX, buttonY, buttonWidth, buttonHeight);
+                // Button X positions change with width, Y remains the same
+                int newButtonX = getWidth() / 2 - buttonWidth - buttonGap / 2;
+                exportButton.setBounds(newButtonX, buttonY, buttonWidth, buttonHeight);
+                returnButton.setBounds(newButtonX + buttonWidth + buttonGap, buttonY, buttonWidth, buttonHeight);
             }
         });
     }
@@ -321,27 +324,17 @@ public class ResultScreen extends JPanel {
         private static final long serialVersionUID = 1L;
         private final double percentage;
         private double animatedPercentage = 0.0;
-        private Timer animationTimer;
         
         public CircularProgressPanel(double percentage) {
             this.percentage = percentage;
             setOpaque(false);
             
-            // Create animation for progress arc
-            animationTimer = new Timer(16, new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent e) {
-                    if (animatedPercentage < percentage) {
-                        // Ease-out animation for smooth progress
-                        animatedPercentage = Math.min(percentage, animatedPercentage + 0.02);
-                        repaint();
-                    } else {
-                        animationTimer.stop();
-                    }
-                }
+            // Grow the progress arc at a steady rate after a short delay
+            AnimationScheduler.getInstance().start(this, elapsedNanos -> {
+                double seconds = (elapsedNanos - PROGRESS_DELAY_NANOS) / 1_000_000_000.0;
+                animatedPercentage = Math.max(0.0, Math.min(percentage, seconds * PROGRESS_PER_SECOND));
+                return animatedPercentage < percentage;
             });
-            animationTimer.setInitialDelay(200);
-            animationTimer.start();
         }
         
         @Override
@@ -4,6 +4,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.RoundRectangle2D;
+import java.util.Arrays;
 
 /**
  * A JButton with rounded corners.
@@ -18,6 +19,7 @@ public class RoundedButton extends JButton {
     private boolean isHovered = false;
     private int cornerRadius = 15; // Adjust for desired roundness
     private int borderThickness = 2; // Border thickness in pixels
+    private final ButtonBackgroundCache backgroundCache = new ButtonBackgroundCache();
 
     public RoundedButton(String text) {
         super(text);
@@ -71,38 +73,50 @@ public class RoundedButton extends JButton {
 
     @Override
     protected void paintComponent(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g.create();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // Determine background color based on state
+        // Determine state and background color
+        ButtonBackgroundCache.State state;
+        Color fillColor;
         if (getModel().isPressed()) {
-            g2.setColor(pressedBackgroundColor);
+            state = ButtonBackgroundCache.State.PRESSED;
+            fillColor = pressedBackgroundColor;
         } else if (isHovered) {
-            g2.setColor(hoverBackgroundColor);
+            state = ButtonBackgroundCache.State.HOVER;
+            fillColor = hoverBackgroundColor;
         } else {
-            g2.setColor(getBackground());
+            state = isEnabled() ? ButtonBackgroundCache.State.NORMAL : ButtonBackgroundCache.State.DISABLED;
+            fillColor = getBackground();
         }
-
-        // Paint the rounded rectangle background
-        g2.fill(new RoundRectangle2D.Float(borderThickness/2, borderThickness/2, 
-                                          getWidth()-borderThickness, getHeight()-borderThickness, 
-                                          cornerRadius, cornerRadius));
-        
         // Draw border if hovered
-        if (isHovered) {
-            g2.setColor(borderColor);
-            g2.setStroke(new BasicStroke(borderThickness));
-            g2.draw(new RoundRectangle2D.Float(borderThickness/2, borderThickness/2, 
-                                             getWidth()-borderThickness, getHeight()-borderThickness, 
-                                             cornerRadius, cornerRadius));
-        }
-        
-        g2.dispose();
+        Color outlineColor = isHovered ? borderColor : null;
+
+        // The rounded background is painted once per state and size, then copied
+        backgroundCache.paint(g, state, getWidth(), getHeight(), Arrays.asList(fillColor, outlineColor),
+                (g2, width, height) -> {
+            RoundRectangle2D shape = new RoundRectangle2D.Float(borderThickness/2, borderThickness/2,
+                                                                width-borderThickness, height-borderThickness,
+                                                                cornerRadius, cornerRadius);
+            g2.setColor(fillColor);
+            g2.fill(shape);
+            if (outlineColor != null) {
+                g2.setColor(outlineColor);
+                g2.setStroke(new BasicStroke(borderThickness));
+                g2.draw(shape);
+            }
+        });
         
         // Let the superclass paint the text
         super.paintComponent(g);
     }
 
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        // Colors and fonts may come from the new look and feel
+        if (backgroundCache != null) {
+            backgroundCache.clear();
+        }
+    }
+
     // Optional: Override paintBorder if you want a border
     // @Override
     // protected void paintBorder(Graphics g) {
@@ -6,6 +6,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.RoundRectangle2D;
+import java.util.Arrays;
 
 /**
  * Custom UI for buttons with rounded corners and smooth hover effects
@@ -13,6 +14,8 @@ import java.awt.geom.RoundRectangle2D;
 public class RoundedButtonUI extends BasicButtonUI {
     private final int cornerRadius;
     private boolean isPrimary;
+    private MouseAdapter hoverListener;
+    private final ButtonBackgroundCache backgroundCache = new ButtonBackgroundCache();
     
     // Colors for hover states
     private static final Color PRIMARY_HOVER_BG = Color.WHITE;
@@ -56,7 +59,7 @@ public class RoundedButtonUI extends BasicButtonUI {
         }
         
         // Add hover listener for smooth transitions
-        button.addMouseListener(new MouseAdapter() {
+        hoverListener = new MouseAdapter() {
             @Override
             public void mouseEntered(MouseEvent e) {
                 if (isPrimary) {
@@ -80,34 +83,55 @@ public class RoundedButtonUI extends BasicButtonUI {
                 }
                 button.repaint();
             }
-        });
+        };
+        button.addMouseListener(hoverListener);
+    }
+    
+    @Override
+    public void uninstallUI(JComponent c) {
+        // Otherwise the old UI keeps recoloring the button after it's replaced
+        c.removeMouseListener(hoverListener);
+        hoverListener = null;
+        backgroundCache.clear();
+        super.uninstallUI(c);
     }
     
     @Override
     public void paint(Graphics g, JComponent c) {
         AbstractButton button = (AbstractButton) c;
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Color fillColor = button.getBackground();
+        boolean hovered = fillColor == (isPrimary ? PRIMARY_HOVER_BG : SECONDARY_HOVER_BG);
         
-        // Draw rounded rectangle for background
-        g2d.setColor(button.getBackground());
-        g2d.fill(new RoundRectangle2D.Double(0, 0, c.getWidth(), c.getHeight(), cornerRadius, cornerRadius));
+        // Primary button (Next): Black border only on hover
+        // Secondary button (Back): Always black border
+        Color outlineColor = !isPrimary || hovered ? Color.BLACK : null;
         
-        // Always draw border with appropriate color
-        if (isPrimary) {
-            // Primary button (Next): Black border only on hover
-            if (button.getBackground() == PRIMARY_HOVER_BG) {
-                g2d.setColor(Color.BLACK);
-                g2d.setStroke(new BasicStroke(1.0f));
-                g2d.draw(new RoundRectangle2D.Double(0, 0, c.getWidth() - 1, c.getHeight() - 1, cornerRadius, cornerRadius));
-            }
+        ButtonBackgroundCache.State state;
+        if (!button.isEnabled()) {
+            state = ButtonBackgroundCache.State.DISABLED;
+        } else if (button.getModel().isPressed()) {
+            state = ButtonBackgroundCache.State.PRESSED;
+        } else if (hovered) {
+            state = ButtonBackgroundCache.State.HOVER;
         } else {
-            // Secondary button (Back): Always black border
-            g2d.setColor(Color.BLACK);
-            g2d.setStroke(new BasicStroke(1.0f));
-            g2d.draw(new RoundRectangle2D.Double(0, 0, c.getWidth() - 1, c.getHeight() - 1, cornerRadius, cornerRadius));
+            state = ButtonBackgroundCache.State.NORMAL;
         }
         
+        // Draw rounded rectangle for background, from the per-state image cache
+        backgroundCache.paint(g, state, c.getWidth(), c.getHeight(), Arrays.asList(fillColor, outlineColor),
+                (g2, width, height) -> {
+            g2.setColor(fillColor);
+            g2.fill(new RoundRectangle2D.Double(0, 0, width, height, cornerRadius, cornerRadius));
+            if (outlineColor != null) {
+                g2.setColor(outlineColor);
+                g2.setStroke(new BasicStroke(1.0f));
+                g2.draw(new RoundRectangle2D.Double(0, 0, width - 1, height - 1, cornerRadius, cornerRadius));
+            }
+        });
+        
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
         // Calculate text position for proper centering
         FontMetrics fm = g2d.getFontMetrics();
         Rectangle textRect = new Rectangle(0, 0, c.getWidth(), c.getHeight());
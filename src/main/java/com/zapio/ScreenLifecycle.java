@@ -0,0 +1,32 @@
+package com.zapio;
+
+/**
+ * Callbacks a screen receives from {@link ScreenNavigator} as it is shown,
+ * replaced and discarded.
+ *
+ * A screen that holds anything besides plain components, such as cached
+ * images, background work or listeners on other objects, implements this
+ * to release it. Animations registered with the AnimationScheduler are
+ * stopped by the navigator itself.
+ */
+public interface ScreenLifecycle {
+
+    /**
+     * Called after the screen has been added to the window
+     */
+    default void onAttach() {
+    }
+
+    /**
+     * Called after the screen has been removed from the window
+     */
+    default void onDetach() {
+    }
+
+    /**
+     * Called after {@link #onDetach()} when the screen won't be shown again.
+     * Releases everything the screen holds.
+     */
+    default void dispose() {
+    }
+}
@@ -0,0 +1,92 @@
+package com.zapio;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Shows one screen at a time in a host container, usually a window's content pane.
+ *
+ * Showing a screen detaches the previous one and, unless it was marked with
+ * {@link #keep(JComponent)}, discards it: its animations are stopped and it
+ * is disposed if it implements {@link ScreenLifecycle}. After that nothing
+ * in the app refers to it any more, so a long study session doesn't pile up
+ * old screens, page images or document handles.
+ *
+ * Only use the navigator from the EDT.
+ */
+public class ScreenNavigator {
+    private final JComponent host;
+    private final Set<JComponent> keptScreens = Collections.newSetFromMap(new IdentityHashMap<>());
+    private JComponent current;
+
+    public ScreenNavigator(JComponent host) {
+        this.host = host;
+        host.putClientProperty(ScreenNavigator.class, this);
+    }
+
+    /**
+     * Returns the navigator showing the screen a component is in, or null if there is none
+     */
+    public static ScreenNavigator forComponent(Component component) {
+        for (Component c = component; c != null; c = c.getParent()) {
+            if (c instanceof JComponent) {
+                Object navigator = ((JComponent) c).getClientProperty(ScreenNavigator.class);
+                if (navigator instanceof ScreenNavigator) {
+                    return (ScreenNavigator) navigator;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks a screen that is shown again later, such as the upload and selection
+     * screens. It is detached when replaced but never disposed.
+     */
+    public void keep(JComponent screen) {
+        keptScreens.add(screen);
+    }
+
+    /**
+     * Replaces the current screen, discarding it unless it is kept
+     */
+    public void show(JComponent screen) {
+        if (screen == current) {
+            return;
+        }
+        JComponent previous = current;
+        if (previous != null) {
+            host.remove(previous);
+        }
+        current = screen;
+        host.add(screen);
+        host.revalidate();
+        host.repaint();
+
+        if (previous != null) {
+            if (previous instanceof ScreenLifecycle) {
+                ((ScreenLifecycle) previous).onDetach();
+            }
+            if (!keptScreens.contains(previous)) {
+                discard(previous);
+            }
+        }
+        if (screen instanceof ScreenLifecycle) {
+            ((ScreenLifecycle) screen).onAttach();
+        }
+    }
+
+    public JComponent getCurrent() {
+        return current;
+    }
+
+    private void discard(JComponent screen) {
+        AnimationScheduler.getInstance().stopAll(screen);
+        if (screen instanceof ScreenLifecycle) {
+            ((ScreenLifecycle) screen).dispose();
+        }
+    }
+}
@@ -15,7 +15,7 @@ public class SelectionScreen extends JPanel {
     private DocumentPreviewPanel previewPanel;
     private JPanel optionsCardPanel; // Panel to hold the option cards
     private RoundedButton proceedButton; // Use the custom rounded button
-    private File documentFile;
+    private DocumentSession documentSession; // Owned; closed when another document is loaded
     private JPanel selectedOptionCard = null; // Track the selected card
     private final Color cardDefaultBg = new Color(245, 245, 245); // Light gray for cards
     private final Color cardHoverBg = new Color(230, 230, 230); // Slightly darker gray
@@ -98,12 +98,12 @@ public class SelectionScreen extends JPanel {
                 JOptionPane.showMessageDialog(this, "Please select an option first.", "No Option Selected", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-            if (documentFile == null) {
+            if (documentSession == null) {
                 JOptionPane.showMessageDialog(this, "Please upload a document first.", "No Document", JOptionPane.WARNING_MESSAGE);
                 return;
             }
             
-            System.out.println("Proceed button clicked. File: " + documentFile.getName() + ", Option: " + selected);
+            System.out.println("Proceed button clicked. File: " + documentSession.getFile().getName() + ", Option: " + selected);
             
             // Handle different options
             if ("Practice Quiz".equals(selected)) {
@@ -219,10 +219,14 @@ public class SelectionScreen extends JPanel {
 
     /**
      * Load and display a document in the preview panel.
+     * Opens a new document session and closes the previous one.
      */
     public void loadDocument(File file) {
-        this.documentFile = file;
-        previewPanel.loadDocument(file);
+        if (documentSession != null) {
+            documentSession.close();
+        }
+        documentSession = new DocumentSession(file);
+        previewPanel.loadDocument(documentSession);
         // Reset selection when a new document is loaded
         if (selectedOptionCard != null) {
              JLabel oldLabel = (JLabel) selectedOptionCard.getComponent(0);
@@ -232,54 +236,52 @@ public class SelectionScreen extends JPanel {
          }
     }
     
-    // Static reference to store the previous screen for navigation
-    public static JComponent PREVIOUS_SCREEN = null;
+    /**
+     * Closes the current document so its parsed handle is released once
+     * any running preview or generation is done with it.
+     */
+    public void closeDocument() {
+        previewPanel.clear();
+        if (documentSession != null) {
+            documentSession.close();
+            documentSession = null;
+        }
+    }
     
     /**
      * Generate a quiz based on the current document
      */
     private void generateQuiz(ZapioApp app) {
-        if (documentFile == null) {
+        if (documentSession == null) {
             return; // Should never happen as we check before calling
         }
         
-        // Store current panel as static reference to return to later
         JFrame frame = (JFrame) SwingUtilities.getWindowAncestor(this);
-        PREVIOUS_SCREEN = this;
         
         // Create and display loading screen
         LoadingScreen loadingScreen = new LoadingScreen("Generating questions from your document...");
-        Container contentPane = frame.getContentPane();
-        contentPane.removeAll();
-        contentPane.add(loadingScreen);
-        frame.validate();
-        frame.repaint();
+        app.showContent(loadingScreen);
         loadingScreen.start();
         
         // Create quiz generator
         QuizGenerator generator = new QuizGenerator();
         
         // Generate questions asynchronously
-        generator.generateQuestionsAsync(documentFile).thenAccept(questions -> {
+        generator.generateQuestionsAsync(documentSession).thenAccept(questions -> {
             // Run on EDT
             SwingUtilities.invokeLater(() -> {
                 loadingScreen.stop();
                 
                 if (questions.isEmpty()) {
                     // Handle error
-                    contentPane.removeAll();
-                    contentPane.add(this); // Go back to selection screen
+                    app.showScreen(ZapioApp.SELECTION_SCREEN); // Go back to selection screen
                     JOptionPane.showMessageDialog(frame, 
                         "Failed to generate quiz questions. Please try again.", 
                         "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
                     // Show quiz screen
-                    contentPane.removeAll();
-                    contentPane.add(new QuizScreen(frame, questions));
+                    app.showContent(new QuizScreen(frame, questions));
                 }
-                
-                frame.validate();
-                frame.repaint();
             });
         });
     }
@@ -288,47 +290,36 @@ public class SelectionScreen extends JPanel {
      * Generate flashcards based on the current document
      */
     private void generateFlashcards(ZapioApp app) {
-        if (documentFile == null) {
+        if (documentSession == null) {
             return; // Should never happen as we check before calling
         }
         
-        // Store current panel as static reference to return to later
         JFrame frame = (JFrame) SwingUtilities.getWindowAncestor(this);
-        PREVIOUS_SCREEN = this;
         
         // Create and display loading screen
         LoadingScreen loadingScreen = new LoadingScreen("Generating flashcards from your document...");
-        Container contentPane = frame.getContentPane();
-        contentPane.removeAll();
-        contentPane.add(loadingScreen);
-        frame.validate();
-        frame.repaint();
+        app.showContent(loadingScreen);
         loadingScreen.start();
         
         // Create flashcard generator
         FlashcardGenerator generator = new FlashcardGenerator();
         
         // Generate flashcards asynchronously
-        generator.generateFlashcardsAsync(documentFile).thenAccept(flashcards -> {
+        generator.generateFlashcardsAsync(documentSession).thenAccept(flashcards -> {
             // Run on EDT
             SwingUtilities.invokeLater(() -> {
                 loadingScreen.stop();
                 
                 if (flashcards.isEmpty()) {
                     // Handle error
-                    contentPane.removeAll();
-                    contentPane.add(this); // Go back to selection screen
+                    app.showScreen(ZapioApp.SELECTION_SCREEN); // Go back to selection screen
                     JOptionPane.showMessageDialog(frame, 
                         "Failed to generate flashcards. Please try again.", 
                         "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
                     // Show flashcard screen
-                    contentPane.removeAll();
-                    contentPane.add(new FlashcardScreen(frame, flashcards));
+                    app.showContent(new FlashcardScreen(frame, flashcards));
                 }
-                
-                frame.validate();
-                frame.repaint();
             });
         });
     }
@@ -337,47 +328,38 @@ public class SelectionScreen extends JPanel {
      * Generate a comprehensive cheatsheet based on the current document
      */
     private void generateCheatsheet(ZapioApp app) {
-        if (documentFile == null) {
+        if (documentSession == null) {
             return; // Should never happen as we check before calling
         }
         
-        // Store current panel as static reference to return to later
         JFrame frame = (JFrame) SwingUtilities.getWindowAncestor(this);
-        PREVIOUS_SCREEN = this;
         
         // Create and display loading screen
         LoadingScreen loadingScreen = new LoadingScreen("Generating comprehensive cheatsheet from your document...");
-        Container contentPane = frame.getContentPane();
-        contentPane.removeAll();
-        contentPane.add(loadingScreen);
-        frame.validate();
-        frame.repaint();
+        app.showContent(loadingScreen);
         loadingScreen.start();
         
         // Create cheatsheet generator
         CheatsheetGenerator generator = new CheatsheetGenerator();
+        // The session may be closed or replaced before the cheatsheet arrives
+        File file = documentSession.getFile();
         
         // Generate cheatsheet asynchronously
-        generator.generateCheatsheetAsync(documentFile).thenAccept(cheatsheetContent -> {
+        generator.generateCheatsheetAsync(documentSession).thenAccept(cheatsheetContent -> {
             // Run on EDT
             SwingUtilities.invokeLater(() -> {
                 loadingScreen.stop();
                 
                 if (cheatsheetContent == null || cheatsheetContent.isEmpty()) {
                     // Handle error
-                    contentPane.removeAll();
-                    contentPane.add(this); // Go back to selection screen
+                    app.showScreen(ZapioApp.SELECTION_SCREEN); // Go back to selection screen
                     JOptionPane.showMessageDialog(frame, 
                         "Failed to generate cheatsheet. Please try again.", 
                         "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
                     // Show cheatsheet screen
-                    contentPane.removeAll();
-                    contentPane.add(new CheatsheetScreen(frame, documentFile, cheatsheetContent));
+                    app.showContent(new CheatsheetScreen(frame, file, cheatsheetContent));
                 }
-                
-                frame.validate();
-                frame.repaint();
             });
         });
     }
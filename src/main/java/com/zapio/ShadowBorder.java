@@ -2,7 +2,6 @@ package com.zapio;
 
 import javax.swing.border.AbstractBorder;
 import java.awt.*;
-import java.awt.geom.RoundRectangle2D;
 
 /**
  * Custom border that adds a shadow effect to components
@@ -20,27 +19,9 @@ public class ShadowBorder extends AbstractBorder {
     
     @Override
     public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        // Create shadow with gradient opacity
-        
-        // Draw shadow
-        for (int i = 0; i < shadowSize; i++) {
-            float opacity = shadowOpacity * (shadowSize - i) / shadowSize;
-            g2d.setColor(new Color(0, 0, 0, (int)(255 * opacity)));
-            g2d.setStroke(new BasicStroke(1));
-            g2d.draw(new RoundRectangle2D.Float(
-                x + i, 
-                y + i, 
-                width - i * 2, 
-                height - i * 2, 
-                cornerRadius, 
-                cornerRadius
-            ));
-        }
-        
-        g2d.dispose();
+        // Rasterized once per shadow style and reused at every size
+        ShadowRenderer.paint(g, ShadowRenderer.Style.OUTLINE, x, y, width, height,
+                shadowSize, shadowOpacity, cornerRadius);
     }
     
     @Override
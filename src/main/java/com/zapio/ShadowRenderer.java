@@ -0,0 +1,192 @@
+package com.zapio;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Paints the soft rounded shadows used by ShadowBorder and the flashcard.
+ *
+ * A shadow is only rasterized once per style, size, opacity, corner radius
+ * and display scale, into an image just big enough for its four corners.
+ * Painting it at any component size is then a nine-patch copy: the corners
+ * as they are, the edges stretched along their length and the center
+ * stretched both ways (or skipped when it's transparent).
+ */
+public final class ShadowRenderer {
+
+    /**
+     * How the shadow layers are drawn
+     */
+    public enum Style {
+        /** Outlines fading from the outer edge inwards, as ShadowBorder draws them */
+        OUTLINE,
+        /** Filled layers fading outwards from the inset card edge */
+        FILLED
+    }
+
+    // Stretched pixels between the corner regions of a cached shadow
+    private static final int CENTER_SIZE = 2;
+    private static final int MAX_CACHED_SHADOWS = 32;
+
+    private static final Map<Key, NinePatch> CACHE = new LinkedHashMap<Key, NinePatch>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, NinePatch> eldest) {
+            return size() > MAX_CACHED_SHADOWS;
+        }
+    };
+
+    private ShadowRenderer() {
+    }
+
+    /**
+     * Paints a shadow into the given bounds from the cache
+     */
+    public static void paint(Graphics g, Style style, int x, int y, int width, int height,
+                             int shadowSize, float opacity, int cornerRadius) {
+        paint(g, style, x, y, width, height, shadowSize, opacity, cornerRadius, true);
+    }
+
+    /**
+     * Paints a shadow into the given bounds from the cache
+     * @param paintCenter false if something opaque is painted over the middle
+     *                    anyway, such as the card a FILLED shadow sits under
+     */
+    public static void paint(Graphics g, Style style, int x, int y, int width, int height,
+                             int shadowSize, float opacity, int cornerRadius, boolean paintCenter) {
+        int corner = shadowSize + cornerRadius + 1;
+        if (width < 2 * corner + CENTER_SIZE || height < 2 * corner + CENTER_SIZE) {
+            // Too small for the corners to fit; not worth caching
+            paintDirect(g, style, x, y, width, height, shadowSize, opacity, cornerRadius);
+            return;
+        }
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        AffineTransform transform = g2.getTransform();
+        double scale = Math.max(1.0, Math.round(Math.max(transform.getScaleX(), transform.getScaleY()) * 4) / 4.0);
+        NinePatch patch;
+        synchronized (CACHE) {
+            patch = CACHE.computeIfAbsent(new Key(style, shadowSize, opacity, cornerRadius, scale),
+                    key -> new NinePatch(key, corner));
+        }
+
+        // Stretching must not blend the edge strips with the corners next to them
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        patch.paint(g2, x, y, width, height, paintCenter);
+        g2.dispose();
+    }
+
+    /**
+     * Paints a shadow layer by layer, without the cache
+     */
+    public static void paintDirect(Graphics g, Style style, int x, int y, int width, int height,
+                                   int shadowSize, float opacity, int cornerRadius) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (style == Style.OUTLINE) {
+            g2.setStroke(new BasicStroke(1));
+            for (int i = 0; i < shadowSize; i++) {
+                float alpha = opacity * (shadowSize - i) / shadowSize;
+                g2.setColor(new Color(0, 0, 0, (int) (255 * alpha)));
+                g2.draw(new RoundRectangle2D.Float(x + i, y + i, width - i * 2, height - i * 2,
+                        cornerRadius, cornerRadius));
+            }
+        } else {
+            for (int i = 0; i < shadowSize; i++) {
+                float alpha = opacity * (1 - (float) i / shadowSize);
+                int inset = shadowSize - i;
+                g2.setColor(new Color(0, 0, 0, (int) (255 * alpha)));
+                g2.fill(new RoundRectangle2D.Float(x + inset, y + inset, width - 2 * inset, height - 2 * inset,
+                        cornerRadius, cornerRadius));
+            }
+        }
+        g2.dispose();
+    }
+
+    /**
+     * Identifies one rasterized shadow
+     */
+    private static final class Key {
+        final Style style;
+        final int shadowSize;
+        final float opacity;
+        final int cornerRadius;
+        final double scale;
+
+        Key(Style style, int shadowSize, float opacity, int cornerRadius, double scale) {
+            this.style = style;
+            this.shadowSize = shadowSize;
+            this.opacity = opacity;
+            this.cornerRadius = cornerRadius;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return style == other.style && shadowSize == other.shadowSize
+                    && Float.compare(opacity, other.opacity) == 0
+                    && cornerRadius == other.cornerRadius && Double.compare(scale, other.scale) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = style.hashCode();
+            result = 31 * result + shadowSize;
+            result = 31 * result + Float.floatToIntBits(opacity);
+            result = 31 * result + cornerRadius;
+            result = 31 * result + Double.hashCode(scale);
+            return result;
+        }
+    }
+
+    /**
+     * A shadow rasterized at its smallest size, in device pixels
+     */
+    private static final class NinePatch {
+        final BufferedImage image;
+        final int corner;       // Corner size in user space
+        final int deviceCorner; // Corner size in image pixels
+        final boolean transparentCenter;
+
+        NinePatch(Key key, int corner) {
+            this.corner = corner;
+            this.deviceCorner = (int) Math.ceil(corner * key.scale);
+            int logicalSize = 2 * corner + CENTER_SIZE;
+            int deviceSize = (int) Math.ceil(logicalSize * key.scale);
+
+            image = new BufferedImage(deviceSize, deviceSize, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2 = image.createGraphics();
+            g2.scale(key.scale, key.scale);
+            paintDirect(g2, key.style, 0, 0, logicalSize, logicalSize, key.shadowSize, key.opacity, key.cornerRadius);
+            g2.dispose();
+
+            transparentCenter = (image.getRGB(deviceSize / 2, deviceSize / 2) >>> 24) == 0;
+        }
+
+        void paint(Graphics2D g2, int x, int y, int width, int height, boolean paintCenter) {
+            int size = image.getWidth();
+            int[] dx = {x, x + corner, x + width - corner, x + width};
+            int[] dy = {y, y + corner, y + height - corner, y + height};
+            int[] sx = {0, deviceCorner, size - deviceCorner, size};
+
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 3; column++) {
+                    if (row == 1 && column == 1 && (transparentCenter || !paintCenter)) {
+                        continue;
+                    }
+                    g2.drawImage(image, dx[column], dy[row], dx[column + 1], dy[row + 1],
+                            sx[column], sx[row], sx[column + 1], sx[row + 1], null);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.zapio;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each phase of startup takes.
+ *
+ * {@link #start()} is called first thing in main, and {@link #mark(String)}
+ * at the end of each phase. With -Dzapio.startup.report=true the phases are
+ * printed once the first frame has been painted, with the time from JVM
+ * launch to main first; background work reports its own duration with
+ * {@link #reportBackground(String, long)}.
+ */
+public final class StartupTimer {
+    private static final boolean REPORT = Boolean.getBoolean("zapio.startup.report");
+
+    private static final List<String> phaseNames = new ArrayList<>();
+    private static final List<Long> phaseNanos = new ArrayList<>();
+    private static long mainNanos = -1;
+    private static long lastNanos;
+    private static long launchMillis = -1;
+    private static boolean reported;
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Starts timing; call first thing in main
+     */
+    public static synchronized void start() {
+        mainNanos = System.nanoTime();
+        lastNanos = mainNanos;
+        if (REPORT) {
+            // The process start time only has clock-tick resolution, which is plenty here
+            Instant started = ProcessHandle.current().info().startInstant().orElse(null);
+            if (started != null) {
+                launchMillis = Math.max(0, Duration.between(started, Instant.now()).toMillis());
+            }
+        }
+    }
+
+    /**
+     * Ends the current phase
+     * @param phase What happened since the previous mark
+     */
+    public static synchronized void mark(String phase) {
+        if (mainNanos < 0 || reported) {
+            return;
+        }
+        long now = System.nanoTime();
+        phaseNames.add(phase);
+        phaseNanos.add(now - lastNanos);
+        lastNanos = now;
+    }
+
+    /**
+     * Prints the phases recorded so far, once, if reporting is enabled
+     */
+    public static synchronized void report() {
+        if (mainNanos < 0 || reported) {
+            return;
+        }
+        reported = true;
+        if (!REPORT) {
+            return;
+        }
+        System.out.println("Startup phases:");
+        if (launchMillis >= 0) {
+            System.out.printf("  %-28s %6d ms%n", "JVM launch to main", launchMillis);
+        }
+        for (int i = 0; i < phaseNames.size(); i++) {
+            System.out.printf("  %-28s %6d ms%n", phaseNames.get(i), phaseNanos.get(i) / 1_000_000);
+        }
+        long sinceMain = (lastNanos - mainNanos) / 1_000_000;
+        System.out.printf("  %-28s %6d ms%n", "Total", sinceMain + Math.max(0, launchMillis));
+    }
+
+    /**
+     * Prints how long a piece of background startup work took, if reporting is enabled
+     */
+    public static void reportBackground(String task, long nanos) {
+        if (REPORT) {
+            System.out.printf("Startup background task: %s took %d ms%n", task, nanos / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.zapio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything generated for one document: flashcards, quiz questions and a
+ * cheatsheet, any of which may be missing. The unit of export for
+ * {@link StudyPackExporter}.
+ */
+public class StudyPack {
+    private final String title;
+    private final List<Flashcard> flashcards;
+    private final List<QuizQuestion> quizQuestions;
+    private final String cheatsheet;
+
+    /**
+     * @param title Name of the pack, such as the document it was generated from
+     * @param flashcards The flashcards, or null if there are none
+     * @param quizQuestions The quiz questions, or null if there are none
+     * @param cheatsheet The cheatsheet text, or null if there is none
+     */
+    public StudyPack(String title, List<Flashcard> flashcards, List<QuizQuestion> quizQuestions, String cheatsheet) {
+        this.title = title;
+        this.flashcards = flashcards != null ? new ArrayList<>(flashcards) : new ArrayList<>();
+        this.quizQuestions = quizQuestions != null ? new ArrayList<>(quizQuestions) : new ArrayList<>();
+        this.cheatsheet = cheatsheet;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<Flashcard> getFlashcards() {
+        return Collections.unmodifiableList(flashcards);
+    }
+
+    public List<QuizQuestion> getQuizQuestions() {
+        return Collections.unmodifiableList(quizQuestions);
+    }
+
+    /**
+     * Returns the cheatsheet text, or null if there is none
+     */
+    public String getCheatsheet() {
+        return cheatsheet;
+    }
+}
@@ -0,0 +1,86 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Utility class to export a study pack from a screen
+ */
+public class StudyPackExportDialog {
+
+    private StudyPackExportDialog() {
+    }
+
+    /**
+     * Asks for a file name and formats, then exports the pack in the background.
+     * The button is disabled while the export runs.
+     *
+     * @param button The button that started the export
+     * @param pack The pack to export
+     * @param description What is exported, such as "Flashcards", for the dialogs
+     * @param defaultName File name offered in the chooser
+     */
+    public static void export(JButton button, StudyPack pack, String description, String defaultName) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export " + description);
+        fileChooser.setSelectedFile(new File(defaultName));
+
+        // Format choices next to the file list
+        JPanel formatPanel = new JPanel();
+        formatPanel.setLayout(new BoxLayout(formatPanel, BoxLayout.Y_AXIS));
+        formatPanel.setBorder(new EmptyBorder(0, 12, 0, 0));
+        formatPanel.add(new JLabel("Formats"));
+        Map<StudyPackExporter.Format, JCheckBox> formatBoxes = new EnumMap<>(StudyPackExporter.Format.class);
+        for (StudyPackExporter.Format format : StudyPackExporter.Format.values()) {
+            JCheckBox box = new JCheckBox(format.toString(), format != StudyPackExporter.Format.TSV);
+            formatBoxes.put(format, box);
+            formatPanel.add(box);
+        }
+        fileChooser.setAccessory(formatPanel);
+
+        if (fileChooser.showSaveDialog(SwingUtilities.getWindowAncestor(button)) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Set<StudyPackExporter.Format> formats = EnumSet.noneOf(StudyPackExporter.Format.class);
+        formatBoxes.forEach((format, box) -> {
+            if (box.isSelected()) {
+                formats.add(format);
+            }
+        });
+        if (formats.isEmpty()) {
+            return;
+        }
+
+        // The chosen name is used for every format, without any extension typed in
+        File selected = fileChooser.getSelectedFile();
+        String baseName = selected.getName().replaceFirst("\\.(csv|tsv|json|md|pdf)$", "");
+
+        String label = button.getText();
+        button.setEnabled(false);
+        button.setText("Exporting...");
+        StudyPackExporter.exportAsync(Collections.singletonList(pack), selected.getAbsoluteFile().getParentFile(), baseName, formats)
+            .whenComplete((files, error) -> SwingUtilities.invokeLater(() -> {
+                button.setText(label);
+                button.setEnabled(true);
+                Window window = SwingUtilities.getWindowAncestor(button);
+                if (error == null) {
+                    StringBuilder message = new StringBuilder(description + " exported to:");
+                    for (File file : files.values()) {
+                        message.append("\n").append(file.getAbsolutePath());
+                    }
+                    JOptionPane.showMessageDialog(window, message.toString(), "Export Successful", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(window, cause.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }));
+    }
+}
@@ -0,0 +1,337 @@
+package com.zapio;
+
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exports study packs to files: CSV and TSV that Anki can import, JSON,
+ * Markdown and PDF.
+ *
+ * All packs go into one file per format. The formats are written at the
+ * same time on a small pool of threads, and each one goes through the packs
+ * in order, writing every pack as soon as it gets to it, so memory use
+ * doesn't grow with the size of the library. A file only appears under its
+ * final name once it is complete.
+ */
+public final class StudyPackExporter {
+
+    /**
+     * An export format and the file extension it uses
+     */
+    public enum Format {
+        CSV("csv", "CSV (Anki)"),
+        TSV("tsv", "TSV (Anki)"),
+        JSON("json", "JSON"),
+        MARKDOWN("md", "Markdown"),
+        PDF("pdf", "PDF");
+
+        private final String extension;
+        private final String label;
+
+        Format(String extension, String label) {
+            this.extension = extension;
+            this.label = label;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Writes one format to an open file
+     */
+    private interface FormatWriter {
+        void write(List<StudyPack> packs, Writer out) throws IOException;
+    }
+
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(Format.values().length, Runtime.getRuntime().availableProcessors())), runnable -> {
+        Thread thread = new Thread(runnable, "study-pack-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private StudyPackExporter() {
+    }
+
+    /**
+     * Exports packs to several formats at once
+     * @param packs The packs to export
+     * @param directory Where the files go
+     * @param baseName File name without extension, such as "biology" for biology.csv and biology.pdf
+     * @param formats The formats to write
+     * @return The written files, once all of them are complete
+     */
+    public static CompletableFuture<Map<Format, File>> exportAsync(List<StudyPack> packs, File directory,
+                                                                  String baseName, Set<Format> formats) {
+        Map<Format, CompletableFuture<File>> tasks = new EnumMap<>(Format.class);
+        for (Format format : formats) {
+            File output = new File(directory, baseName + "." + format.getExtension());
+            tasks.put(format, CompletableFuture.supplyAsync(() -> {
+                try {
+                    export(packs, format, output);
+                    return output;
+                } catch (IOException e) {
+                    throw new CompletionException(new IOException("Error exporting " + format + ": " + e.getMessage(), e));
+                }
+            }, WRITERS));
+        }
+        return CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<Format, File> files = new EnumMap<>(Format.class);
+            tasks.forEach((format, task) -> files.put(format, task.join()));
+            return files;
+        });
+    }
+
+    /**
+     * Exports packs to one format on the calling thread
+     */
+    public static void export(List<StudyPack> packs, Format format, File output) throws IOException {
+        switch (format) {
+            case CSV:
+                writeText(packs, output, (p, out) -> writeAnki(p, out, ','));
+                break;
+            case TSV:
+                writeText(packs, output, (p, out) -> writeAnki(p, out, '\t'));
+                break;
+            case JSON:
+                writeText(packs, output, StudyPackExporter::writeJson);
+                break;
+            case MARKDOWN:
+                writeText(packs, output, StudyPackExporter::writeMarkdown);
+                break;
+            default:
+                String title = packs.size() == 1 ? packs.get(0).getTitle() : "Study Packs";
+                PdfExporter.export(title, pdfLines(packs), output);
+                break;
+        }
+    }
+
+    private static void writeText(List<StudyPack> packs, File output, FormatWriter formatWriter) throws IOException {
+        File partial = new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".part");
+        try {
+            try (Writer out = Files.newBufferedWriter(partial.toPath(), StandardCharsets.UTF_8)) {
+                formatWriter.write(packs, out);
+            }
+            try {
+                Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+
+    /**
+     * Writes notes with Front, Back, Deck and Tags columns. The header lines
+     * tell Anki (2.1.55 and later) the separator and which columns hold the
+     * deck and tags; older versions skip them as comments. Fields are HTML.
+     */
+    private static void writeAnki(List<StudyPack> packs, Writer out, char separator) throws IOException {
+        String name = separator == '\t' ? "Tab" : "Comma";
+        out.write("#separator:" + name + "\n");
+        out.write("#html:true\n");
+        out.write("#columns:Front" + separator + "Back" + separator + "Deck" + separator + "Tags\n");
+        out.write("#deck column:3\n");
+        out.write("#tags column:4\n");
+        for (StudyPack pack : packs) {
+            for (Flashcard card : pack.getFlashcards()) {
+                writeAnkiNote(out, separator, html(card.getQuestion()), html(card.getAnswer()), pack.getTitle(), "zapio flashcard");
+            }
+            for (QuizQuestion question : pack.getQuizQuestions()) {
+                StringBuilder front = new StringBuilder(html(question.getQuestion())).append("<br><br>");
+                List<String> options = question.getOptions();
+                for (int i = 0; i < options.size(); i++) {
+                    front.append(optionLetter(i)).append(". ").append(html(options.get(i))).append("<br>");
+                }
+                String back = optionLetter(question.getCorrectOption()) + ". " + html(question.getOptionAt(question.getCorrectOption()));
+                writeAnkiNote(out, separator, front.toString(), back, pack.getTitle(), "zapio quiz");
+            }
+        }
+    }
+
+    private static void writeAnkiNote(Writer out, char separator, String front, String back, String deck, String tags)
+            throws IOException {
+        String[] fields = {front, back, deck, tags};
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(separator);
+            }
+            if (separator == ',') {
+                // Quote every field, doubling quotes inside it
+                out.write('"');
+                out.write(fields[i].replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(fields[i].replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+            }
+        }
+        out.write('\n');
+    }
+
+    private static String html(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\r\n", "\n").replace("\n", "<br>");
+    }
+
+    private static char optionLetter(int index) {
+        return (char) ('A' + index);
+    }
+
+    private static void writeJson(List<StudyPack> packs, Writer out) throws IOException {
+        try {
+            JSONWriter json = new JSONWriter(out);
+            json.object().key("packs").array();
+            for (StudyPack pack : packs) {
+                json.object().key("title").value(pack.getTitle());
+
+                json.key("flashcards").array();
+                for (Flashcard card : pack.getFlashcards()) {
+                    json.object().key("question").value(card.getQuestion()).key("answer").value(card.getAnswer()).endObject();
+                }
+                json.endArray();
+
+                json.key("quiz").array();
+                for (QuizQuestion question : pack.getQuizQuestions()) {
+                    json.object().key("question").value(question.getQuestion()).key("options").array();
+                    for (String option : question.getOptions()) {
+                        json.value(option);
+                    }
+                    json.endArray().key("correctOption").value(question.getCorrectOption()).endObject();
+                }
+                json.endArray();
+
+                if (pack.getCheatsheet() != null) {
+                    json.key("cheatsheet").value(pack.getCheatsheet());
+                }
+                json.endObject();
+            }
+            json.endArray().endObject();
+        } catch (JSONException e) {
+            // JSONWriter wraps the writer's IOExceptions
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static void writeMarkdown(List<StudyPack> packs, Writer out) throws IOException {
+        for (StudyPack pack : packs) {
+            out.write("# " + markdown(oneLine(pack.getTitle())) + "\n\n");
+            if (!pack.getFlashcards().isEmpty()) {
+                out.write("## Flashcards\n\n");
+                int number = 1;
+                for (Flashcard card : pack.getFlashcards()) {
+                    out.write("**" + number++ + ". " + markdown(oneLine(card.getQuestion())) + "**\n\n");
+                    out.write(markdown(card.getAnswer().trim()) + "\n\n");
+                }
+            }
+            if (!pack.getQuizQuestions().isEmpty()) {
+                out.write("## Quiz\n\n");
+                int number = 1;
+                for (QuizQuestion question : pack.getQuizQuestions()) {
+                    out.write(number++ + ". " + markdown(oneLine(question.getQuestion())) + "\n");
+                    List<String> options = question.getOptions();
+                    for (int i = 0; i < options.size(); i++) {
+                        out.write("   - [" + (i == question.getCorrectOption() ? "x" : " ") + "] " + markdown(oneLine(options.get(i))) + "\n");
+                    }
+                    out.write("\n");
+                }
+            }
+            if (pack.getCheatsheet() != null) {
+                out.write("## Cheatsheet\n\n");
+                out.write(pack.getCheatsheet().replace("```", "").trim() + "\n\n");
+            }
+        }
+    }
+
+    /**
+     * Escapes text so Markdown shows it as written, the way html() does for
+     * the Anki fields. The cheatsheet is Markdown already and isn't escaped.
+     */
+    private static String markdown(String text) {
+        String[] lines = text.split("\\R", -1);
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            // Indentation would turn a line into a code block
+            String line = lines[i].replaceFirst("^\\s+", "");
+            line = line.replaceAll("([\\\\`*_\\[\\]<>|~])", "\\\\$1");
+            // Characters that only start a heading, list or rule at the beginning of a line
+            line = line.replaceFirst("^([#+=-])", "\\\\$1").replaceFirst("^(\\d+)([.)])", "$1\\\\$2");
+            out.append(line);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the lines of the PDF, producing each pack's lines only when the exporter reaches it
+     */
+    private static Iterator<String> pdfLines(List<StudyPack> packs) {
+        return packs.stream().flatMap(pack -> pdfLines(pack).stream()).iterator();
+    }
+
+    private static List<String> pdfLines(StudyPack pack) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + pack.getTitle());
+        if (!pack.getFlashcards().isEmpty()) {
+            lines.add("## FLASHCARDS");
+            int number = 1;
+            for (Flashcard card : pack.getFlashcards()) {
+                lines.add(number++ + ". " + oneLine(card.getQuestion()));
+                lines.add("    " + oneLine(card.getAnswer()));
+            }
+            lines.add("");
+        }
+        if (!pack.getQuizQuestions().isEmpty()) {
+            lines.add("## QUIZ");
+            int number = 1;
+            for (QuizQuestion question : pack.getQuizQuestions()) {
+                lines.add(number++ + ". " + oneLine(question.getQuestion()));
+                List<String> options = question.getOptions();
+                for (int i = 0; i < options.size(); i++) {
+                    String correct = i == question.getCorrectOption() ? "  (correct)" : "";
+                    lines.add("    " + Character.toLowerCase(optionLetter(i)) + ") " + oneLine(options.get(i)) + correct);
+                }
+            }
+            lines.add("");
+        }
+        if (pack.getCheatsheet() != null) {
+            lines.add("## CHEATSHEET");
+            for (String line : pack.getCheatsheet().replace("`", "").split("\r?\n")) {
+                lines.add(line);
+            }
+            lines.add("");
+        }
+        return lines;
+    }
+
+    private static String oneLine(String text) {
+        return text.trim().replaceAll("\\s*\\R\\s*", " ");
+    }
+}
@@ -0,0 +1,105 @@
+package com.zapio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The record of which documents already have study packs, by the SHA-256 of
+ * their content.
+ *
+ * Each finished document is one appended line: the hash, the source path
+ * and the output paths, separated by tabs. An interrupted run loses at most
+ * the line being written, and a line cut short has no complete hash and is
+ * ignored when the manifest is loaded.
+ */
+public class StudyPackManifest {
+    private static final int HASH_LENGTH = 64;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param file The manifest, created on the first record if missing; null to keep the record in memory only
+     * @throws IOException if the manifest exists but can't be read
+     */
+    public StudyPackManifest(File file) throws IOException {
+        this.file = file;
+        if (file != null && file.isFile()) {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab == HASH_LENGTH) {
+                    hashes.add(line.substring(0, tab));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of a file's content as lowercase hex
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            while (in.read(buffer) >= 0) {
+                // Reading is all the digest needs
+            }
+        }
+        StringBuilder hex = new StringBuilder(HASH_LENGTH);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    public boolean contains(String hash) {
+        return hashes.contains(hash);
+    }
+
+    /**
+     * Returns the number of finished documents
+     */
+    public int size() {
+        return hashes.size();
+    }
+
+    /**
+     * Records a finished document. A failure to write is logged, not thrown:
+     * the outputs exist, and the worst case is generating them again next run.
+     */
+    public void record(String hash, File source, Collection<File> outputs) {
+        hashes.add(hash);
+        if (file == null) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(hash).append('\t').append(source.getPath());
+        for (File output : outputs) {
+            line.append('\t').append(output.getPath());
+        }
+        line.append('\n');
+        synchronized (this) {
+            try {
+                Files.write(file.toPath(), line.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Error updating manifest " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.zapio;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns documents into exported study packs without any UI: hash, extract,
+ * generate, export.
+ *
+ * Each stage has its own fixed pool, so a slow API doesn't hold up text
+ * extraction and the number of concurrent API requests stays capped. At most
+ * a set number of documents are in the pipeline at once; {@link #submit}
+ * blocks until one of them finishes, which keeps extracted text from piling
+ * up in front of the generators.
+ *
+ * Finished documents are recorded in a {@link StudyPackManifest} by the
+ * SHA-256 of their content, and a document whose hash is already there is skipped, so an
+ * interrupted run picks up where it left off and a renamed or copied file
+ * isn't generated twice.
+ */
+public class StudyPackPipeline implements AutoCloseable {
+
+    /**
+     * Stage names, in pipeline order. TOTAL is from submission to the end.
+     */
+    public static final String HASH = "hash";
+    public static final String EXTRACT = "extract";
+    public static final String GENERATE = "generate";
+    public static final String EXPORT = "export";
+    public static final String TOTAL = "total";
+
+    /**
+     * What happened to a submitted document
+     */
+    public enum Status { DONE, SKIPPED, FAILED }
+
+    /**
+     * Produces the content of a study pack from document text
+     */
+    public interface Generators {
+        List<Flashcard> flashcards(String documentText) throws IOException;
+
+        List<QuizQuestion> quiz(String documentText) throws IOException;
+
+        String cheatsheet(String documentText) throws IOException;
+    }
+
+    /**
+     * The outcome of one document
+     */
+    public static class Result {
+        private final File source;
+        private final String hash;
+        private final Status status;
+        private final Map<StudyPackExporter.Format, File> outputs;
+        private final Throwable error;
+        private final Map<String, Long> stageNanos;
+
+        Result(File source, String hash, Status status, Map<StudyPackExporter.Format, File> outputs, Throwable error,
+               Map<String, Long> stageNanos) {
+            this.source = source;
+            this.hash = hash;
+            this.status = status;
+            this.outputs = outputs != null ? outputs : Collections.emptyMap();
+            this.error = error;
+            this.stageNanos = stageNanos != null ? stageNanos : Collections.emptyMap();
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the SHA-256 of the content, or null if the file couldn't be read
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Map<StudyPackExporter.Format, File> getOutputs() {
+            return Collections.unmodifiableMap(outputs);
+        }
+
+        /**
+         * Returns why the document failed, or null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Returns how long each stage took for this document, by stage name.
+         * Stages the document didn't reach are missing.
+         */
+        public Map<String, Long> getStageNanos() {
+            return Collections.unmodifiableMap(stageNanos);
+        }
+    }
+
+    /**
+     * Latencies recorded for one stage. Count, mean and max cover every
+     * sample; percentiles cover the most recent {@value #RECENT_SAMPLES}.
+     */
+    public static class StageStats {
+        private static final int RECENT_SAMPLES = 4096;
+
+        private final String name;
+        private final long[] recent = new long[RECENT_SAMPLES];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        StageStats(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(long nanos) {
+            recent[(int) (count % RECENT_SAMPLES)] = nanos;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / (double) count / 1e6;
+        }
+
+        public synchronized double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * @param percentile Between 0 and 100, such as 95
+         */
+        public synchronized double getPercentileMillis(double percentile) {
+            int size = (int) Math.min(count, RECENT_SAMPLES);
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(recent, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))] / 1e6;
+        }
+    }
+
+    /**
+     * Work that can fail with an IOException, run inside a stage
+     */
+    private interface Step<T> {
+        T run() throws IOException;
+    }
+
+    private final Generators generators;
+    private final Set<StudyPackExporter.Format> formats;
+    private final StudyPackManifest manifest;
+    private final ExecutorService extractPool;
+    private final ExecutorService generatePool;
+    private final Semaphore inFlight;
+    private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+    private final Map<String, StageStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<Status, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong inputBytes = new AtomicLong();
+    private volatile UpstreamScheduler.Tenant tenant = new UpstreamScheduler.Tenant("batch",
+            UpstreamScheduler.Tenant.BATCH_WEIGHT);
+
+    /**
+     * @param generators Where the flashcards, quiz and cheatsheet come from
+     * @param formats The formats to export
+     * @param manifest File recording finished documents, created if missing; null to keep no record
+     * @param extractThreads Documents hashed and extracted at once
+     * @param generateThreads Generation requests running at once, three per document
+     * @param maxInFlight Documents in the pipeline at once
+     * @throws IOException if the manifest exists but can't be read
+     */
+    public StudyPackPipeline(Generators generators, Set<StudyPackExporter.Format> formats, File manifest,
+                             int extractThreads, int generateThreads, int maxInFlight) throws IOException {
+        this.generators = generators;
+        this.formats = EnumSet.copyOf(formats);
+        this.manifest = new StudyPackManifest(manifest);
+        this.extractPool = Executors.newFixedThreadPool(extractThreads, daemonThreads("pipeline-extract"));
+        this.generatePool = Executors.newFixedThreadPool(generateThreads, daemonThreads("pipeline-generate"));
+        this.inFlight = new Semaphore(maxInFlight);
+        for (String stage : new String[] {HASH, EXTRACT, GENERATE, EXPORT, TOTAL}) {
+            stats.put(stage, new StageStats(stage));
+        }
+        for (Status status : Status.values()) {
+            counts.put(status, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Generators that call the API through the existing generator classes
+     * @throws RuntimeException if the API key can't be loaded
+     */
+    public static Generators apiGenerators() {
+        FlashcardGenerator flashcardGenerator = new FlashcardGenerator();
+        QuizGenerator quizGenerator = new QuizGenerator();
+        CheatsheetGenerator cheatsheetGenerator = new CheatsheetGenerator();
+        return new Generators() {
+            @Override
+            public List<Flashcard> flashcards(String documentText) throws IOException {
+                return flashcardGenerator.generateFlashcards(documentText);
+            }
+
+            @Override
+            public List<QuizQuestion> quiz(String documentText) throws IOException {
+                return quizGenerator.generateQuestions(documentText);
+            }
+
+            @Override
+            public String cheatsheet(String documentText) throws IOException {
+                return cheatsheetGenerator.generateCheatsheet(documentText);
+            }
+        };
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Sets who the pipeline's API requests are attributed to in the {@link UpstreamScheduler}
+     */
+    public void setTenant(UpstreamScheduler.Tenant tenant) {
+        this.tenant = tenant;
+    }
+
+    /**
+     * Returns the number of documents recorded in the manifest, including those finished in this run
+     */
+    public int getFinishedCount() {
+        return manifest.size();
+    }
+
+    /**
+     * Queues a document, waiting while the pipeline is full
+     * @param source The document
+     * @param outputDirectory Where its exported files go
+     * @param baseName Exported file name without extension
+     * @return The outcome; never completes exceptionally
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public CompletableFuture<Result> submit(File source, File outputDirectory, String baseName)
+            throws InterruptedException {
+        inFlight.acquire();
+        running.incrementAndGet();
+        long submitted = System.nanoTime();
+        String[] hash = new String[1];
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+
+        CompletableFuture<Result> result = CompletableFuture
+                .supplyAsync(() -> timed(HASH, timings, () -> {
+                    inputBytes.addAndGet(source.length());
+                    return StudyPackManifest.sha256(source);
+                }), extractPool)
+                .thenCompose(contentHash -> {
+                    hash[0] = contentHash;
+                    // Also skips a second copy of a document that is still being processed
+                    if (manifest.contains(contentHash) || !claimed.add(contentHash)) {
+                        return CompletableFuture.completedFuture(
+                                new Result(source, contentHash, Status.SKIPPED, null, null, timings));
+                    }
+                    return process(source, contentHash, outputDirectory, baseName, timings).whenComplete((done, error) -> {
+                        if (error != null) {
+                            // Lets a later submission try again
+                            claimed.remove(contentHash);
+                        }
+                    });
+                })
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    return new Result(source, hash[0], Status.FAILED, null, cause, timings);
+                });
+
+        return result.whenComplete((done, error) -> {
+            record(TOTAL, System.nanoTime() - submitted, timings);
+            counts.get(done.getStatus()).incrementAndGet();
+            running.decrementAndGet();
+            inFlight.release();
+        });
+    }
+
+    private CompletableFuture<Result> process(File source, String hash, File outputDirectory, String baseName,
+                                              Map<String, Long> timings) {
+        return CompletableFuture
+                .supplyAsync(() -> timed(EXTRACT, timings, () -> extract(source)), extractPool)
+                .thenCompose(text -> generate(baseName, text, timings))
+                .thenCompose(pack -> export(pack, outputDirectory, baseName, timings))
+                .thenApply(outputs -> {
+                    manifest.record(hash, source, outputs.values());
+                    return new Result(source, hash, Status.DONE, outputs, null, timings);
+                });
+    }
+
+    private CompletableFuture<StudyPack> generate(String title, String text, Map<String, Long> timings) {
+        long start = System.nanoTime();
+        // Three requests on the capped pool; none of them waits on another
+        CompletableFuture<List<Flashcard>> flashcards = CompletableFuture.supplyAsync(
+                () -> unchecked(() -> UpstreamScheduler.callAs(tenant, () -> generators.flashcards(text))), generatePool);
+        CompletableFuture<List<QuizQuestion>> quiz = CompletableFuture.supplyAsync(
+                () -> unchecked(() -> UpstreamScheduler.callAs(tenant, () -> generators.quiz(text))), generatePool);
+        CompletableFuture<String> cheatsheet = CompletableFuture.supplyAsync(
+                () -> unchecked(() -> UpstreamScheduler.callAs(tenant, () -> generators.cheatsheet(text))), generatePool);
+        return CompletableFuture.allOf(flashcards, quiz, cheatsheet)
+                .thenApply(ignored -> new StudyPack(title, flashcards.join(), quiz.join(), cheatsheet.join()))
+                .whenComplete((pack, error) -> record(GENERATE, System.nanoTime() - start, timings));
+    }
+
+    private CompletableFuture<Map<StudyPackExporter.Format, File>> export(StudyPack pack, File outputDirectory,
+                                                                         String baseName, Map<String, Long> timings) {
+        long start = System.nanoTime();
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            CompletableFuture<Map<StudyPackExporter.Format, File>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Can't create " + outputDirectory));
+            return failed;
+        }
+        return StudyPackExporter.exportAsync(Collections.singletonList(pack), outputDirectory, baseName, formats)
+                .whenComplete((outputs, error) -> record(EXPORT, System.nanoTime() - start, timings));
+    }
+
+    private <T> T timed(String stage, Map<String, Long> timings, Step<T> step) {
+        long start = System.nanoTime();
+        try {
+            return unchecked(step);
+        } finally {
+            record(stage, System.nanoTime() - start, timings);
+        }
+    }
+
+    private void record(String stage, long nanos, Map<String, Long> timings) {
+        stats.get(stage).record(nanos);
+        timings.put(stage, nanos);
+    }
+
+    private static <T> T unchecked(Step<T> step) {
+        try {
+            return step.run();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String extract(File file) throws IOException {
+        DocumentSession session = new DocumentSession(file);
+        try {
+            return session.getText();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Returns the number of documents submitted and not finished yet
+     */
+    public int getInFlight() {
+        return running.get();
+    }
+
+    /**
+     * Returns the number of documents that ended with the given status
+     */
+    public int getCount(Status status) {
+        return counts.get(status).get();
+    }
+
+    /**
+     * Returns the stats of one stage
+     * @param stage One of the stage names, such as {@link #TOTAL}
+     */
+    public StageStats getStageStats(String stage) {
+        return stats.get(stage);
+    }
+
+    /**
+     * Returns the stats of every stage, in pipeline order
+     */
+    public List<StageStats> getStageStats() {
+        return List.copyOf(stats.values());
+    }
+
+    /**
+     * Describes the throughput and per-stage latencies since the pipeline was created
+     */
+    public String report() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        int done = getCount(Status.DONE);
+        int skipped = getCount(Status.SKIPPED);
+        int failed = getCount(Status.FAILED);
+        long bytes = inputBytes.get();
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d documents in %.1f s: %d done, %d skipped, %d failed%n",
+                done + skipped + failed, seconds, done, skipped, failed));
+        report.append(String.format("Throughput: %.2f documents/min generated, %.2f MB/s read%n",
+                done / seconds * 60, bytes / seconds / (1024 * 1024)));
+        report.append(String.format("%-10s %7s %10s %10s %10s %10s%n", "Stage", "Count", "Mean ms", "p50 ms", "p95 ms", "Max ms"));
+        for (StageStats stage : stats.values()) {
+            report.append(String.format("%-10s %7d %10.1f %10.1f %10.1f %10.1f%n", stage.getName(), stage.getCount(),
+                    stage.getMeanMillis(), stage.getPercentileMillis(50), stage.getPercentileMillis(95),
+                    stage.getMaxMillis()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stops the stage pools once the submitted documents have finished
+     */
+    @Override
+    public void close() {
+        extractPool.shutdown();
+        generatePool.shutdown();
+    }
+}
@@ -0,0 +1,124 @@
+package com.zapio;
+
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDFontSetting;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Text stripper that only does the work needed to place text.
+ *
+ * A content stream can't show text without a font, so pages and form
+ * XObjects whose resources have no fonts, whether listed directly or in a
+ * graphics state, and no nested forms are skipped
+ * without parsing their content. This avoids tokenizing the inline image
+ * data of scanned pages that have no text layer. Graphics state dictionaries
+ * only contribute their font, and images are never loaded. The output is the
+ * same as PDFTextStripper's.
+ */
+public class TextOnlyStripper extends PDFTextStripper {
+
+    public TextOnlyStripper() throws IOException {
+        super();
+        addOperator(new DrawTextObject());
+        addOperator(new SetTextGraphicsState());
+    }
+
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        // A blank stand-in keeps page numbering and separators without parsing the content
+        super.processPage(mayContainText(page.getResources()) ? page : new PDPage(page.getMediaBox()));
+    }
+
+    /**
+     * Returns whether content drawn with these resources could show text
+     */
+    private static boolean mayContainText(PDResources resources) {
+        if (resources == null) {
+            return false;
+        }
+        if (resources.getFontNames().iterator().hasNext()) {
+            return true;
+        }
+        for (COSName name : resources.getXObjectNames()) {
+            if (!resources.isImageXObject(name)) {
+                return true;
+            }
+        }
+        // A "gs" operator can select a font too
+        for (COSName name : resources.getExtGStateNames()) {
+            PDExtendedGraphicsState state = resources.getExtGState(name);
+            if (state != null && state.getFontSetting() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * "Do" operator that skips images and forms that can't show text.
+     * A form without resources of its own uses the page's, and a form can
+     * still show text with a font selected before it was drawn.
+     */
+    private static class DrawTextObject extends DrawObject {
+        @Override
+        public void process(Operator operator, List<COSBase> operands) throws IOException {
+            if (!operands.isEmpty() && operands.get(0) instanceof COSName) {
+                COSName name = (COSName) operands.get(0);
+                PDResources resources = context.getResources();
+                if (resources.isImageXObject(name)) {
+                    return;
+                }
+                PDXObject xobject = resources.getXObject(name);
+                if (xobject instanceof PDFormXObject) {
+                    PDResources formResources = ((PDFormXObject) xobject).getResources();
+                    boolean hasCurrentFont = context.getGraphicsState().getTextState().getFont() != null;
+                    if (formResources != null && !hasCurrentFont && !mayContainText(formResources)) {
+                        return;
+                    }
+                }
+            }
+            super.process(operator, operands);
+        }
+    }
+
+    /**
+     * "gs" operator that only applies the font of the graphics state
+     * dictionary; soft masks, transfer functions and the like don't affect text.
+     */
+    private static class SetTextGraphicsState extends OperatorProcessor {
+        @Override
+        public void process(Operator operator, List<COSBase> operands) throws IOException {
+            if (operands.isEmpty() || !(operands.get(0) instanceof COSName)) {
+                return;
+            }
+            PDExtendedGraphicsState extGState = context.getResources().getExtGState((COSName) operands.get(0));
+            if (extGState == null) {
+                return;
+            }
+            PDFontSetting fontSetting = extGState.getFontSetting();
+            if (fontSetting != null) {
+                PDTextState textState = context.getGraphicsState().getTextState();
+                textState.setFont(fontSetting.getFont());
+                textState.setFontSize(fontSetting.getFontSize());
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "gs";
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.io.File;
  * Allows users to upload PDF, DOCX, or TXT files
  */
 public class UploadScreen extends JPanel {
+    private static final int LOGO_SIZE = 180;
+    private static final int UPLOAD_ICON_SIZE = 80;
+    
     private ZapioApp app;
     private JLabel logoLabel;
     private JLabel zapioTitleLabel;
@@ -31,6 +34,19 @@ public class UploadScreen extends JPanel {
         setupUI();
     }
     
+    /**
+     * Starts loading the fonts and icons this screen needs, so they're
+     * ready, or nearly, by the time it's built
+     */
+    public static void preloadResources() {
+        Resources.loadFont(Resources.AppFont.DANCING_SCRIPT);
+        Resources.loadFont(Resources.AppFont.INTER_MEDIUM);
+        Resources.loadFont(Resources.AppFont.INTER_BOLD);
+        Resources.loadFont(Resources.AppFont.INTER_LIGHT);
+        Resources.prepareIcon(Resources.AppImage.LOGO, LOGO_SIZE, LOGO_SIZE);
+        Resources.prepareIcon(Resources.AppImage.UPLOAD_ICON, UPLOAD_ICON_SIZE, UPLOAD_ICON_SIZE);
+    }
+    
     /**
      * Sets up the UI components for the upload screen
      */
@@ -46,29 +62,21 @@ public class UploadScreen extends JPanel {
         topPanel.setBackground(Color.WHITE);
         
         // Add logo
-        ImageIcon logoIcon = new ImageIcon("/Users/hardikparajuli/Desktop/Valis/assets/images/zapio_logo.png");
-        Image scaledLogo = logoIcon.getImage().getScaledInstance(180, 180, Image.SCALE_SMOOTH);
-        logoLabel = new JLabel(new ImageIcon(scaledLogo));
+        logoLabel = new JLabel(Resources.icon(Resources.AppImage.LOGO, LOGO_SIZE, LOGO_SIZE));
         logoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         logoLabel.setBorder(new EmptyBorder(0, 0, 15, 0));
         topPanel.add(logoLabel);
         
         // Add Zapio title
         zapioTitleLabel = new JLabel("Zapio");
-        try {
-            Font dancingScript = Font.createFont(Font.TRUETYPE_FONT, 
-                new File("/Users/hardikparajuli/Desktop/Valis/assets/fonts/Dancing Script OT.otf"));
-            zapioTitleLabel.setFont(dancingScript.deriveFont(Font.PLAIN, 64));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        zapioTitleLabel.setFont(Resources.font(Resources.AppFont.DANCING_SCRIPT, 64));
         zapioTitleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         zapioTitleLabel.setBorder(new EmptyBorder(0, 0, 10, 0));
         topPanel.add(zapioTitleLabel);
         
         // Add subtitle
         subtitleLabel = new JLabel("Flashcards, Quizzes & Index Cards—Powered by AI.");
-        subtitleLabel.setFont(new Font("Inter Medium", Font.PLAIN, 16));
+        subtitleLabel.setFont(Resources.font(Resources.AppFont.INTER_MEDIUM, 16));
         subtitleLabel.setForeground(new Color(71, 71, 71));
         subtitleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         subtitleLabel.setBorder(new EmptyBorder(0, 0, 50, 0));
@@ -88,23 +96,21 @@ public class UploadScreen extends JPanel {
         uploadPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
         
         // Add upload icon
-        ImageIcon uploadIcon = new ImageIcon("/Users/hardikparajuli/Desktop/Valis/assets/images/uploadicon.png");
-        Image scaledUploadIcon = uploadIcon.getImage().getScaledInstance(80, 80, Image.SCALE_SMOOTH);
-        uploadIconLabel = new JLabel(new ImageIcon(scaledUploadIcon));
+        uploadIconLabel = new JLabel(Resources.icon(Resources.AppImage.UPLOAD_ICON, UPLOAD_ICON_SIZE, UPLOAD_ICON_SIZE));
         uploadIconLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         uploadIconLabel.setBorder(new EmptyBorder(20, 0, 15, 0));
         uploadPanel.add(uploadIconLabel);
         
         // Add upload text
         uploadTextLabel = new JLabel("upload a file");
-        uploadTextLabel.setFont(new Font("Inter Bold", Font.PLAIN, 24));
+        uploadTextLabel.setFont(Resources.font(Resources.AppFont.INTER_BOLD, 24));
         uploadTextLabel.setForeground(new Color(51, 51, 51));
         uploadTextLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         uploadPanel.add(uploadTextLabel);
         
         // Add upload subtext
         uploadSubtextLabel = new JLabel("(pdf, docx or txt)");
-        uploadSubtextLabel.setFont(new Font("Inter Light", Font.PLAIN, 16));
+        uploadSubtextLabel.setFont(Resources.font(Resources.AppFont.INTER_LIGHT, 16));
         uploadSubtextLabel.setForeground(new Color(102, 102, 102));
         uploadSubtextLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         uploadSubtextLabel.setBorder(new EmptyBorder(5, 0, 20, 0));
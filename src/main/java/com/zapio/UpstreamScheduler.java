@@ -0,0 +1,474 @@
+package com.zapio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Decides when each request to the API may go out, so that one big job
+ * can't take all of the API's capacity.
+ *
+ * Two global budgets apply: a number of requests in flight, and optionally
+ * tokens per minute, refilled continuously. Requests waiting for them are
+ * ordered by weighted fair queuing: every tenant (a user of the server, a
+ * batch job, the desktop app) has its own virtual clock that advances by
+ * each request's estimated tokens divided by the tenant's weight, and the
+ * request with the earliest virtual finish goes next. A batch that has
+ * queued hundreds of requests has pushed its own clock far ahead, so a
+ * single request from anyone else is served before the rest of the batch,
+ * and a small request before a large one.
+ *
+ * When the API answers 429, {@link #backOff} holds back every request for
+ * the time it asks for, rather than letting each caller retry on its own.
+ *
+ * Callers say who they are with {@link #callAs}; requests made outside it
+ * belong to the desktop app. Each tenant costs a few counters; beyond
+ * {@value #MAX_TENANTS} of them, idle ones are dropped. The budgets come from the system properties
+ * zapio.upstream.concurrency (default 8) and zapio.upstream.tokensPerMinute
+ * (default 0, no limit).
+ */
+public final class UpstreamScheduler {
+
+    /**
+     * Who a request is for, and its share of the API relative to others
+     */
+    public static final class Tenant {
+        public static final int INTERACTIVE_WEIGHT = 4;
+        public static final int BATCH_WEIGHT = 1;
+
+        /**
+         * The desktop app, for requests made outside {@link #callAs}
+         */
+        public static final Tenant APP = new Tenant("app", INTERACTIVE_WEIGHT);
+
+        private final String name;
+        private final int weight;
+
+        public Tenant(String name, int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight must be positive: " + weight);
+            }
+            this.name = name;
+            this.weight = weight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Work done on behalf of a tenant
+     */
+    public interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * The right to send one request, from {@link #acquire} until {@link #release}
+     */
+    public final class Permit {
+        private final TenantState tenant;
+        private final int tokens;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private long enqueued;
+        private int usedTokens = -1;
+        // Guarded by lock: true while the permit counts against the budgets
+        private boolean held;
+
+        private Permit(TenantState tenant, int tokens, double startTag, double finishTag, long sequence) {
+            this.tenant = tenant;
+            this.tokens = tokens;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Reports the tokens the request actually used, so the budget is corrected when it is released
+         */
+        public void setUsedTokens(int usedTokens) {
+            this.usedTokens = usedTokens;
+        }
+
+        /**
+         * Gives back the permit and waits for it again in the same place in line, for a request that has to be repeated.
+         * If interrupted, the permit is no longer held, and {@link #release} does nothing.
+         * @throws InterruptedIOException if interrupted while waiting
+         */
+        public void requeue() throws InterruptedIOException {
+            finish(this, false);
+            await(this);
+        }
+
+        /**
+         * Gives back the permit after the request completes. Does nothing if it isn't held.
+         */
+        public void release() {
+            finish(this, true);
+        }
+    }
+
+    /**
+     * Queue wait times and counts of one tenant
+     */
+    public static final class TenantStats {
+        private final String name;
+        private final int weight;
+        private final int queued;
+        private final long count;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        TenantStats(TenantState state) {
+            this.name = state.name;
+            this.weight = state.weight;
+            this.queued = state.queued;
+            this.count = state.count;
+            this.totalWaitNanos = state.totalWaitNanos;
+            this.maxWaitNanos = state.maxWaitNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Returns the number of requests waiting right now
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * Returns the number of requests that got their turn
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns how long requests waited for their turn on average
+         */
+        public double getWaitMeanMillis() {
+            return count == 0 ? 0 : totalWaitNanos / 1e6 / count;
+        }
+
+        /**
+         * Returns the longest a request waited for its turn
+         */
+        public double getWaitMaxMillis() {
+            return maxWaitNanos / 1e6;
+        }
+    }
+
+    private static class TenantState {
+        final String name;
+        int weight;
+        double lastFinishTag;
+        int queued;
+        int running;
+        long count;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        TenantState(String name) {
+            this.name = name;
+        }
+    }
+
+    static final String CONCURRENCY_PROPERTY = "zapio.upstream.concurrency";
+    static final String TOKENS_PER_MINUTE_PROPERTY = "zapio.upstream.tokensPerMinute";
+    private static final int DEFAULT_CONCURRENCY = 8;
+    // Tenants kept before idle ones are dropped; server users name themselves, so there is no natural bound
+    private static final int MAX_TENANTS = 1024;
+    private static final ThreadLocal<Tenant> CURRENT = new ThreadLocal<>();
+
+    private static UpstreamScheduler instance;
+
+    private final int maxConcurrent;
+    private final double tokensPerMinute;
+    private final Object lock = new Object();
+    private final PriorityQueue<Permit> waiting = new PriorityQueue<>(
+            Comparator.comparingDouble((Permit permit) -> permit.finishTag).thenComparingLong(permit -> permit.sequence));
+    // In order of last use, so the tenants dropped first are the ones idle longest
+    private final Map<String, TenantState> tenants = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Guarded by lock
+    private double virtualTime;
+    private long sequence;
+    private int running;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = System.nanoTime();
+    private long backOffs;
+
+    /**
+     * @param maxConcurrent Requests in flight at once
+     * @param tokensPerMinute Token budget, or 0 for no limit
+     */
+    UpstreamScheduler(int maxConcurrent, int tokensPerMinute) {
+        this.maxConcurrent = maxConcurrent;
+        this.tokensPerMinute = tokensPerMinute;
+        this.tokens = tokensPerMinute;
+    }
+
+    /**
+     * Returns the scheduler shared by all API requests
+     */
+    public static synchronized UpstreamScheduler getInstance() {
+        if (instance == null) {
+            instance = new UpstreamScheduler(getConfiguredConcurrency(), getConfiguredTokensPerMinute());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the request budget set for this process
+     */
+    static int getConfiguredConcurrency() {
+        return Math.max(1, Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY));
+    }
+
+    /**
+     * Returns the token budget set for this process, or 0 for no limit
+     */
+    static int getConfiguredTokensPerMinute() {
+        return Math.max(0, Integer.getInteger(TOKENS_PER_MINUTE_PROPERTY, 0));
+    }
+
+    /**
+     * Runs work with its API requests attributed to a tenant
+     */
+    public static <T> T callAs(Tenant tenant, Call<T> call) throws IOException {
+        Tenant previous = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the tenant requests on this thread are attributed to
+     */
+    public static Tenant currentTenant() {
+        Tenant tenant = CURRENT.get();
+        return tenant != null ? tenant : Tenant.APP;
+    }
+
+    /**
+     * Waits for this thread's tenant's turn and for room in both budgets
+     * @param estimatedTokens Tokens the request is expected to use, prompt and reply
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public Permit acquire(int estimatedTokens) throws InterruptedIOException {
+        Tenant tenant = currentTenant();
+        Permit permit;
+        synchronized (lock) {
+            TenantState state = tenants.get(tenant.getName());
+            if (state == null) {
+                dropIdleTenants();
+                state = new TenantState(tenant.getName());
+                tenants.put(state.name, state);
+            }
+            state.weight = tenant.getWeight();
+            // A request bigger than the whole bucket would never fit; it waits for a full bucket instead
+            int cost = tokensPerMinute > 0 ? (int) Math.min(estimatedTokens, tokensPerMinute) : estimatedTokens;
+            double startTag = Math.max(virtualTime, state.lastFinishTag);
+            double finishTag = startTag + (double) Math.max(1, estimatedTokens) / state.weight;
+            state.lastFinishTag = finishTag;
+            permit = new Permit(state, cost, startTag, finishTag, sequence++);
+        }
+        await(permit);
+        return permit;
+    }
+
+    /**
+     * Holds back every request for a while, such as after a 429
+     */
+    public void backOff(long millis) {
+        synchronized (lock) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + millis * 1_000_000L);
+            backOffs++;
+            lock.notifyAll();
+        }
+    }
+
+    private void await(Permit permit) throws InterruptedIOException {
+        synchronized (lock) {
+            permit.enqueued = System.nanoTime();
+            waiting.add(permit);
+            permit.tenant.queued++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (waiting.peek() == permit && running < maxConcurrent) {
+                        long delay = Math.max(pausedUntil - now, tokenDelay(permit.tokens, now));
+                        if (delay <= 0) {
+                            waiting.poll();
+                            permit.tenant.queued--;
+                            permit.held = true;
+                            running++;
+                            permit.tenant.running++;
+                            tokens -= permit.tokens;
+                            virtualTime = Math.max(virtualTime, permit.startTag);
+                            long waited = now - permit.enqueued;
+                            permit.tenant.count++;
+                            permit.tenant.totalWaitNanos += waited;
+                            permit.tenant.maxWaitNanos = Math.max(permit.tenant.maxWaitNanos, waited);
+                            // The next in line may fit as well
+                            lock.notifyAll();
+                            return;
+                        }
+                        lock.wait(Math.max(1, delay / 1_000_000L));
+                    } else {
+                        lock.wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(permit);
+                permit.tenant.queued--;
+                lock.notifyAll();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the API");
+            }
+        }
+    }
+
+    /**
+     * Makes room for a new tenant once the limit is reached by dropping tenants
+     * with nothing queued or in flight, least recently used first. A dropped
+     * tenant that comes back starts again at the current virtual time, which
+     * may give its next request an earlier turn than it would have had.
+     */
+    // Must hold lock
+    private void dropIdleTenants() {
+        Iterator<TenantState> states = tenants.values().iterator();
+        while (tenants.size() >= MAX_TENANTS && states.hasNext()) {
+            TenantState state = states.next();
+            if (state.queued == 0 && state.running == 0) {
+                states.remove();
+            }
+        }
+    }
+
+    // Must hold lock
+    private long tokenDelay(int cost, long now) {
+        if (tokensPerMinute <= 0) {
+            return 0;
+        }
+        double perNano = tokensPerMinute / 60e9;
+        tokens = Math.min(tokensPerMinute, tokens + (now - lastRefill) * perNano);
+        lastRefill = now;
+        return tokens >= cost ? 0 : (long) Math.ceil((cost - tokens) / perNano);
+    }
+
+    private void finish(Permit permit, boolean done) {
+        synchronized (lock) {
+            if (!permit.held) {
+                return;
+            }
+            permit.held = false;
+            running--;
+            permit.tenant.running--;
+            if (tokensPerMinute > 0) {
+                // Charge what the request actually used; a repeated request is charged when it runs again
+                int charged = done && permit.usedTokens >= 0 ? permit.usedTokens : done ? permit.tokens : 0;
+                tokens = Math.min(tokensPerMinute, tokens + permit.tokens - charged);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of requests in flight
+     */
+    public int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for their turn
+     */
+    public int getQueued() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    /**
+     * Returns the tokens that could be spent right now, or -1 without a token budget
+     */
+    public int getAvailableTokens() {
+        synchronized (lock) {
+            if (tokensPerMinute <= 0) {
+                return -1;
+            }
+            tokenDelay(0, System.nanoTime());
+            return (int) tokens;
+        }
+    }
+
+    /**
+     * Returns how many times requests were held back after a 429
+     */
+    public long getBackOffs() {
+        synchronized (lock) {
+            return backOffs;
+        }
+    }
+
+    /**
+     * Returns the stats of the tenants seen so far, apart from idle ones dropped to make room
+     */
+    public List<TenantStats> getTenants() {
+        synchronized (lock) {
+            List<TenantStats> stats = new ArrayList<>();
+            for (TenantState state : tenants.values()) {
+                stats.add(new TenantStats(state));
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Describes the budgets and each tenant's queue wait times
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        int available = getAvailableTokens();
+        report.append(String.format("API requests: %d in flight (limit %d), %d waiting, %s tokens available, %d back-offs%n",
+                getRunning(), maxConcurrent, getQueued(), available < 0 ? "unlimited" : String.valueOf(available),
+                getBackOffs()));
+        report.append(String.format("%-24s %6s %7s %10s %10s%n", "Tenant", "Weight", "Count", "Wait ms", "Max ms"));
+        for (TenantStats tenant : getTenants()) {
+            report.append(String.format("%-24s %6d %7d %10.1f %10.1f%n", tenant.getName(), tenant.getWeight(),
+                    tenant.getCount(), tenant.getWaitMeanMillis(), tenant.getWaitMaxMillis()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package com.zapio;
+
+import org.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Messages between a {@link BatchCoordinator} and its {@link BatchWorker}s.
+ *
+ * A message is a JSON header, with a "type", followed by a binary payload
+ * that may be empty: a document being sent to a worker, or the exported
+ * files coming back. Each part is preceded by its length.
+ *
+ * Worker to coordinator: hello (token, name, slots), take (ready for one
+ * more job), heartbeat, result (job, status, outputs, stage timings).
+ * Coordinator to worker: welcome (formats, tenant) or refused (error), job
+ * (id, name, base name), finish.
+ *
+ * Only jobs and results carry a payload, of at most
+ * {@value #MAX_DOCUMENT_BYTES} and {@value #MAX_PACK_BYTES} bytes. A message
+ * of a type the receiver doesn't expect, or with a longer payload, ends the
+ * connection before anything is allocated for the payload.
+ */
+final class WorkerProtocol {
+    static final String HELLO = "hello";
+    static final String WELCOME = "welcome";
+    static final String REFUSED = "refused";
+    static final String TAKE = "take";
+    static final String HEARTBEAT = "heartbeat";
+    static final String JOB = "job";
+    static final String RESULT = "result";
+    static final String FINISH = "finish";
+
+    static final long HEARTBEAT_MILLIS = 2000;
+
+    // Largest document a job can carry, and largest set of exported files a result can
+    static final int MAX_DOCUMENT_BYTES = 512 * 1024 * 1024;
+    static final int MAX_PACK_BYTES = 64 * 1024 * 1024;
+
+    private static final int MAX_HEADER_BYTES = 1024 * 1024;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    /**
+     * A received message
+     */
+    static final class Message {
+        final JSONObject header;
+        final byte[] payload;
+
+        Message(JSONObject header, byte[] payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+
+        String type() {
+            return header.optString("type");
+        }
+    }
+
+    private WorkerProtocol() {
+    }
+
+    static void send(DataOutputStream out, JSONObject header) throws IOException {
+        send(out, header, NO_PAYLOAD);
+    }
+
+    /**
+     * Writes a message. Safe to call from several threads; messages don't interleave.
+     */
+    static void send(DataOutputStream out, JSONObject header, byte[] payload) throws IOException {
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.writeInt(headerBytes.length);
+            out.write(headerBytes);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes a message whose payload is copied from a stream, such as a
+     * document's file, without holding all of it in memory
+     * @param length The number of bytes the stream holds
+     * @throws IOException if the stream holds a different number of bytes;
+     *         the connection can't be used after that
+     */
+    static void send(DataOutputStream out, JSONObject header, InputStream payload, int length) throws IOException {
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.writeInt(headerBytes.length);
+            out.write(headerBytes);
+            out.writeInt(length);
+            long copied = payload.transferTo(out);
+            if (copied != length) {
+                throw new IOException("Payload was " + copied + " bytes instead of " + length);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the next message
+     * @param types The message types expected at this point
+     * @throws java.io.EOFException if the other side closed the connection
+     * @throws IOException if the message is malformed or of another type
+     */
+    static Message receive(DataInputStream in, String... types) throws IOException {
+        int headerLength = in.readInt();
+        if (headerLength < 0 || headerLength > MAX_HEADER_BYTES) {
+            throw new IOException("Bad message header length " + headerLength);
+        }
+        byte[] headerBytes = new byte[headerLength];
+        in.readFully(headerBytes);
+        JSONObject header = new JSONObject(new String(headerBytes, StandardCharsets.UTF_8));
+        String type = header.optString("type");
+        if (!Arrays.asList(types).contains(type)) {
+            throw new IOException("Unexpected message " + type);
+        }
+        int payloadLength = in.readInt();
+        if (payloadLength < 0 || payloadLength > maxPayloadBytes(type)) {
+            throw new IOException("Bad message payload length " + payloadLength + " for " + type);
+        }
+        byte[] payload = payloadLength == 0 ? NO_PAYLOAD : new byte[payloadLength];
+        in.readFully(payload);
+        return new Message(header, payload);
+    }
+
+    private static int maxPayloadBytes(String type) {
+        switch (type) {
+            case JOB:
+                return MAX_DOCUMENT_BYTES;
+            case RESULT:
+                return MAX_PACK_BYTES;
+            default:
+                return 0;
+        }
+    }
+}
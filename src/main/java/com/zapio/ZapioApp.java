@@ -2,7 +2,10 @@ package com.zapio;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
+import java.util.Arrays;
 
 /**
  * Main application class for Zapio - Flashcards, Quizzes & Index Cards powered by AI
@@ -14,7 +17,10 @@ public class ZapioApp {
     
     private JFrame mainFrame;
     private CardLayout cardLayout;
-    private JPanel mainPanel;
+    private JPanel mainPanel; // Holds the upload and selection screens
+    private ScreenNavigator navigator;
+    private SelectionScreen selectionScreen; // Built when the first document is uploaded
+    private boolean firstPaintDone = false;
     
     // Screen identifiers
     public static final String UPLOAD_SCREEN = "UPLOAD_SCREEN";
@@ -28,37 +34,9 @@ public class ZapioApp {
      * Constructor - initializes the application
      */
     public ZapioApp() {
-        initializeFonts();
         setupUI();
     }
     
-    /**
-     * Registers custom fonts with the application
-     */
-    private void initializeFonts() {
-        try {
-            // Register Inter font family
-            String fontPath = "/Users/hardikparajuli/Desktop/Valis/assets/fonts/";
-            GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-            
-            // Register Inter Regular font
-            Font interRegular = Font.createFont(Font.TRUETYPE_FONT, new File(fontPath + "Inter-Regular.otf"));
-            ge.registerFont(interRegular);
-            
-            // Register Inter Bold font
-            Font interBold = Font.createFont(Font.TRUETYPE_FONT, new File(fontPath + "Inter-Bold.otf"));
-            ge.registerFont(interBold);
-            
-            // Register Dancing Script font
-            Font dancingScript = Font.createFont(Font.TRUETYPE_FONT, new File(fontPath + "Dancing Script OT.otf"));
-            ge.registerFont(dancingScript);
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Error loading custom fonts: " + e.getMessage());
-        }
-    }
-    
     /**
      * Sets up the main UI components
      */
@@ -69,20 +47,57 @@ public class ZapioApp {
         mainFrame.setSize(APP_WIDTH, APP_HEIGHT);
         mainFrame.setResizable(false);
         mainFrame.setLocationRelativeTo(null); // Center on screen
+        mainFrame.getRootPane().putClientProperty(ZapioApp.class, this);
+        
+        // Release the open document when the window goes away (also on restart)
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if (selectionScreen != null) {
+                    selectionScreen.closeDocument();
+                }
+            }
+        });
         
         // Create card layout for screen switching
         cardLayout = new CardLayout();
-        mainPanel = new JPanel(cardLayout);
+        mainPanel = new JPanel(cardLayout) {
+            @Override
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (!firstPaintDone) {
+                    firstPaintDone = true;
+                    onFirstPaint();
+                }
+            }
+        };
         
-        // Create and add screens
+        // Only the first screen is built up front; the rest are built when needed
         UploadScreen uploadScreen = new UploadScreen(this);
-        SelectionScreen selectionScreen = new SelectionScreen(this);
-        
         mainPanel.add(uploadScreen, UPLOAD_SCREEN);
-        mainPanel.add(selectionScreen, SELECTION_SCREEN);
         
-        // Add main panel to frame
-        mainFrame.add(mainPanel);
+        // The card panel is shown again after every generated-content screen
+        navigator = new ScreenNavigator((JComponent) mainFrame.getContentPane());
+        navigator.keep(mainPanel);
+        navigator.show(mainPanel);
+    }
+    
+    /**
+     * Ends startup: reports its phases and, now that the window is up,
+     * loads the document libraries in the background before they're needed
+     */
+    private void onFirstPaint() {
+        StartupTimer.mark("First paint");
+        StartupTimer.report();
+        
+        Thread warmUp = new Thread(() -> {
+            long start = System.nanoTime();
+            DocumentSession.warmUp();
+            StartupTimer.reportBackground("PDFBox and POI warm-up", System.nanoTime() - start);
+        }, "library-warmup");
+        warmUp.setDaemon(true);
+        warmUp.setPriority(Thread.MIN_PRIORITY);
+        warmUp.start();
     }
     
     /**
@@ -90,21 +105,55 @@ public class ZapioApp {
      * @param screenName The identifier of the screen to show
      */
     public void showScreen(String screenName) {
+        // Discards the generated-content screen if one is showing
+        navigator.show(mainPanel);
         cardLayout.show(mainPanel, screenName);
     }
     
+    /**
+     * Shows a screen made for the current document, such as the loading,
+     * quiz or flashcard screen. The previous one is discarded.
+     */
+    public void showContent(JComponent screen) {
+        navigator.show(screen);
+    }
+    
+    /**
+     * Returns to the upload screen, ready for a new document, without
+     * leaving the window. Only per-document state is dropped: the open
+     * document and the screen generated from it. The window, the upload
+     * and selection screens, loaded fonts and images and open API
+     * connections are all kept, so this is instant.
+     */
+    public void resetSession() {
+        if (selectionScreen != null) {
+            selectionScreen.closeDocument();
+        }
+        showScreen(UPLOAD_SCREEN);
+    }
+    
+    /**
+     * Returns the app whose window contains a component, or null if there is none
+     */
+    public static ZapioApp forComponent(Component component) {
+        JRootPane rootPane = SwingUtilities.getRootPane(component);
+        if (rootPane == null) {
+            return null;
+        }
+        Object app = rootPane.getClientProperty(ZapioApp.class);
+        return app instanceof ZapioApp ? (ZapioApp) app : null;
+    }
+    
     /**
      * Show the selection screen with the uploaded document
      * @param file The uploaded document file
      */
     public void showSelectionScreen(File file) {
-        Component[] components = mainPanel.getComponents();
-        for (Component component : components) {
-            if (component instanceof SelectionScreen) {
-                ((SelectionScreen) component).loadDocument(file);
-                break;
-            }
+        if (selectionScreen == null) {
+            selectionScreen = new SelectionScreen(this);
+            mainPanel.add(selectionScreen, SELECTION_SCREEN);
         }
+        selectionScreen.loadDocument(file);
         showScreen(SELECTION_SCREEN);
     }
     
@@ -119,17 +168,51 @@ public class ZapioApp {
      * Application entry point
      */
     public static void main(String[] args) {
+        // Generate study packs for a directory without the GUI
+        if (args.length > 0 && args[0].equals("--batch")) {
+            ZapioBatch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Generate study packs for documents dropped into a folder
+        if (args.length > 0 && args[0].equals("--watch")) {
+            ZapioWatch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Process jobs for a batch coordinator
+        if (args.length > 0 && args[0].equals("--worker")) {
+            BatchWorker.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Serve the generators over HTTP
+        if (args.length > 0 && args[0].equals("--serve")) {
+            ZapioServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        StartupTimer.start();
+        
+        // Load fonts and images in the background, the first screen's first
+        UploadScreen.preloadResources();
+        Resources.preload();
+        
         // Use system look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
             e.printStackTrace();
         }
-        
+        StartupTimer.mark("Look and feel");
+
+        // With -Dzapio.edt.monitor=true, record slow events on the EDT to ~/.zapio/edt-diagnostics.txt
+        EdtMonitor.install();
+
         // Launch application on EDT
         SwingUtilities.invokeLater(() -> {
+            StartupTimer.mark("Waiting for the EDT");
             ZapioApp app = new ZapioApp();
+            StartupTimer.mark("Frame and upload screen");
             app.show();
+            StartupTimer.mark("Showing the frame");
         });
     }
 }
@@ -0,0 +1,285 @@
+package com.zapio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates study packs for every PDF, DOCX and TXT file under a directory,
+ * without the GUI.
+ *
+ * Usage: java -jar zapio.jar --batch [options] input-dir [output-dir]
+ *
+ * Options:
+ *   --formats csv,tsv,json,md,pdf   Formats to export (default csv,json,md,pdf)
+ *   --extractors N                  Documents extracted at once (default: number of CPUs)
+ *   --requests N                    API requests at once (default 4)
+ *   --in-flight N                   Documents in the pipeline at once (default 2 x requests)
+ *   --force                         Regenerate documents already in the manifest
+ *   --workers N                     Split the batch across N worker processes (see {@link BatchCoordinator})
+ *   --listen PORT                   Also accept workers from other machines on this port
+ *
+ * Output mirrors the input tree, with one file per format named after the
+ * document. The output directory defaults to zapio-study-packs inside the
+ * input directory, and holds the manifest that lets the next run skip
+ * documents that are already done. Throughput and per-stage latencies are
+ * printed at the end.
+ *
+ * With workers, --requests, --extractors and --in-flight apply to each
+ * worker. The API budget set with zapio.upstream.concurrency and
+ * zapio.upstream.tokensPerMinute is split between the local workers.
+ */
+public class ZapioBatch {
+
+    private static final String MANIFEST_NAME = ".zapio-manifest.tsv";
+    private static final String DEFAULT_OUTPUT_NAME = "zapio-study-packs";
+    static final int DEFAULT_REQUESTS = 4;
+
+    public static void main(String[] args) {
+        Set<StudyPackExporter.Format> formats = EnumSet.of(StudyPackExporter.Format.CSV, StudyPackExporter.Format.JSON,
+                StudyPackExporter.Format.MARKDOWN, StudyPackExporter.Format.PDF);
+        int extractors = Runtime.getRuntime().availableProcessors();
+        int requests = DEFAULT_REQUESTS;
+        int inFlight = -1;
+        boolean force = false;
+        int workers = 0;
+        int listen = 0;
+        List<String> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--formats":
+                        formats = parseFormats(args[++i]);
+                        break;
+                    case "--extractors":
+                        extractors = positive(args[++i]);
+                        break;
+                    case "--requests":
+                        requests = positive(args[++i]);
+                        break;
+                    case "--in-flight":
+                        inFlight = positive(args[++i]);
+                        break;
+                    case "--force":
+                        force = true;
+                        break;
+                    case "--workers":
+                        workers = positive(args[++i]);
+                        break;
+                    case "--listen":
+                        listen = positive(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        paths.add(args[i]);
+                        break;
+                }
+            }
+            if (paths.isEmpty() || paths.size() > 2) {
+                throw new IllegalArgumentException("Expected an input directory and an optional output directory");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("Missing value for " + args[args.length - 1]);
+            return;
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+
+        File input = new File(paths.get(0)).getAbsoluteFile();
+        File output = paths.size() > 1 ? new File(paths.get(1)).getAbsoluteFile() : new File(input, DEFAULT_OUTPUT_NAME);
+        if (!input.isDirectory()) {
+            usage(input + " is not a directory");
+            return;
+        }
+
+        if (workers > 0 || listen > 0) {
+            try {
+                int failed = runDistributed(input, output, formats, workers, listen, extractors, requests,
+                        inFlight > 0 ? inFlight : 2 * requests, force);
+                System.exit(failed > 0 ? 1 : 0);
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Batch failed: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(2);
+            }
+            return;
+        }
+
+        StudyPackPipeline.Generators generators;
+        try {
+            generators = StudyPackPipeline.apiGenerators();
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        try {
+            int failed = run(input, output, generators, formats, extractors, requests,
+                    inFlight > 0 ? inFlight : 2 * requests, force);
+            System.exit(failed > 0 ? 1 : 0);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs every document under the input directory through the pipeline and prints the report
+     * @return The number of documents that failed
+     */
+    static int run(File input, File output, StudyPackPipeline.Generators generators,
+                   Set<StudyPackExporter.Format> formats, int extractors, int requests, int inFlight, boolean force)
+            throws IOException, InterruptedException {
+        List<Path> documents = findDocuments(input.toPath(), output.toPath());
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Can't create " + output);
+        }
+        File manifest = new File(output, MANIFEST_NAME);
+        if (force) {
+            Files.deleteIfExists(manifest.toPath());
+        }
+
+        try (StudyPackPipeline pipeline = new StudyPackPipeline(generators, formats, manifest,
+                extractors, requests, inFlight)) {
+            pipeline.setTenant(new UpstreamScheduler.Tenant("batch:" + input.getName(), UpstreamScheduler.Tenant.BATCH_WEIGHT));
+            System.out.printf("%d documents under %s, %d already in the manifest%n",
+                    documents.size(), input, pipeline.getFinishedCount());
+
+            List<CompletableFuture<StudyPackPipeline.Result>> results = new ArrayList<>();
+            for (Path document : documents) {
+                Path relative = input.toPath().relativize(document);
+                File directory = relative.getParent() != null ? output.toPath().resolve(relative.getParent()).toFile() : output;
+                results.add(pipeline.submit(document.toFile(), directory, baseName(document))
+                        .whenComplete((result, error) -> print(relative, result)));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+
+            System.out.println();
+            System.out.print(pipeline.report());
+            System.out.println();
+            System.out.print(UpstreamScheduler.getInstance().report());
+            return pipeline.getCount(StudyPackPipeline.Status.FAILED);
+        }
+    }
+
+    /**
+     * Runs every document under the input directory through worker processes and prints the report
+     * @param workers Worker processes to start on this machine
+     * @param listen Port for workers on other machines, or 0 for none
+     * @return The number of documents that failed
+     */
+    static int runDistributed(File input, File output, Set<StudyPackExporter.Format> formats, int workers, int listen,
+                              int extractors, int requests, int inFlight, boolean force)
+            throws IOException, InterruptedException {
+        List<Path> documents = findDocuments(input.toPath(), output.toPath());
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Can't create " + output);
+        }
+        File manifest = new File(output, MANIFEST_NAME);
+        if (force) {
+            Files.deleteIfExists(manifest.toPath());
+        }
+
+        try (BatchCoordinator coordinator = new BatchCoordinator(formats, manifest, "batch:" + input.getName(), listen)) {
+            System.out.printf("%d documents under %s, %d already in the manifest%n",
+                    documents.size(), input, coordinator.getFinishedCount());
+            if (listen > 0) {
+                System.out.println("Workers can join with: java -jar zapio.jar --worker " + coordinator.describeAddress()
+                        + " --token " + coordinator.getToken());
+            }
+            coordinator.startLocalWorkers(workers, inFlight, requests, extractors);
+            for (Path document : documents) {
+                Path relative = input.toPath().relativize(document);
+                File directory = relative.getParent() != null ? output.toPath().resolve(relative.getParent()).toFile() : output;
+                coordinator.add(document.toFile(), relative, directory, baseName(document));
+            }
+            coordinator.awaitFinished();
+
+            System.out.println();
+            System.out.print(coordinator.report());
+            return coordinator.getCount(StudyPackPipeline.Status.FAILED);
+        }
+    }
+
+    private static List<Path> findDocuments(Path input, Path output) throws IOException {
+        try (Stream<Path> files = Files.walk(input)) {
+            return files
+                    .filter(path -> !path.startsWith(output))
+                    .filter(Files::isRegularFile)
+                    .filter(path -> DocumentSession.typeOf(path.toFile()) != DocumentSession.Type.UNSUPPORTED)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String baseName(Path document) {
+        String name = document.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    static synchronized void print(Path relative, StudyPackPipeline.Result result) {
+        switch (result.getStatus()) {
+            case DONE:
+                System.out.println("done     " + relative);
+                break;
+            case SKIPPED:
+                System.out.println("skipped  " + relative);
+                break;
+            default:
+                Throwable error = result.getError();
+                System.out.println("FAILED   " + relative + ": " + (error != null ? error.getMessage() : "unknown error"));
+                break;
+        }
+    }
+
+    static Set<StudyPackExporter.Format> parseFormats(String list) {
+        Set<StudyPackExporter.Format> formats = EnumSet.noneOf(StudyPackExporter.Format.class);
+        for (String name : list.split(",")) {
+            StudyPackExporter.Format match = null;
+            for (StudyPackExporter.Format format : StudyPackExporter.Format.values()) {
+                if (format.getExtension().equalsIgnoreCase(name.trim()) || format.name().equalsIgnoreCase(name.trim())) {
+                    match = format;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown format " + name);
+            }
+            formats.add(match);
+        }
+        return formats;
+    }
+
+    static int positive(String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Expected a positive number, got " + value);
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: java -jar zapio.jar --batch [--formats csv,tsv,json,md,pdf] [--extractors N]"
+                + " [--requests N] [--in-flight N] [--force] [--workers N] [--listen PORT] input-dir [output-dir]");
+        System.exit(2);
+    }
+}
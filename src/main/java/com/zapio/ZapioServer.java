@@ -0,0 +1,602 @@
+package com.zapio;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Serves the generators over HTTP, so a lab can share one instance and one
+ * API key.
+ *
+ * Usage: java -jar zapio.jar --serve [options]
+ *
+ * Options:
+ *   --port N            Port to listen on (default 8080)
+ *   --threads N         Requests handled at once (default 16)
+ *   --queue N           Requests waiting for a thread before new ones get 503 (default 64)
+ *   --requests N        API requests at once (default 8)
+ *   --max-documents N   Uploaded documents kept before the least recently used is dropped (default 100)
+ *   --max-upload-mb N   Largest accepted upload (default 50)
+ *
+ * Endpoints:
+ *   POST /documents?name=lecture.pdf     Upload a PDF, DOCX or TXT file as the request body
+ *   GET  /documents/{id}                 Name, page count and text length
+ *   GET  /documents/{id}/flashcards      {"flashcards": [{"question", "answer"}]}
+ *   GET  /documents/{id}/quiz            {"questions": [{"question", "options", "correctOption"}]}
+ *   GET  /documents/{id}/cheatsheet      {"cheatsheet": "..."}
+ *   GET  /status                         Queue, cache and rejection counts, and API wait times per user
+ *
+ * API requests are scheduled fairly between users by {@link UpstreamScheduler}.
+ * A user is the X-Zapio-User header if the client sends one, or else the
+ * client's address.
+ *
+ * A document's id is the SHA-256 of its content, so uploading the same file
+ * twice returns the same document. Each document is a {@link DocumentSession}:
+ * its text is extracted once, at upload, and each generated response is kept
+ * with the session as an artifact. Concurrent requests for a response that
+ * is still being generated wait for the same API call, and later ones are
+ * answered from the cache.
+ *
+ * Both queues are bounded. When every request thread is busy and the request
+ * queue is full, or too many generations are waiting for the API, the server
+ * answers 503 with Retry-After right away instead of queueing more work.
+ */
+public class ZapioServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_QUEUE = 64;
+    private static final int DEFAULT_REQUESTS = 8;
+    private static final int DEFAULT_MAX_DOCUMENTS = 100;
+    private static final int DEFAULT_MAX_UPLOAD_MB = 50;
+    private static final long GENERATION_TIMEOUT_SECONDS = 180;
+    private static final String RETRY_AFTER_SECONDS = "5";
+    private static final String USER_HEADER = "X-Zapio-User";
+
+    // Set while a request runs on the server's dispatcher thread because the executor was full
+    private static final ThreadLocal<Boolean> OVERLOADED = new ThreadLocal<>();
+
+    /**
+     * An uploaded document
+     */
+    private static class Upload {
+        final String id;
+        final String name;
+        final File file;
+        final DocumentSession session;
+        final int pages;
+        final int characters;
+
+        Upload(String id, String name, File file, DocumentSession session, int pages, int characters) {
+            this.id = id;
+            this.name = name;
+            this.file = file;
+            this.session = session;
+            this.pages = pages;
+            this.characters = characters;
+        }
+    }
+
+    /**
+     * A response for the client, or an error to send instead
+     */
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor requestExecutor;
+    private final ThreadPoolExecutor generateExecutor;
+    private final StudyPackPipeline.Generators generators;
+    private final Path uploadDirectory;
+    private final long maxUploadBytes;
+    private final Map<String, Upload> uploads;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    ZapioServer(int port, int threads, int queue, int generateThreads, int maxDocuments, int maxUploadMb,
+                StudyPackPipeline.Generators generators) throws IOException {
+        this.generators = generators;
+        this.maxUploadBytes = maxUploadMb * 1024L * 1024L;
+        this.uploadDirectory = Files.createTempDirectory("zapio-server");
+        this.uploads = new LinkedHashMap<String, Upload>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Upload> eldest) {
+                if (size() > maxDocuments) {
+                    discard(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        // Runs a request that doesn't fit in the queue on the dispatcher thread, marked so it only sends 503
+        requestExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), daemonThreads("server-request"), (task, executor) -> {
+            OVERLOADED.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                OVERLOADED.remove();
+            }
+        });
+        generateExecutor = new ThreadPoolExecutor(generateThreads, generateThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), daemonThreads("server-generate"));
+
+        server = HttpServer.create(new InetSocketAddress(port), queue);
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger number = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = DEFAULT_THREADS;
+        int queue = DEFAULT_QUEUE;
+        int requests = DEFAULT_REQUESTS;
+        int maxDocuments = DEFAULT_MAX_DOCUMENTS;
+        int maxUploadMb = DEFAULT_MAX_UPLOAD_MB;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        port = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--queue":
+                        queue = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--requests":
+                        requests = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--max-documents":
+                        maxDocuments = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--max-upload-mb":
+                        maxUploadMb = ZapioBatch.positive(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage: java -jar zapio.jar --serve [--port N] [--threads N] [--queue N] [--requests N]"
+                    + " [--max-documents N] [--max-upload-mb N]");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            ZapioServer server = new ZapioServer(port, threads, queue, requests, maxDocuments, maxUploadMb,
+                    StudyPackPipeline.apiGenerators());
+            // Stops on Ctrl+C or a kill, and removes the uploaded files
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "server-shutdown"));
+            server.start();
+            System.out.println("Serving on http://localhost:" + server.getPort() + "/");
+        } catch (IOException e) {
+            System.err.println("Server failed to start: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        } catch (RuntimeException e) {
+            // Most likely the API key
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving, closes the documents and deletes the upload directory. Safe to call more than once.
+     */
+    void stop() {
+        if (!stopped.compareAndSet(false, true)) {
+            return;
+        }
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        generateExecutor.shutdownNow();
+        synchronized (uploads) {
+            uploads.values().forEach(this::discard);
+            uploads.clear();
+        }
+        // Partial uploads of requests that were cut off are left behind as well
+        try (Stream<Path> paths = Files.walk(uploadDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Error deleting " + uploadDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (OVERLOADED.get() != null) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                throw new HttpError(503, "Server is busy");
+            }
+            send(exchange, 200, route(exchange));
+        } catch (HttpError e) {
+            send(exchange, e.status, new JSONObject().put("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+            e.printStackTrace();
+            send(exchange, 500, new JSONObject().put("error", "Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JSONObject route(HttpExchange exchange) throws IOException, HttpError {
+        String method = exchange.getRequestMethod();
+        String[] parts = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+
+        if (parts.length == 1 && parts[0].equals("status")) {
+            requireMethod(method, "GET");
+            return status();
+        }
+        if (parts.length == 0 || !parts[0].equals("documents")) {
+            throw new HttpError(404, "Not found");
+        }
+        if (parts.length == 1) {
+            requireMethod(method, "POST");
+            return upload(exchange);
+        }
+
+        requireMethod(method, "GET");
+        Upload upload;
+        synchronized (uploads) {
+            upload = uploads.get(parts[1]);
+        }
+        if (upload == null) {
+            throw new HttpError(404, "Unknown document " + parts[1]);
+        }
+        if (parts.length == 2) {
+            return describe(upload);
+        }
+        if (parts.length == 3) {
+            switch (parts[2]) {
+                case "flashcards":
+                    return generated(exchange, upload, "flashcards", text -> flashcardsJson(generators.flashcards(text)));
+                case "quiz":
+                    return generated(exchange, upload, "quiz", text -> quizJson(generators.quiz(text)));
+                case "cheatsheet":
+                    return generated(exchange, upload, "cheatsheet",
+                            text -> new JSONObject().put("cheatsheet", generators.cheatsheet(text)));
+                default:
+                    break;
+            }
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    private static void requireMethod(String method, String expected) throws HttpError {
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "Use " + expected);
+        }
+    }
+
+    /**
+     * Saves the request body, keyed by its hash, and extracts its text
+     */
+    private JSONObject upload(HttpExchange exchange) throws IOException, HttpError {
+        String name = queryParameter(exchange.getRequestURI(), "name");
+        if (name == null || name.isEmpty()) {
+            throw new HttpError(400, "Missing name parameter");
+        }
+        name = new File(name).getName();
+        DocumentSession.Type type = DocumentSession.typeOf(new File(name));
+        if (type == DocumentSession.Type.UNSUPPORTED) {
+            throw new HttpError(415, "Only PDF, DOCX and TXT files are supported");
+        }
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            long declared;
+            try {
+                declared = Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Bad Content-Length " + length);
+            }
+            if (declared > maxUploadBytes) {
+                throw new HttpError(413, "Upload is larger than " + maxUploadBytes / (1024 * 1024) + " MB");
+            }
+        }
+
+        Path partial = Files.createTempFile(uploadDirectory, "upload", ".part");
+        try {
+            String id = save(exchange.getRequestBody(), partial);
+            synchronized (uploads) {
+                Upload existing = uploads.get(id);
+                if (existing != null) {
+                    return describe(existing);
+                }
+            }
+
+            String extension = name.substring(name.lastIndexOf('.'));
+            File file = uploadDirectory.resolve(id + extension).toFile();
+            Files.move(partial, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            DocumentSession session = new DocumentSession(file);
+            Upload upload;
+            try {
+                upload = new Upload(id, name, file, session, session.getPageCount(), session.getText().length());
+            } catch (IOException e) {
+                session.close();
+                Files.deleteIfExists(file.toPath());
+                throw new HttpError(422, "Can't read " + name + ": " + e.getMessage());
+            }
+            synchronized (uploads) {
+                // Another request may have uploaded the same content meanwhile
+                Upload existing = uploads.putIfAbsent(id, upload);
+                if (existing != null) {
+                    session.close();
+                    return describe(existing);
+                }
+            }
+            return describe(upload);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private String save(InputStream body, Path file) throws IOException, HttpError {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        try (InputStream in = body; OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                size += read;
+                if (size > maxUploadBytes) {
+                    throw new HttpError(413, "Upload is larger than " + maxUploadBytes / (1024 * 1024) + " MB");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private void discard(Upload upload) {
+        upload.session.close();
+        try {
+            Files.deleteIfExists(upload.file.toPath());
+        } catch (IOException e) {
+            System.err.println("Error deleting " + upload.file + ": " + e.getMessage());
+        }
+    }
+
+    private static JSONObject describe(Upload upload) {
+        return new JSONObject()
+                .put("id", upload.id)
+                .put("name", upload.name)
+                .put("pages", upload.pages)
+                .put("characters", upload.characters);
+    }
+
+    /**
+     * Work that turns document text into a response
+     */
+    private interface Generation {
+        JSONObject generate(String documentText) throws IOException;
+    }
+
+    /**
+     * Returns a generated response from the session's cache, generating it
+     * on the first request. A failed generation is dropped from the cache so
+     * the next request tries again.
+     */
+    private JSONObject generated(HttpExchange exchange, Upload upload, String kind, Generation generation)
+            throws HttpError {
+        DocumentSession session = upload.session;
+        UpstreamScheduler.Tenant tenant = tenant(exchange);
+        try {
+            session.acquire();
+        } catch (IllegalStateException e) {
+            // Dropped from the cache since the lookup
+            throw new HttpError(404, "Unknown document " + upload.id);
+        }
+        String key = "response:" + kind;
+        CompletableFuture<JSONObject> response = null;
+        try {
+            boolean[] created = new boolean[1];
+            response = session.getArtifact(key, () -> {
+                created[0] = true;
+                return new CompletableFuture<JSONObject>();
+            });
+            if (created[0]) {
+                generations.incrementAndGet();
+                CompletableFuture<JSONObject> pending = response;
+                try {
+                    generateExecutor.execute(() -> {
+                        try {
+                            pending.complete(UpstreamScheduler.callAs(tenant, () -> generation.generate(session.getText())));
+                        } catch (Exception e) {
+                            pending.completeExceptionally(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    pending.completeExceptionally(e);
+                }
+            } else if (response.isDone()) {
+                cacheHits.incrementAndGet();
+            }
+            return response.get(GENERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            session.removeArtifact(key, response);
+            if (e.getCause() instanceof RejectedExecutionException) {
+                rejected.incrementAndGet();
+                throw new HttpError(503, "Too many generations waiting");
+            }
+            throw new HttpError(502, "Generation failed: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new HttpError(504, "Generation is taking too long");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "Server is shutting down");
+        } finally {
+            session.release();
+        }
+    }
+
+    /**
+     * Returns who a request is for: the X-Zapio-User header, or else the client's address
+     */
+    private static UpstreamScheduler.Tenant tenant(HttpExchange exchange) {
+        String user = exchange.getRequestHeaders().getFirst(USER_HEADER);
+        String name = user != null && !user.trim().isEmpty()
+                ? "user:" + user.trim() : "address:" + exchange.getRemoteAddress().getAddress().getHostAddress();
+        return new UpstreamScheduler.Tenant(name, UpstreamScheduler.Tenant.INTERACTIVE_WEIGHT);
+    }
+
+    private static JSONObject flashcardsJson(List<Flashcard> flashcards) {
+        JSONArray array = new JSONArray();
+        for (Flashcard card : flashcards) {
+            array.put(new JSONObject().put("question", card.getQuestion()).put("answer", card.getAnswer()));
+        }
+        return new JSONObject().put("flashcards", array);
+    }
+
+    private static JSONObject quizJson(List<QuizQuestion> questions) {
+        JSONArray array = new JSONArray();
+        for (QuizQuestion question : questions) {
+            array.put(new JSONObject()
+                    .put("question", question.getQuestion())
+                    .put("options", new JSONArray(question.getOptions()))
+                    .put("correctOption", question.getCorrectOption()));
+        }
+        return new JSONObject().put("questions", array);
+    }
+
+    private JSONObject status() {
+        int documents;
+        synchronized (uploads) {
+            documents = uploads.size();
+        }
+        return new JSONObject()
+                .put("documents", documents)
+                .put("requests", requests.get())
+                .put("rejected", rejected.get())
+                .put("activeRequests", requestExecutor.getActiveCount())
+                .put("queuedRequests", requestExecutor.getQueue().size())
+                .put("activeGenerations", generateExecutor.getActiveCount())
+                .put("queuedGenerations", generateExecutor.getQueue().size())
+                .put("generations", generations.get())
+                .put("cacheHits", cacheHits.get())
+                .put("upstream", upstreamStatus());
+    }
+
+    private static JSONObject upstreamStatus() {
+        UpstreamScheduler scheduler = UpstreamScheduler.getInstance();
+        JSONObject tenants = new JSONObject();
+        for (UpstreamScheduler.TenantStats tenant : scheduler.getTenants()) {
+            tenants.put(tenant.getName(), new JSONObject()
+                    .put("weight", tenant.getWeight())
+                    .put("queued", tenant.getQueued())
+                    .put("requests", tenant.getCount())
+                    .put("waitMeanMillis", tenant.getWaitMeanMillis())
+                    .put("waitMaxMillis", tenant.getWaitMaxMillis()));
+        }
+        return new JSONObject()
+                .put("running", scheduler.getRunning())
+                .put("queued", scheduler.getQueued())
+                .put("availableTokens", scheduler.getAvailableTokens())
+                .put("backOffs", scheduler.getBackOffs())
+                .put("tenants", tenants);
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.zapio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches a folder and generates a study pack for every PDF, DOCX and TXT
+ * file that appears or changes in it, without the GUI.
+ *
+ * Usage: java -jar zapio.jar --watch [options] folder
+ *
+ * Options:
+ *   --formats csv,tsv,json,md,pdf   Formats to export (default csv,json,md,pdf)
+ *   --extractors N                  Documents extracted at once (default: number of CPUs)
+ *   --requests N                    API requests at once (default 4)
+ *   --quiet-seconds N               How long a file must go unchanged before it is read (default 2)
+ *   --stats-seconds N               How often to print the queue and latency line (default 60)
+ *
+ * A file is only read once it has had no write events for the quiet period
+ * and its size and modification time have stopped changing, so a copy in
+ * progress isn't picked up half written. Settled files are queued and go
+ * through {@link StudyPackPipeline}, which skips content it has seen before,
+ * so saving a file without changing it, or dropping in a copy, costs one
+ * hash. The results are written next to each document as
+ * name-study-pack.csv and so on; those files are ignored by the watcher.
+ *
+ * Files already in the folder when the watcher starts are checked against
+ * the manifest (.zapio-manifest.tsv in the folder) and queued if they are
+ * new. The queue depth, the number of documents in progress and the stage
+ * latencies are printed periodically and on exit.
+ */
+public class ZapioWatch {
+
+    private static final String MANIFEST_NAME = ".zapio-manifest.tsv";
+    private static final String OUTPUT_SUFFIX = "-study-pack";
+    private static final int DEFAULT_QUIET_SECONDS = 2;
+    private static final int DEFAULT_STATS_SECONDS = 60;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /**
+     * A file waiting for writes to stop
+     */
+    private static class Settling {
+        final long size;
+        final long modified;
+        final ScheduledFuture<?> check;
+
+        Settling(long size, long modified, ScheduledFuture<?> check) {
+            this.size = size;
+            this.modified = modified;
+            this.check = check;
+        }
+    }
+
+    private final Path folder;
+    private final StudyPackPipeline pipeline;
+    private final long quietMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Map<Path, Settling> settling = new ConcurrentHashMap<>();
+    private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+    private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "watch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ZapioWatch(Path folder, StudyPackPipeline pipeline, long quietMillis) throws IOException {
+        this.folder = folder;
+        this.pipeline = pipeline;
+        this.quietMillis = quietMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    public static void main(String[] args) {
+        Set<StudyPackExporter.Format> formats = EnumSet.of(StudyPackExporter.Format.CSV, StudyPackExporter.Format.JSON,
+                StudyPackExporter.Format.MARKDOWN, StudyPackExporter.Format.PDF);
+        int extractors = Runtime.getRuntime().availableProcessors();
+        int requests = ZapioBatch.DEFAULT_REQUESTS;
+        int quietSeconds = DEFAULT_QUIET_SECONDS;
+        int statsSeconds = DEFAULT_STATS_SECONDS;
+        String folderName = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--formats":
+                        formats = ZapioBatch.parseFormats(args[++i]);
+                        break;
+                    case "--extractors":
+                        extractors = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--requests":
+                        requests = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--quiet-seconds":
+                        quietSeconds = ZapioBatch.positive(args[++i]);
+                        break;
+                    case "--stats-seconds":
+                        statsSeconds = ZapioBatch.positive(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || folderName != null) {
+                            throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        }
+                        folderName = args[i];
+                        break;
+                }
+            }
+            if (folderName == null) {
+                throw new IllegalArgumentException("Expected a folder to watch");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("Missing value for " + args[args.length - 1]);
+            return;
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+
+        File folder = new File(folderName).getAbsoluteFile();
+        if (!folder.isDirectory()) {
+            usage(folder + " is not a directory");
+            return;
+        }
+
+        try {
+            StudyPackPipeline pipeline = new StudyPackPipeline(StudyPackPipeline.apiGenerators(), formats,
+                    new File(folder, MANIFEST_NAME), extractors, requests, 2 * requests);
+            pipeline.setTenant(new UpstreamScheduler.Tenant("watch:" + folder.getName(), UpstreamScheduler.Tenant.BATCH_WEIGHT));
+            ZapioWatch watch = new ZapioWatch(folder.toPath(), pipeline, TimeUnit.SECONDS.toMillis(quietSeconds));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print("\n" + watch.report()), "watch-report"));
+            watch.run(TimeUnit.SECONDS.toMillis(statsSeconds));
+        } catch (IOException e) {
+            System.err.println("Watch failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        } catch (RuntimeException e) {
+            // Most likely the API key
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Registers the folder, queues the documents already in it and handles events until the watch service closes
+     * @param statsMillis How often to print a status line, when anything has happened
+     */
+    void run(long statsMillis) throws IOException {
+        System.out.println("Watching " + folder);
+        registerTree(folder);
+        startDispatcher();
+        timer.scheduleWithFixedDelay(new Runnable() {
+            private String last = "";
+
+            @Override
+            public void run() {
+                String status = status();
+                if (!status.equals(last)) {
+                    log(status);
+                    last = status;
+                }
+            }
+        }, statsMillis, statsMillis, TimeUnit.MILLISECONDS);
+
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost; look at everything again, the manifest skips what is done
+                    registerTree(folder);
+                    continue;
+                }
+                if (directory == null) {
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    Settling pending = settling.remove(path);
+                    if (pending != null) {
+                        pending.check.cancel(false);
+                    }
+                } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        registerTree(path);
+                    }
+                } else {
+                    settle(path);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Watches a directory and its subdirectories and settles the documents in them
+     */
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.forEach(path -> {
+                try {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                        directories.put(key, path);
+                    } else {
+                        settle(path);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error watching " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Restarts the quiet period of a file after a write
+     */
+    private void settle(Path path) {
+        if (!isDocument(path)) {
+            return;
+        }
+        settling.compute(path, (p, pending) -> {
+            if (pending != null) {
+                pending.check.cancel(false);
+            }
+            long[] state = fileState(p);
+            if (state == null) {
+                return null;
+            }
+            return new Settling(state[0], state[1], timer.schedule(() -> check(p), quietMillis, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    /**
+     * Queues a file once it has stopped changing; writers that don't cause
+     * events, such as some network shares, get another quiet period
+     */
+    private void check(Path path) {
+        Settling pending = settling.get(path);
+        if (pending == null) {
+            return;
+        }
+        long[] state = fileState(path);
+        if (state == null) {
+            settling.remove(path, pending);
+        } else if (state[0] != pending.size || state[1] != pending.modified) {
+            settle(path);
+        } else if (settling.remove(path, pending) && queued.add(path)) {
+            queue.add(path);
+        }
+    }
+
+    private static long[] fileState(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new long[] {attributes.size(), attributes.lastModifiedTime().toMillis()};
+        } catch (IOException e) {
+            // Deleted or moved away
+            return null;
+        }
+    }
+
+    private static boolean isDocument(Path path) {
+        File file = path.toFile();
+        if (DocumentSession.typeOf(file) == DocumentSession.Type.UNSUPPORTED) {
+            return false;
+        }
+        String name = file.getName();
+        return !name.substring(0, name.lastIndexOf('.')).endsWith(OUTPUT_SUFFIX);
+    }
+
+    /**
+     * Starts the thread that feeds queued files to the pipeline, waiting while it is full
+     */
+    private void startDispatcher() {
+        Thread dispatcher = new Thread(() -> {
+            while (true) {
+                Path path;
+                try {
+                    path = queue.take();
+                    // Queued again if it changes while it is processed
+                    queued.remove(path);
+                    File file = path.toFile();
+                    String name = file.getName();
+                    pipeline.submit(file, file.getParentFile(), name.substring(0, name.lastIndexOf('.')) + OUTPUT_SUFFIX)
+                            .thenAccept(result -> report(path, result));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "watch-dispatch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void report(Path path, StudyPackPipeline.Result result) {
+        Path relative = folder.relativize(path);
+        switch (result.getStatus()) {
+            case DONE:
+                log("done     " + relative);
+                break;
+            case SKIPPED:
+                // Unchanged content; not worth a line
+                break;
+            default:
+                Throwable error = result.getError();
+                log("FAILED   " + relative + ": " + (error != null ? error.getMessage() : "unknown error"));
+                break;
+        }
+    }
+
+    /**
+     * Returns the number of documents waiting to be processed: settling, queued or in the pipeline
+     */
+    public int getQueueDepth() {
+        return settling.size() + queue.size() + pipeline.getInFlight();
+    }
+
+    /**
+     * One line with the queue depth, counts and end-to-end latency
+     */
+    String status() {
+        StudyPackPipeline.StageStats total = pipeline.getStageStats(StudyPackPipeline.TOTAL);
+        return String.format("queue %d (%d settling, %d waiting, %d in progress), %d done, %d failed,"
+                        + " latency p50 %.1f s, p95 %.1f s",
+                getQueueDepth(), settling.size(), queue.size(), pipeline.getInFlight(),
+                pipeline.getCount(StudyPackPipeline.Status.DONE), pipeline.getCount(StudyPackPipeline.Status.FAILED),
+                total.getPercentileMillis(50) / 1000, total.getPercentileMillis(95) / 1000);
+    }
+
+    String report() {
+        return "Queue depth " + getQueueDepth() + "\n" + pipeline.report() + "\n" + UpstreamScheduler.getInstance().report();
+    }
+
+    /**
+     * Stops watching; documents already in the pipeline are abandoned
+     */
+    void close() throws IOException {
+        watchService.close();
+        timer.shutdownNow();
+        pipeline.close();
+    }
+
+    private static synchronized void log(String message) {
+        System.out.println("[" + LocalTime.now().format(TIME) + "] " + message);
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: java -jar zapio.jar --watch [--formats csv,tsv,json,md,pdf] [--extractors N]"
+                + " [--requests N] [--quiet-seconds N] [--stats-seconds N] folder");
+        System.exit(2);
+    }
+}
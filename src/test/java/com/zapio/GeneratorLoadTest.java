@@ -0,0 +1,192 @@
+package com.zapio;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Load test for the generators, end to end through {@link OpenRouterClient},
+ * against {@link MockOpenRouterServer} in the same JVM.
+ *
+ * Usage: java -cp zapio.jar:target/test-classes com.zapio.GeneratorLoadTest [--callers N] [--requests N] [--latency-ms N]
+ *        [--jitter-ms N] [--stream] [--rate-limit-every N] [--retry-after S] [--truncate-every N]
+ *        [--malformed-every N]
+ *
+ * Every caller runs the flashcard, quiz and cheatsheet generators in turn,
+ * as fast as the client lets it, while the mock injects latency and faults.
+ * Reports throughput, latency per generator, and how each call ended: with
+ * the generated content or with an exception, by message, which includes
+ * replies that arrived but didn't parse. Also prints
+ * the mock's counts and the {@link UpstreamScheduler} report, which shows
+ * the back-offs after 429s. The scheduler's own limits apply, so
+ * -Dzapio.upstream.concurrency changes how many requests are in flight.
+ *
+ * Exits with status 1 if a call ended with a RuntimeException, or if more
+ * calls failed than the mock injected faults: without faults, every call
+ * has to succeed.
+ */
+public class GeneratorLoadTest {
+
+    private static final int DEFAULT_CALLERS = 16;
+    private static final int DEFAULT_REQUESTS = 15;
+    private static final int DEFAULT_LATENCY_MS = 500;
+    private static final int DEFAULT_JITTER_MS = 200;
+    private static final String[] GENERATORS = {"flashcards", "quiz", "cheatsheet"};
+    private static final String OK = "ok";
+    private static final int IO_FAILURE = 0;
+    private static final int RUNTIME_FAILURE = 1;
+
+    public static void main(String[] args) throws Exception {
+        int callers = DEFAULT_CALLERS;
+        int requestsPerCaller = DEFAULT_REQUESTS;
+        int latencyMs = DEFAULT_LATENCY_MS;
+        int jitterMs = DEFAULT_JITTER_MS;
+        boolean stream = false;
+        int rateLimitEvery = 0;
+        int retryAfter = 1;
+        int truncateEvery = 0;
+        int malformedEvery = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--callers":
+                    callers = ZapioBatch.positive(args[++i]);
+                    break;
+                case "--requests":
+                    requestsPerCaller = ZapioBatch.positive(args[++i]);
+                    break;
+                case "--latency-ms":
+                    latencyMs = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                case "--jitter-ms":
+                    jitterMs = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                case "--stream":
+                    stream = true;
+                    break;
+                case "--rate-limit-every":
+                    rateLimitEvery = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                case "--retry-after":
+                    retryAfter = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                case "--truncate-every":
+                    truncateEvery = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                case "--malformed-every":
+                    malformedEvery = MockOpenRouterServer.nonNegative(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        MockOpenRouterServer mock = new MockOpenRouterServer(0);
+        mock.setLatency(latencyMs, jitterMs);
+        mock.setStreaming(stream);
+        mock.setRateLimitEvery(rateLimitEvery, retryAfter);
+        mock.setTruncateEvery(truncateEvery);
+        mock.setMalformedEvery(malformedEvery);
+        mock.start();
+        OpenRouterClient.useEndpoint(mock.getUrl(), "load-test");
+
+        FlashcardGenerator flashcardGenerator = new FlashcardGenerator();
+        QuizGenerator quizGenerator = new QuizGenerator();
+        CheatsheetGenerator cheatsheetGenerator = new CheatsheetGenerator();
+        String text = "Lecture\n\n" + String.join("\n", Collections.nCopies(200,
+                "Photosynthesis converts light energy into chemical energy stored in glucose."));
+
+        System.out.printf("%d callers x %d calls, latency %d ms + up to %d ms%s; every Nth request: 429 %d,"
+                        + " truncated %d, malformed %d (0 = never)%n", callers, requestsPerCaller, latencyMs, jitterMs,
+                stream ? ", streamed" : "", rateLimitEvery, truncateEvery, malformedEvery);
+        Map<String, List<Long>> latencies = new LinkedHashMap<>();
+        Map<String, Integer> outcomes = new TreeMap<>();
+        int[] failures = new int[2];
+        for (String generator : GENERATORS) {
+            latencies.put(generator, new ArrayList<>());
+        }
+        CountDownLatch done = new CountDownLatch(callers);
+        long start = System.nanoTime();
+        for (int c = 0; c < callers; c++) {
+            int first = c;
+            int count = requestsPerCaller;
+            Thread caller = new Thread(() -> {
+                try {
+                    for (int r = 0; r < count; r++) {
+                        String generator = GENERATORS[(first + r) % GENERATORS.length];
+                        long callStart = System.nanoTime();
+                        String outcome;
+                        int failure = -1;
+                        try {
+                            if (generator.equals("flashcards")) {
+                                flashcardGenerator.generateFlashcards(text);
+                            } else if (generator.equals("quiz")) {
+                                quizGenerator.generateQuestions(text);
+                            } else {
+                                cheatsheetGenerator.generateCheatsheet(text);
+                            }
+                            outcome = OK;
+                        } catch (IOException | RuntimeException e) {
+                            // Grouped by kind; details such as byte counts differ from call to call
+                            outcome = e.getClass().getSimpleName() + ": " + String.valueOf(e.getMessage()).split(" \\(|: ")[0];
+                            failure = e instanceof IOException ? IO_FAILURE : RUNTIME_FAILURE;
+                        }
+                        long nanos = System.nanoTime() - callStart;
+                        synchronized (latencies) {
+                            latencies.get(generator).add(nanos);
+                            outcomes.merge(outcome, 1, Integer::sum);
+                            if (failure >= 0) {
+                                failures[failure]++;
+                            }
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-caller-" + c);
+            caller.setDaemon(true);
+            caller.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int total = callers * requestsPerCaller;
+        System.out.printf("%d calls in %.1f s: %.1f calls/s%n", total, seconds, total / seconds);
+        System.out.printf("%-12s %7s %9s %9s %9s %9s%n", "Generator", "Count", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            List<Long> sorted = entry.getValue();
+            if (sorted.isEmpty()) {
+                continue;
+            }
+            Collections.sort(sorted);
+            System.out.printf("%-12s %7d %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), sorted.size(),
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+        }
+        System.out.println("Outcomes:");
+        for (Map.Entry<String, Integer> outcome : outcomes.entrySet()) {
+            System.out.printf("  %5d  %s%n", outcome.getValue(), outcome.getKey());
+        }
+        System.out.print(mock.report());
+        System.out.print(UpstreamScheduler.getInstance().report());
+        mock.stop();
+
+        // Each injected fault can fail at most the call it was sent to
+        long faults = mock.getCount(MockOpenRouterServer.Outcome.RATE_LIMITED)
+                + mock.getCount(MockOpenRouterServer.Outcome.TRUNCATED)
+                + mock.getCount(MockOpenRouterServer.Outcome.MALFORMED);
+        boolean passed = failures[RUNTIME_FAILURE] == 0 && failures[IO_FAILURE] <= faults;
+        System.out.printf("%d failed calls with IOException for %d injected faults, %d with RuntimeException%n",
+                failures[IO_FAILURE], faults, failures[RUNTIME_FAILURE]);
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index))) / 1e6;
+    }
+}
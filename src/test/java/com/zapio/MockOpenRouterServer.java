@@ -0,0 +1,441 @@
+package com.zapio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the OpenRouter chat completions API, for load tests
+ * and for trying failure handling without a network or an API key.
+ *
+ * Usage: java -cp zapio.jar:target/test-classes com.zapio.MockOpenRouterServer [--port N] [--latency-ms N] [--jitter-ms N]
+ *        [--stream] [--chunk-ms N] [--rate-limit-every N] [--retry-after S] [--truncate-every N]
+ *        [--malformed-every N] [--responses dir]
+ *
+ * Every request is answered with canned content picked by the X-Title
+ * header the generators send: flashcards, quiz questions or a cheatsheet.
+ * A directory given with --responses can replace them with its
+ * flashcards.json, quiz.json and cheatsheet.txt. Replies arrive after the
+ * latency plus a random jitter, and are streamed as server-sent events when
+ * the request asks for it or --stream is given.
+ *
+ * Faults are injected by request number, so a run is repeatable: every Nth
+ * request is answered with a 429 and Retry-After, cut off half way through
+ * with the connection closed, or sent as JSON that doesn't parse. Point the
+ * app at it with OPENROUTER_API_URL or -Dzapio.api.url set to
+ * {@link #getUrl()}; any API key is accepted.
+ */
+public class MockOpenRouterServer {
+
+    /**
+     * How a request was answered
+     */
+    public enum Outcome { REPLIED, STREAMED, RATE_LIMITED, TRUNCATED, MALFORMED }
+
+    private static final String PATH = "/api/v1/chat/completions";
+    private static final int STREAM_CHUNK_CHARACTERS = 64;
+    private static final int CHARACTERS_PER_TOKEN = 4;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final Map<Outcome, AtomicLong> counts = new EnumMap<>(Outcome.class);
+
+    private volatile int latencyMillis;
+    private volatile int jitterMillis;
+    private volatile boolean streaming;
+    private volatile int chunkMillis;
+    private volatile int rateLimitEvery;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int truncateEvery;
+    private volatile int malformedEvery;
+    private volatile String flashcards = cannedFlashcards().toString();
+    private volatile String quiz = cannedQuiz().toString();
+    private volatile String cheatsheet = "KEY CONCEPTS\n\n1. Photosynthesis\na. Converts light into chemical energy\n\n"
+            + "2. Cellular Respiration\na. Releases the energy stored in glucose\n";
+
+    /**
+     * @param port Port on the loopback address, or 0 for any free port
+     */
+    public MockOpenRouterServer(int port) throws IOException {
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome, new AtomicLong());
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+        // One thread per request, as the real API would serve them all at once
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-openrouter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) {
+        MockOpenRouterServer mock;
+        try {
+            int port = 0;
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--port")) {
+                    port = ZapioBatch.positive(args[++i]);
+                }
+            }
+            mock = new MockOpenRouterServer(port);
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        i++;
+                        break;
+                    case "--latency-ms":
+                        mock.setLatency(nonNegative(args[++i]), mock.jitterMillis);
+                        break;
+                    case "--jitter-ms":
+                        mock.setLatency(mock.latencyMillis, nonNegative(args[++i]));
+                        break;
+                    case "--stream":
+                        mock.setStreaming(true);
+                        break;
+                    case "--chunk-ms":
+                        mock.setChunkDelay(nonNegative(args[++i]));
+                        break;
+                    case "--rate-limit-every":
+                        mock.setRateLimitEvery(nonNegative(args[++i]), mock.retryAfterSeconds);
+                        break;
+                    case "--retry-after":
+                        mock.setRateLimitEvery(mock.rateLimitEvery, nonNegative(args[++i]));
+                        break;
+                    case "--truncate-every":
+                        mock.setTruncateEvery(nonNegative(args[++i]));
+                        break;
+                    case "--malformed-every":
+                        mock.setMalformedEvery(nonNegative(args[++i]));
+                        break;
+                    case "--responses":
+                        mock.loadResponses(new File(args[++i]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | IOException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage: java -cp zapio.jar:target/test-classes com.zapio.MockOpenRouterServer [--port N] [--latency-ms N]"
+                    + " [--jitter-ms N] [--stream] [--chunk-ms N] [--rate-limit-every N] [--retry-after S]"
+                    + " [--truncate-every N] [--malformed-every N] [--responses dir]");
+            System.exit(2);
+            return;
+        }
+
+        mock.start();
+        System.out.println("Mock OpenRouter listening; run Zapio with OPENROUTER_API_URL=" + mock.getUrl());
+        MockOpenRouterServer started = mock;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.print(started.report());
+            started.stop();
+        }, "mock-openrouter-report"));
+    }
+
+    static int nonNegative(String value) {
+        return value.equals("0") ? 0 : ZapioBatch.positive(value);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the chat completions URL to give the client
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * @param latencyMillis Delay before every reply, or before the first event of a stream
+     * @param jitterMillis Up to this much more, at random
+     */
+    public void setLatency(int latencyMillis, int jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Streams every reply, not only those the request asks to stream
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @param chunkMillis Delay between the events of a stream
+     */
+    public void setChunkDelay(int chunkMillis) {
+        this.chunkMillis = chunkMillis;
+    }
+
+    /**
+     * @param every Answer every Nth request with a 429, or 0 for never
+     * @param retryAfterSeconds The Retry-After sent with it
+     */
+    public void setRateLimitEvery(int every, int retryAfterSeconds) {
+        this.rateLimitEvery = every;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param every Cut off every Nth reply half way and close the connection, or 0 for never
+     */
+    public void setTruncateEvery(int every) {
+        this.truncateEvery = every;
+    }
+
+    /**
+     * @param every Send every Nth reply as JSON that doesn't parse, or 0 for never
+     */
+    public void setMalformedEvery(int every) {
+        this.malformedEvery = every;
+    }
+
+    /**
+     * Replaces the canned replies with the flashcards.json, quiz.json and cheatsheet.txt in a directory, where present
+     */
+    public void loadResponses(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException(directory + " is not a directory");
+        }
+        File file = new File(directory, "flashcards.json");
+        if (file.isFile()) {
+            flashcards = Files.readString(file.toPath());
+        }
+        file = new File(directory, "quiz.json");
+        if (file.isFile()) {
+            quiz = Files.readString(file.toPath());
+        }
+        file = new File(directory, "cheatsheet.txt");
+        if (file.isFile()) {
+            cheatsheet = Files.readString(file.toPath());
+        }
+    }
+
+    /**
+     * Returns the number of requests received
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getCount(Outcome outcome) {
+        return counts.get(outcome).get();
+    }
+
+    /**
+     * Describes how the requests so far were answered
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("Mock OpenRouter: %d requests", getRequestCount()));
+        for (Outcome outcome : Outcome.values()) {
+            report.append(String.format(", %d %s", getCount(outcome), outcome.name().toLowerCase().replace('_', ' ')));
+        }
+        return report.append(String.format("%n")).toString();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST") || !exchange.getRequestURI().getPath().equals(PATH)) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            long number = requests.incrementAndGet();
+
+            // Rate limits come back at once, without the model's latency
+            if (every(rateLimitEvery, number)) {
+                counts.get(Outcome.RATE_LIMITED).incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                sendError(exchange, 429, "Rate limit exceeded");
+                return;
+            }
+            sleep(latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextInt(jitterMillis + 1) : 0));
+
+            String title = String.valueOf(exchange.getRequestHeaders().getFirst("X-Title"));
+            String content = title.contains("Flashcard") ? flashcards : title.contains("Quiz") ? quiz : cheatsheet;
+            int promptTokens = body.length() / CHARACTERS_PER_TOKEN;
+            int replyTokens = content.length() / CHARACTERS_PER_TOKEN;
+            JSONObject usage = new JSONObject()
+                    .put("prompt_tokens", promptTokens)
+                    .put("completion_tokens", replyTokens)
+                    .put("total_tokens", promptTokens + replyTokens);
+            boolean truncate = every(truncateEvery, number);
+
+            if (every(malformedEvery, number)) {
+                counts.get(Outcome.MALFORMED).incrementAndGet();
+                String reply = reply(number, content, usage).toString();
+                // Complete as far as HTTP goes, but the closing brackets are missing
+                send(exchange, "application/json", reply.substring(0, reply.length() - 3), false);
+            } else if (streaming || new JSONObject(body).optBoolean("stream")) {
+                counts.get(truncate ? Outcome.TRUNCATED : Outcome.STREAMED).incrementAndGet();
+                stream(exchange, number, content, usage, truncate);
+            } else {
+                counts.get(truncate ? Outcome.TRUNCATED : Outcome.REPLIED).incrementAndGet();
+                send(exchange, "application/json", reply(number, content, usage).toString(), truncate);
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 400, "Bad request: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean every(int every, long number) {
+        return every > 0 && number % every == 0;
+    }
+
+    private static JSONObject reply(long number, String content, JSONObject usage) {
+        JSONObject message = new JSONObject().put("role", "assistant").put("content", content);
+        return new JSONObject()
+                .put("id", "gen-mock-" + number)
+                .put("object", "chat.completion")
+                .put("model", "mock")
+                .put("choices", new JSONArray().put(new JSONObject()
+                        .put("index", 0)
+                        .put("message", message)
+                        .put("finish_reason", "stop")))
+                .put("usage", usage);
+    }
+
+    /**
+     * Sends the reply as server-sent events, a piece of the content in each,
+     * the way OpenRouter streams. The events are sent under a Content-Length
+     * rather than chunked, so that a truncated stream ends short for the
+     * client instead of looking complete.
+     */
+    private void stream(HttpExchange exchange, long number, String content, JSONObject usage, boolean truncate)
+            throws IOException {
+        List<byte[]> events = new ArrayList<>();
+        events.add(": OPENROUTER PROCESSING\n\n".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < content.length(); i += STREAM_CHUNK_CHARACTERS) {
+            String piece = content.substring(i, Math.min(content.length(), i + STREAM_CHUNK_CHARACTERS));
+            events.add(event(chunk(number, new JSONObject().put("content", piece), null).toString()));
+        }
+        events.add(event(chunk(number, new JSONObject(), "stop").put("usage", usage).toString()));
+        events.add(event("[DONE]"));
+        long length = 0;
+        for (byte[] event : events) {
+            length += event.length;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, length);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < events.size(); i++) {
+            if (truncate && i >= events.size() / 2) {
+                dropConnection();
+            }
+            out.write(events.get(i));
+            out.flush();
+            if (chunkMillis > 0 && i + 1 < events.size()) {
+                sleep(chunkMillis);
+            }
+        }
+        out.close();
+    }
+
+    private static byte[] event(String data) {
+        return ("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject chunk(long number, JSONObject delta, String finishReason) {
+        JSONObject choice = new JSONObject().put("index", 0).put("delta", delta);
+        choice.put("finish_reason", finishReason != null ? finishReason : JSONObject.NULL);
+        return new JSONObject()
+                .put("id", "gen-mock-" + number)
+                .put("object", "chat.completion.chunk")
+                .put("model", "mock")
+                .put("choices", new JSONArray().put(choice));
+    }
+
+    /**
+     * Sends a whole reply, or, when truncating, its first half under a Content-Length for all of it
+     */
+    private static void send(HttpExchange exchange, String contentType, String body, boolean truncate)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes, 0, truncate ? bytes.length / 2 : bytes.length);
+        out.flush();
+        if (truncate) {
+            dropConnection();
+        }
+        out.close();
+    }
+
+    /**
+     * Ends the reply where it is; the HTTP server closes a connection whose handler fails
+     */
+    private static void dropConnection() throws IOException {
+        throw new IOException("Reply truncated on purpose");
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JSONObject error = new JSONObject().put("error", new JSONObject().put("code", status).put("message", message));
+        byte[] bytes = error.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static JSONArray cannedFlashcards() {
+        JSONArray cards = new JSONArray();
+        for (int i = 1; i <= 10; i++) {
+            cards.put(new JSONObject().put("question", "Question " + i + "?").put("answer", "Answer " + i));
+        }
+        return cards;
+    }
+
+    private static JSONArray cannedQuiz() {
+        JSONArray questions = new JSONArray();
+        for (int i = 1; i <= 10; i++) {
+            questions.put(new JSONObject()
+                    .put("question", "Question " + i + "?")
+                    .put("options", new JSONArray().put("A").put("B").put("C").put("D"))
+                    .put("correctOption", i % 4));
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,173 @@
+package com.zapio;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that navigating through many study sessions doesn't leak memory.
+ *
+ * Usage: java -Djava.awt.headless=true -cp zapio.jar:target/test-classes com.zapio.NavigationLeakCheck [cycles]
+ *
+ * Each cycle goes through the screens the way the app does, with canned
+ * content instead of API calls: a sample document is loaded into the
+ * selection screen, a loading screen is shown, then flashcards, a quiz or a
+ * cheatsheet, and finally the session is reset to the upload screen. After
+ * a few warm-up cycles the used heap is measured after a full GC, and again
+ * at the end. Exits with status 1 if it grew by more than a small
+ * allowance, or if any discarded screen is still reachable.
+ */
+public class NavigationLeakCheck {
+
+    private static final int WARMUP_CYCLES = 10;
+    private static final long ALLOWED_GROWTH_BYTES = 2L * 1024 * 1024;
+
+    private static final String SAMPLE_TEXT = "Photosynthesis converts light energy into chemical energy. "
+            + "Chlorophyll absorbs mostly blue and red light.";
+
+    public static void main(String[] args) throws Exception {
+        int cycles = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        File pdf = File.createTempFile("zapio-leak-check", ".pdf");
+        File txt = File.createTempFile("zapio-leak-check", ".txt");
+        pdf.deleteOnExit();
+        txt.deleteOnExit();
+        writeSamplePdf(pdf);
+        Files.write(txt.toPath(), SAMPLE_TEXT.getBytes(StandardCharsets.UTF_8));
+
+        // Stands in for the window's content pane and the app's card panel
+        JPanel contentPane = new JPanel(new BorderLayout());
+        contentPane.setSize(ZapioApp.APP_WIDTH, ZapioApp.APP_HEIGHT);
+        ScreenNavigator navigator = new ScreenNavigator(contentPane);
+        JPanel home = new JPanel(new CardLayout());
+        SelectionScreen[] selection = new SelectionScreen[1];
+        SwingUtilities.invokeAndWait(() -> {
+            home.add(new UploadScreen(null), ZapioApp.UPLOAD_SCREEN);
+            selection[0] = new SelectionScreen(null);
+            home.add(selection[0], ZapioApp.SELECTION_SCREEN);
+            navigator.keep(home);
+            navigator.show(home);
+        });
+
+        List<WeakReference<JComponent>> discarded = new ArrayList<>();
+        long baseline = 0;
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            File document = cycle % 2 == 0 ? pdf : txt;
+            int kind = cycle % 3;
+            SwingUtilities.invokeAndWait(() -> {
+                // Upload
+                selection[0].loadDocument(document);
+
+                // Generate
+                LoadingScreen loading = new LoadingScreen("Generating...");
+                navigator.show(loading);
+                loading.start();
+                JComponent result = createResultScreen(kind, document);
+                navigator.show(result);
+                result.setSize(contentPane.getSize());
+                result.doLayout();
+
+                // Home
+                selection[0].closeDocument();
+                navigator.show(home);
+
+                if (discarded.size() < 30) {
+                    discarded.add(new WeakReference<>(loading));
+                    discarded.add(new WeakReference<>(result));
+                }
+            });
+
+            if (cycle == WARMUP_CYCLES - 1) {
+                baseline = usedHeapAfterGc();
+            }
+        }
+
+        long end = usedHeapAfterGc();
+        int reachable = 0;
+        for (WeakReference<JComponent> screen : discarded) {
+            if (screen.get() != null) {
+                reachable++;
+            }
+        }
+
+        long growth = end - baseline;
+        System.out.printf("Cycles:              %d%n", cycles);
+        System.out.printf("Heap after warm-up:  %.1f MB%n", baseline / 1048576.0);
+        System.out.printf("Heap at the end:     %.1f MB (%+.2f MB)%n", end / 1048576.0, growth / 1048576.0);
+        System.out.printf("Discarded screens still reachable: %d of %d%n", reachable, discarded.size());
+
+        boolean passed = growth <= ALLOWED_GROWTH_BYTES && reachable == 0;
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static JComponent createResultScreen(int kind, File document) {
+        switch (kind) {
+            case 0: {
+                List<Flashcard> cards = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    cards.add(new Flashcard("Question " + i + ": what does chlorophyll absorb?", SAMPLE_TEXT));
+                }
+                return new FlashcardScreen(null, cards);
+            }
+            case 1: {
+                List<QuizQuestion> questions = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    questions.add(new QuizQuestion("Question " + i + "?",
+                            Arrays.asList("Blue and red", "Green", "Infrared", "Ultraviolet"), 0));
+                }
+                return new QuizScreen(null, questions);
+            }
+            default: {
+                StringBuilder cheatsheet = new StringBuilder();
+                for (int i = 1; i <= 20; i++) {
+                    cheatsheet.append("SECTION ").append(i).append("\n").append(SAMPLE_TEXT).append("\n\n");
+                }
+                return new CheatsheetScreen(null, document, cheatsheet.toString());
+            }
+        }
+    }
+
+    /**
+     * Waits for background previews and the EDT to settle, then collects garbage
+     */
+    private static long usedHeapAfterGc() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(100);
+            SwingUtilities.invokeAndWait(() -> { });
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static void writeSamplePdf(File file) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int pageIndex = 0; pageIndex < 3; pageIndex++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 720);
+                    content.showText(SAMPLE_TEXT);
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.zapio;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDInlineImage;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares PDFTextStripper with TextOnlyStripper on image-heavy PDFs.
+ *
+ * Usage: java -cp zapio.jar:target/test-classes com.zapio.PdfTextBenchmark [file.pdf ...]
+ *
+ * Without arguments it generates two sample documents in a temp directory:
+ * a slide deck with JPEG images and a text layer on every page, and a scanned
+ * handout with inline page images where only every other page has OCR text.
+ * Each document is loaded once and both strippers run on it alternately,
+ * after a warm-up. Reports the median extraction time and checks that the
+ * extracted text is identical.
+ */
+public class PdfTextBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        if (args.length == 0) {
+            File dir = Files.createTempDirectory("zapio-pdf-bench").toFile();
+            files.add(createSlideDeck(new File(dir, "slides.pdf"), 120));
+            files.add(createScannedHandout(new File(dir, "scans.pdf"), 120));
+        } else {
+            for (String arg : args) {
+                files.add(new File(arg));
+            }
+        }
+
+        for (File file : files) {
+            benchmark(file);
+        }
+    }
+
+    private static void benchmark(File file) throws IOException {
+        try (PDDocument document = PdfMemoryPolicy.load(file)) {
+            long[] fullTimes = new long[ROUNDS];
+            long[] textOnlyTimes = new long[ROUNDS];
+            String fullText = null;
+            String textOnlyText = null;
+
+            for (int round = -WARMUP_ROUNDS; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                fullText = new PDFTextStripper().getText(document);
+                long middle = System.nanoTime();
+                textOnlyText = new TextOnlyStripper().getText(document);
+                long end = System.nanoTime();
+                if (round >= 0) {
+                    fullTimes[round] = middle - start;
+                    textOnlyTimes[round] = end - middle;
+                }
+            }
+
+            double fullMs = median(fullTimes);
+            double textOnlyMs = median(textOnlyTimes);
+            System.out.printf("%s (%d MB, %d pages)%n", file.getName(), file.length() / (1024 * 1024),
+                    document.getNumberOfPages());
+            System.out.printf("  PDFTextStripper:  %8.1f ms%n", fullMs);
+            System.out.printf("  TextOnlyStripper: %8.1f ms (%.1fx)%n", textOnlyMs, fullMs / textOnlyMs);
+            System.out.printf("  Identical text:   %s (%d chars)%n", fullText.equals(textOnlyText), fullText.length());
+        }
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1_000_000.0;
+    }
+
+    /**
+     * Slides with three photos and a paragraph of text each
+     */
+    private static File createSlideDeck(File file, int pages) throws IOException {
+        Random random = new Random(1);
+        try (PDDocument document = PdfMemoryPolicy.createDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    for (int i = 0; i < 3; i++) {
+                        PDImageXObject image = JPEGFactory.createFromImage(document, noiseImage(random, 800, 600), 0.8f);
+                        content.drawImage(image, 20 + i * 190, 420, 180, 135);
+                    }
+                    writeLines(content, p, RenderingMode.FILL);
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    /**
+     * Scanned pages drawn as inline images, with an invisible OCR layer on
+     * every other page
+     */
+    private static File createScannedHandout(File file, int pages) throws IOException {
+        Random random = new Random(2);
+        int width = 1240;
+        int height = 1600;
+        try (PDDocument document = PdfMemoryPolicy.createDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                // Light grey pixels only, so the data never contains an "EI" marker
+                byte[] pixels = new byte[width * height];
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] = (byte) (0x80 + random.nextInt(0x80));
+                }
+                COSDictionary parameters = new COSDictionary();
+                parameters.setInt(COSName.W, width);
+                parameters.setInt(COSName.H, height);
+                parameters.setInt(COSName.BPC, 8);
+                parameters.setItem(COSName.CS, COSName.G);
+                PDInlineImage scan = new PDInlineImage(parameters, pixels, page.getResources());
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.drawImage(scan, 0, 0, 612, 792);
+                    if (p % 2 == 0) {
+                        writeLines(content, p, RenderingMode.NEITHER);
+                    }
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    private static void writeLines(PDPageContentStream content, int page, RenderingMode mode) throws IOException {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, 10);
+        content.setRenderingMode(mode);
+        content.newLineAtOffset(40, 390);
+        for (int line = 0; line < 30; line++) {
+            content.showText("Page " + page + ", line " + line + ": photosynthesis converts light energy into chemical energy");
+            content.newLineAtOffset(0, -12);
+        }
+        content.endText();
+    }
+
+    private static BufferedImage noiseImage(Random random, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,119 @@
+package com.zapio;
+
+import javax.swing.*;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that large previews stay at the top while they are filled in.
+ *
+ * Usage: java -Djava.awt.headless=true -cp zapio.jar:target/test-classes com.zapio.PreviewScrollCheck [megabytes]
+ *
+ * A TXT file of the given size is opened the way the preview panel does it,
+ * in a scroll pane, and indexed to the end. Then a DOCX preview of about
+ * the same amount of text is filled in batches. Exits with status 1 if the
+ * caret or the view of either has moved away from the top by then.
+ */
+public class PreviewScrollCheck {
+
+    private static final int VIEW_WIDTH = 600;
+    private static final int VIEW_HEIGHT = 400;
+    private static final int DOCX_BATCH = 200;
+    private static final String PARAGRAPH_TEXT = "A paragraph of the scroll check, long enough to wrap once or twice"
+            + " in a narrow preview so that each one takes up a few lines of the view.";
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        File txt = File.createTempFile("zapio-scroll-check", ".txt");
+        txt.deleteOnExit();
+        writeSampleText(txt, megabytes * 1024L * 1024L);
+
+        boolean passed = checkText(txt);
+        passed &= checkDocx(megabytes * 1024 * 1024 / PARAGRAPH_TEXT.length());
+        System.out.println(passed ? "Previews stayed at the top" : "A preview moved away from the top");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean checkText(File file) throws Exception {
+        MappedTextDocument[] document = new MappedTextDocument[1];
+        MappedTextArea[] area = new MappedTextArea[1];
+        JScrollPane[] scrollPane = new JScrollPane[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                document[0] = MappedTextDocument.open(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            area[0] = new MappedTextArea(document[0]);
+            area[0].setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            scrollPane[0] = new JScrollPane(area[0]);
+            scrollPane[0].setSize(VIEW_WIDTH, VIEW_HEIGHT);
+            scrollPane[0].doLayout();
+        });
+
+        boolean[] indexed = new boolean[1];
+        while (!indexed[0]) {
+            Thread.sleep(50);
+            SwingUtilities.invokeAndWait(() -> indexed[0] = document[0].isFullyIndexed());
+        }
+        return atTop("TXT", area[0], scrollPane[0]);
+    }
+
+    private static boolean checkDocx(int paragraphs) throws Exception {
+        DocxPreviewPane[] pane = new DocxPreviewPane[1];
+        JScrollPane[] scrollPane = new JScrollPane[1];
+        SwingUtilities.invokeAndWait(() -> {
+            pane[0] = new DocxPreviewPane();
+            scrollPane[0] = new JScrollPane(pane[0]);
+            scrollPane[0].setSize(VIEW_WIDTH, VIEW_HEIGHT);
+            scrollPane[0].doLayout();
+        });
+
+        // Batches arrive on the EDT one at a time, as they do from the loader
+        List<DocxPreviewPane.Paragraph> batch = new ArrayList<>();
+        for (int i = 0; i < paragraphs; i++) {
+            batch.add(new DocxPreviewPane.Paragraph(PARAGRAPH_TEXT, i % 50 == 0));
+            if (batch.size() == DOCX_BATCH || i == paragraphs - 1) {
+                List<DocxPreviewPane.Paragraph> next = batch;
+                SwingUtilities.invokeAndWait(() -> pane[0].appendParagraphs(next));
+                batch = new ArrayList<>();
+            }
+        }
+        return atTop("DOCX", pane[0], scrollPane[0]);
+    }
+
+    /**
+     * Reports where the caret and the view ended up, once pending scrolls have run
+     */
+    private static boolean atTop(String name, JTextComponent text, JScrollPane scrollPane) throws Exception {
+        // Caret scrolling is posted to the EDT, so let it run first
+        SwingUtilities.invokeAndWait(() -> { });
+        SwingUtilities.invokeAndWait(() -> { });
+        int[] position = new int[3];
+        SwingUtilities.invokeAndWait(() -> {
+            position[0] = text.getCaretPosition();
+            position[1] = scrollPane.getViewport().getViewPosition().y;
+            position[2] = text.getDocument().getLength();
+        });
+        System.out.println(name + ": length " + position[2] + ", caret " + position[0] + ", view y " + position[1]);
+        return position[0] == 0 && position[1] == 0;
+    }
+
+    private static void writeSampleText(File file, long bytes) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            long written = 0;
+            for (int line = 0; written < bytes; line++) {
+                String text = "Line " + line + " of the scroll check, with some text to fill it out\n";
+                writer.write(text);
+                written += text.length();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.zapio;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+/**
+ * Load test for the server mode, against {@link MockOpenRouterServer}.
+ *
+ * Usage: java -cp zapio.jar:target/test-classes com.zapio.ServerLoadTest [--clients N] [--documents N]
+ *        [--requests N] [--latency-ms N] [--threads N] [--queue N]
+ *
+ * Starts the mock with a fixed delay, then starts the server in a separate
+ * JVM pointed at it through OPENROUTER_API_URL, as a lab machine would run
+ * it. It uploads a set of text documents and has
+ * every client request random responses for random documents as fast as it
+ * can. Reports throughput, latency per status code, how many requests the
+ * mock got (the response cache should keep that at three per document) and
+ * the server's own counters.
+ *
+ * Exits with status 1 if any request failed or got a status other than 200
+ * or the 503 of a full queue, or if the mock got more requests than the
+ * cache allows.
+ */
+public class ServerLoadTest {
+
+    private static final int DEFAULT_CLIENTS = 64;
+    private static final int DEFAULT_DOCUMENTS = 20;
+    private static final int DEFAULT_REQUESTS = 20;
+    private static final int DEFAULT_LATENCY_MS = 800;
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_QUEUE = 32;
+    private static final String[] RESPONSES = {"flashcards", "quiz", "cheatsheet"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = DEFAULT_CLIENTS;
+        int documents = DEFAULT_DOCUMENTS;
+        int requestsPerClient = DEFAULT_REQUESTS;
+        int latencyMs = DEFAULT_LATENCY_MS;
+        int threads = DEFAULT_THREADS;
+        int queue = DEFAULT_QUEUE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = ZapioBatch.positive(args[i + 1]);
+            switch (args[i]) {
+                case "--clients":
+                    clients = value;
+                    break;
+                case "--documents":
+                    documents = value;
+                    break;
+                case "--requests":
+                    requestsPerClient = value;
+                    break;
+                case "--latency-ms":
+                    latencyMs = value;
+                    break;
+                case "--threads":
+                    threads = value;
+                    break;
+                case "--queue":
+                    queue = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        MockOpenRouterServer mock = new MockOpenRouterServer(0);
+        mock.setLatency(latencyMs, 0);
+        mock.start();
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Process server = startServer(port, mock.getUrl(), threads, queue);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::destroy, "load-test-cleanup"));
+        boolean passed;
+
+        try {
+            String base = "http://127.0.0.1:" + port;
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(Executors.newCachedThreadPool())
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            waitUntilUp(http, base);
+
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < documents; i++) {
+                String text = "Lecture " + i + "\n\n" + String.join("\n", Collections.nCopies(200,
+                        "Photosynthesis converts light energy into chemical energy stored in glucose, step " + i + "."));
+                HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(base + "/documents?name=lecture" + i + ".txt"))
+                        .POST(HttpRequest.BodyPublishers.ofString(text)).build(), HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    throw new IOException("Upload failed with " + response.statusCode() + ": " + response.body());
+                }
+                ids.add(new JSONObject(response.body()).getString("id"));
+            }
+
+            System.out.printf("%d clients x %d requests, %d documents, upstream latency %d ms, server threads %d, queue %d%n",
+                    clients, requestsPerClient, documents, latencyMs, threads, queue);
+            Map<Integer, List<Long>> latencies = new TreeMap<>();
+            CountDownLatch done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                int seed = c;
+                int count = requestsPerClient;
+                Thread client = new Thread(() -> {
+                    Random random = new Random(seed);
+                    try {
+                        for (int r = 0; r < count; r++) {
+                            String id = ids.get(random.nextInt(ids.size()));
+                            String path = "/documents/" + id + "/" + RESPONSES[random.nextInt(RESPONSES.length)];
+                            long requestStart = System.nanoTime();
+                            int status;
+                            try {
+                                status = http.send(HttpRequest.newBuilder(URI.create(base + path)).build(),
+                                        HttpResponse.BodyHandlers.discarding()).statusCode();
+                            } catch (IOException e) {
+                                status = -1;
+                            }
+                            long nanos = System.nanoTime() - requestStart;
+                            synchronized (latencies) {
+                                latencies.computeIfAbsent(status, s -> new ArrayList<>()).add(nanos);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "load-client-" + c);
+                client.setDaemon(true);
+                client.start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            int total = clients * requestsPerClient;
+            System.out.printf("%d requests in %.1f s: %.0f requests/s%n", total, seconds, total / seconds);
+            System.out.printf("%-8s %7s %9s %9s %9s %9s%n", "Status", "Count", "p50 ms", "p95 ms", "p99 ms", "Max ms");
+            for (Map.Entry<Integer, List<Long>> entry : latencies.entrySet()) {
+                List<Long> sorted = entry.getValue();
+                Collections.sort(sorted);
+                System.out.printf("%-8s %7d %9.1f %9.1f %9.1f %9.1f%n",
+                        entry.getKey() < 0 ? "error" : entry.getKey().toString(), sorted.size(),
+                        percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+            }
+            long cacheBound = (long) documents * RESPONSES.length;
+            System.out.printf("Mock requests: %d (at most %d with the cache)%n", mock.getRequestCount(), cacheBound);
+            System.out.println("Server status: " + http.send(HttpRequest.newBuilder(URI.create(base + "/status")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body());
+
+            int unexpected = 0;
+            for (Map.Entry<Integer, List<Long>> entry : latencies.entrySet()) {
+                if (entry.getKey() != 200 && entry.getKey() != 503) {
+                    unexpected += entry.getValue().size();
+                }
+            }
+            passed = unexpected == 0 && mock.getRequestCount() <= cacheBound;
+            System.out.printf("%d requests failed or got an unexpected status%n", unexpected);
+            System.out.println(passed ? "PASSED" : "FAILED");
+        } finally {
+            server.destroy();
+            mock.stop();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index))) / 1e6;
+    }
+
+    private static Process startServer(int port, String apiUrl, int threads, int queue) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Djava.awt.headless=true",
+                "-cp", System.getProperty("java.class.path"), ZapioApp.class.getName(), "--serve",
+                "--port", String.valueOf(port), "--threads", String.valueOf(threads), "--queue", String.valueOf(queue));
+        builder.environment().put("OPENROUTER_API_URL", apiUrl);
+        builder.environment().put("OPENROUTER_API_KEY", "load-test");
+        builder.inheritIO();
+        return builder.start();
+    }
+
+    private static void waitUntilUp(HttpClient http, String base) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (true) {
+            try {
+                http.send(HttpRequest.newBuilder(URI.create(base + "/status")).build(), HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Server didn't start", e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.zapio;
+
+import java.awt.*;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures shadow painting with and without the ShadowRenderer cache.
+ *
+ * Usage: java -Djava.awt.headless=true -cp zapio.jar:target/test-classes com.zapio.ShadowBenchmark
+ *
+ * Paints the shadows the app uses, at the sizes they're shown at, into an
+ * opaque image like a Swing back buffer. The flashcard is painted with its
+ * background and outline, as FlashcardScreen does. Reports the average time
+ * per paint for the layered drawing and the nine-patch copy, and the largest
+ * per-channel difference between the two results.
+ */
+public class ShadowBenchmark {
+
+    private static final int WARMUP_PAINTS = 2_000;
+    private static final int PAINTS = 10_000;
+
+    public static void main(String[] args) {
+        benchmark("Quiz option border", ShadowRenderer.Style.OUTLINE, 560, 60, 5, 0.2f, 12);
+        benchmark("Result message border", ShadowRenderer.Style.OUTLINE, 500, 120, 4, 0.08f, 12);
+        benchmark("Flashcard", ShadowRenderer.Style.FILLED, 640, 280, 12, 0.15f, 16);
+    }
+
+    private static void benchmark(String name, ShadowRenderer.Style style, int width, int height,
+                                  int shadowSize, float opacity, int cornerRadius) {
+        BufferedImage direct = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage cached = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        boolean card = style == ShadowRenderer.Style.FILLED;
+
+        double directMicros = time(direct, g -> {
+            ShadowRenderer.paintDirect(g, style, 0, 0, width, height, shadowSize, opacity, cornerRadius);
+            if (card) {
+                paintCard(g, width, height, shadowSize, cornerRadius);
+            }
+        });
+        double cachedMicros = time(cached, g -> {
+            ShadowRenderer.paint(g, style, 0, 0, width, height, shadowSize, opacity, cornerRadius, !card);
+            if (card) {
+                paintCard(g, width, height, shadowSize, cornerRadius);
+            }
+        });
+
+        System.out.printf("%s (%dx%d, size %d, opacity %.2f, radius %d)%n",
+                name, width, height, shadowSize, opacity, cornerRadius);
+        System.out.printf("  Layered drawing: %8.1f us%n", directMicros);
+        System.out.printf("  Nine-patch:      %8.1f us (%.1fx)%n", cachedMicros, directMicros / cachedMicros);
+        System.out.printf("  Max difference:  %d / 255%n", maxDifference(direct, cached));
+    }
+
+    /**
+     * The card background and outline FlashcardScreen paints over its shadow
+     */
+    private static void paintCard(Graphics g, int width, int height, int shadowSize, int cornerRadius) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        RoundRectangle2D card = new RoundRectangle2D.Float(shadowSize, shadowSize,
+                width - 2 * shadowSize, height - 2 * shadowSize, cornerRadius, cornerRadius);
+        g2.setColor(Color.WHITE);
+        g2.fill(card);
+        g2.setColor(new Color(220, 220, 220));
+        g2.draw(card);
+        g2.dispose();
+    }
+
+    private interface Painter {
+        void paint(Graphics g);
+    }
+
+    /**
+     * Returns the average microseconds per paint; leaves the last result in the image
+     */
+    private static double time(BufferedImage target, Painter painter) {
+        Graphics2D g = target.createGraphics();
+        for (int i = 0; i < WARMUP_PAINTS; i++) {
+            clear(g, target);
+            painter.paint(g);
+        }
+
+        long total = 0;
+        for (int i = 0; i < PAINTS; i++) {
+            clear(g, target);
+            long start = System.nanoTime();
+            painter.paint(g);
+            total += System.nanoTime() - start;
+        }
+        g.dispose();
+        return total / 1_000.0 / PAINTS;
+    }
+
+    private static void clear(Graphics2D g, BufferedImage target) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, target.getWidth(), target.getHeight());
+    }
+
+    private static int maxDifference(BufferedImage a, BufferedImage b) {
+        int max = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    max = Math.max(max, Math.abs(((p >> shift) & 0xff) - ((q >> shift) & 0xff)));
+                }
+            }
+        }
+        return max;
+    }
+}
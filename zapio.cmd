@@ -0,0 +1,16 @@
+@echo off
+rem Launches Zapio. Uses the class-data-sharing archive made by "mvn package"
+rem when it's there; the JVM ignores it if it was made by another Java version.
+setlocal
+set "DIR=%~dp0"
+set "JAR=%DIR%target\zapio-1.0-SNAPSHOT-jar-with-dependencies.jar"
+set "JSA=%DIR%target\zapio.jsa"
+set "JAVA=java"
+if defined JAVA_HOME set "JAVA=%JAVA_HOME%\bin\java"
+
+if exist "%JSA%" (
+    rem The class path must match the one the archive was dumped with
+    "%JAVA%" -XX:SharedArchiveFile="%JSA%" -Xshare:auto -cp "%JAR%" com.zapio.ZapioApp %*
+) else (
+    "%JAVA%" -jar "%JAR%" %*
+)
@@ -0,0 +1,17 @@
+#!/bin/sh
+# Launches Zapio. Uses the class-data-sharing archive made by "mvn package"
+# when it's there; the JVM ignores it if it was made by another Java version.
+DIR="$(cd "$(dirname "$0")" && pwd -P)"
+JAR="$DIR/target/zapio-1.0-SNAPSHOT-jar-with-dependencies.jar"
+JSA="$DIR/target/zapio.jsa"
+JAVA="java"
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+fi
+
+if [ -f "$JSA" ]; then
+    # The class path must match the one the archive was dumped with
+    exec "$JAVA" -XX:SharedArchiveFile="$JSA" -Xshare:auto -cp "$JAR" com.zapio.ZapioApp "$@"
+else
+    exec "$JAVA" -jar "$JAR" "$@"
+fi